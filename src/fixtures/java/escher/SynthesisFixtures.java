@@ -0,0 +1,317 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The synthesis problems of {@link RunTypedEscher}, pinned for benchmarks and tests: the same examples, a fixed
+ * component library and cost limits per problem. The limits are the costs of the known solutions, except for
+ * cartesian, which this library cannot express without a helper function, so searching it exhausts the space.
+ * Nothing here depends on the machine or on earlier runs, so two benchmark runs measure the same work.
+ *
+ * <p>As in Escher's oracle mode, the function being synthesized is in the library as a component backed by its
+ * reference implementation. That component only answers calls on arguments smaller than the largest example
+ * input. This is a row-independent stand-in for Escher's check that recursive calls decrease: the trivial self
+ * call fails on the largest example, so it is never a solution on its own.
+ */
+final class SynthesisFixtures {
+    private SynthesisFixtures() {
+    }
+
+    static final class Problem {
+        final String name;
+        final Map<String, Type> varTypes;
+        final List<Map<String, termvalue>> inputs;
+        final List<termvalue> outputs;
+        final List<ComponentImpl> library;
+        /** the largest cost of a term in the bank; then-first tries then-branches up to two less than this */
+        final int maxCompCost;
+        /** the largest cost of a solution */
+        final int maxCost;
+
+        Problem(String name, Map<String, Type> varTypes, List<Map<String, termvalue>> inputs,
+                List<termvalue> outputs, List<ComponentImpl> library, int maxCompCost, int maxCost) {
+            this.name = name;
+            this.varTypes = varTypes;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.library = library;
+            this.maxCompCost = maxCompCost;
+            this.maxCost = maxCost;
+        }
+
+        /** a fresh bank, so every benchmark invocation enumerates from scratch */
+        TermBank bank() {
+            return new TermBank(library, varTypes, inputs, maxCompCost);
+        }
+
+        IndexValueMap goal() {
+            return IndexValueMap.of(outputs);
+        }
+
+        Map<String, ComponentImpl> compMap() {
+            Map<String, ComponentImpl> compMap = new LinkedHashMap<>();
+            for (ComponentImpl comp : library) {
+                compMap.put(comp.name, comp);
+            }
+            return compMap;
+        }
+    }
+
+    static Problem byName(String name) {
+        switch (name) {
+            case "reverse":
+                return reverse();
+            case "stutter":
+                return stutter();
+            case "cartesian":
+                return cartesian();
+            case "squareList":
+                return squareList();
+            default:
+                throw new IllegalArgumentException("unknown problem " + name);
+        }
+    }
+
+    // types
+
+    private static final Type A = new TVar(0);
+    private static final Type LIST_A = TList.of(A);
+    private static final Type INT = TInt.of();
+    private static final Type BOOL = TBool.of();
+
+    // component library
+
+    static final ComponentImpl IS_EMPTY = comp("isEmpty", List.of(LIST_A), BOOL,
+            args -> bool(list(args.get(0)).isEmpty()));
+    static final ComponentImpl HEAD = comp("head", List.of(LIST_A), A,
+            args -> list(args.get(0)).isEmpty() ? valueerror.INSTANCE : list(args.get(0)).head());
+    static final ComponentImpl TAIL = comp("tail", List.of(LIST_A), LIST_A,
+            args -> list(args.get(0)).isEmpty() ? valueerror.INSTANCE : list(args.get(0)).tail());
+    static final ComponentImpl CONS = comp("cons", List.of(A, LIST_A), LIST_A,
+            args -> list(args.get(1)).cons(args.get(0)));
+    static final ComponentImpl NIL = comp("nil", List.of(), LIST_A,
+            args -> ValueList.EMPTY);
+    static final ComponentImpl CONCAT = comp("concat", List.of(LIST_A, LIST_A), LIST_A,
+            args -> list(args.get(0)).concat(list(args.get(1))));
+    static final ComponentImpl ZERO = comp("zero", List.of(), INT,
+            args -> new ValueInt(0));
+    static final ComponentImpl INC = comp("inc", List.of(INT), INT,
+            args -> new ValueInt(integer(args.get(0)) + 1));
+    static final ComponentImpl DEC = comp("dec", List.of(INT), INT,
+            args -> new ValueInt(integer(args.get(0)) - 1));
+    static final ComponentImpl IS_ZERO = comp("isZero", List.of(INT), BOOL,
+            args -> bool(integer(args.get(0)) == 0));
+    static final ComponentImpl IS_POSITIVE = comp("isPositive", List.of(INT), BOOL,
+            args -> bool(integer(args.get(0)) > 0));
+    static final ComponentImpl TIMES = comp("times", List.of(INT, INT), INT,
+            args -> new ValueInt(integer(args.get(0)) * integer(args.get(1))));
+    static final ComponentImpl DIV = comp("div", List.of(INT, INT), INT,
+            args -> integer(args.get(1)) == 0 ? valueerror.INSTANCE
+                    : new ValueInt(integer(args.get(0)) / integer(args.get(1))));
+
+    static List<ComponentImpl> standardComps() {
+        return List.of(IS_EMPTY, HEAD, TAIL, CONS, NIL, CONCAT, ZERO, INC, DEC, IS_ZERO);
+    }
+
+    // problems
+
+    static Problem reverse() {
+        List<List<termvalue>> args = List.of(
+                List.of(ints()),
+                List.of(ints(1, 2)),
+                List.of(ints(1, 2, 3)));
+        List<termvalue> outputs = List.of(ints(), ints(2, 1), ints(3, 2, 1));
+        Type elem = new TFixedVar(0);
+        Map<String, Type> varTypes = varTypes(List.of("xs"), List.of(TList.of(elem)));
+        ComponentImpl self = oracle("reverse", List.of(LIST_A), LIST_A, args, xs -> {
+            List<termvalue> result = new ArrayList<>(list(xs.get(0)).toList());
+            Collections.reverse(result);
+            return ValueList.of(result);
+        });
+        return problem("reverse", varTypes, args, outputs, withSelf(standardComps(), self), 8, 12);
+    }
+
+    static Problem stutter() {
+        List<List<termvalue>> args = List.of(
+                List.of(ints()),
+                List.of(ints(5)),
+                List.of(ints(5, 6, 3)));
+        List<termvalue> outputs = List.of(ints(), ints(5, 5), ints(5, 5, 6, 6, 3, 3));
+        Type elem = new TFixedVar(0);
+        Map<String, Type> varTypes = varTypes(List.of("xs"), List.of(TList.of(elem)));
+        ComponentImpl self = oracle("stutter", List.of(LIST_A), LIST_A, args, xs -> {
+            List<termvalue> result = new ArrayList<>();
+            for (termvalue v : list(xs.get(0)).toList()) {
+                result.add(v);
+                result.add(v);
+            }
+            return ValueList.of(result);
+        });
+        return problem("stutter", varTypes, args, outputs, withSelf(standardComps(), self), 9, 13);
+    }
+
+    static Problem cartesian() {
+        List<List<termvalue>> args = List.of(
+                List.of(ints(), ints(2, 3, 4)),
+                List.of(ints(5), ints()),
+                List.of(ints(5), ints(7, 8, 9)),
+                List.of(ints(2, 3), ints(4, 5)));
+        List<termvalue> outputs = List.of(
+                ints(),
+                ints(),
+                pairs(5, 7, 5, 8, 5, 9),
+                pairs(2, 4, 2, 5, 3, 4, 3, 5));
+        Type t0 = new TFixedVar(0);
+        Type t1 = new TFixedVar(1);
+        Map<String, Type> varTypes = varTypes(List.of("xs", "ys"), List.of(TList.of(t0), TList.of(t1)));
+        ComponentImpl createPair = comp("createPair", List.of(t0, t1), TPair.of(t0, t1),
+                a -> new ValuePair(a.get(0), a.get(1)));
+        ComponentImpl self = oracle("cartesian", List.of(TList.of(t0), TList.of(t1)), TList.of(TPair.of(t0, t1)),
+                args, xs -> {
+                    List<termvalue> result = new ArrayList<>();
+                    for (termvalue x : list(xs.get(0)).toList()) {
+                        for (termvalue y : list(xs.get(1)).toList()) {
+                            result.add(new ValuePair(x, y));
+                        }
+                    }
+                    return ValueList.of(result);
+                });
+        List<ComponentImpl> library = new ArrayList<>(standardComps());
+        library.add(createPair);
+        return problem("cartesian", varTypes, args, outputs, withSelf(library, self), 9, 13);
+    }
+
+    static Problem squareList() {
+        List<List<termvalue>> args = List.of(
+                List.of(new ValueInt(-3)),
+                List.of(new ValueInt(0)),
+                List.of(new ValueInt(1)),
+                List.of(new ValueInt(2)),
+                List.of(new ValueInt(3)),
+                List.of(new ValueInt(4)));
+        List<termvalue> outputs = List.of(ints(), ints(), ints(1), ints(1, 4), ints(1, 4, 9), ints(1, 4, 9, 16));
+        Map<String, Type> varTypes = varTypes(List.of("n"), List.of(INT));
+        ComponentImpl self = oracle("squareList", List.of(INT), TList.of(INT), args, n -> {
+            List<termvalue> result = new ArrayList<>();
+            for (int i = 1; i <= integer(n.get(0)); i++) {
+                result.add(new ValueInt(i * i));
+            }
+            return ValueList.of(result);
+        });
+        List<ComponentImpl> library = new ArrayList<>(standardComps());
+        library.add(IS_POSITIVE);
+        library.add(TIMES);
+        library.add(DIV);
+        return problem("squareList", varTypes, args, outputs, withSelf(library, self), 11, 13);
+    }
+
+    // helpers
+
+    private static Problem problem(String name, Map<String, Type> varTypes, List<List<termvalue>> args,
+                                   List<termvalue> outputs, List<ComponentImpl> library, int maxCompCost,
+                                   int maxCost) {
+        List<String> names = new ArrayList<>(varTypes.keySet());
+        List<Map<String, termvalue>> inputs = new ArrayList<>();
+        for (List<termvalue> row : args) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                env.put(names.get(i), row.get(i));
+            }
+            inputs.add(env);
+        }
+        return new Problem(name, varTypes, inputs, outputs, library, maxCompCost, maxCost);
+    }
+
+    private static Map<String, Type> varTypes(List<String> names, List<Type> types) {
+        Map<String, Type> varTypes = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            varTypes.put(names.get(i), types.get(i));
+        }
+        return varTypes;
+    }
+
+    private static List<ComponentImpl> withSelf(List<ComponentImpl> library, ComponentImpl self) {
+        List<ComponentImpl> comps = new ArrayList<>(library);
+        comps.add(self);
+        return comps;
+    }
+
+    /**
+     * The function being synthesized, answering from <i>reference</i> on arguments that are smaller than the
+     * largest example input, and with an error otherwise.
+     */
+    private static ComponentImpl oracle(String name, List<Type> argTypes, Type returnType,
+                                        List<List<termvalue>> exampleArgs,
+                                        Function<List<termvalue>, termvalue> reference) {
+        int largest = 0;
+        for (List<termvalue> row : exampleArgs) {
+            largest = Math.max(largest, size(row));
+        }
+        int limit = largest;
+        return comp(name, argTypes, returnType, args -> {
+            if (size(args) >= limit) {
+                return valueerror.INSTANCE;
+            }
+            return reference.apply(args);
+        });
+    }
+
+    /** a component that is strict in its arguments: an error in any of them is the result */
+    private static ComponentImpl comp(String name, List<Type> argTypes, Type returnType,
+                                      Function<List<termvalue>, termvalue> impl) {
+        return new ComponentImpl(name, argTypes, returnType, (args, fuel) -> {
+            for (termvalue arg : args) {
+                if (arg == valueerror.INSTANCE) {
+                    return valueerror.INSTANCE;
+                }
+            }
+            return impl.apply(args);
+        });
+    }
+
+    private static int size(List<termvalue> args) {
+        int n = 0;
+        for (termvalue v : args) {
+            if (v instanceof ValueList) {
+                n += ((ValueList) v).size();
+            } else if (v instanceof ValueInt) {
+                n += Math.abs(((ValueInt) v).getValue());
+            }
+        }
+        return n;
+    }
+
+    private static ValueList list(termvalue v) {
+        return (ValueList) v;
+    }
+
+    private static int integer(termvalue v) {
+        return ((ValueInt) v).getValue();
+    }
+
+    private static valueBool bool(boolean b) {
+        return b ? valueBool.TRUE : valueBool.FALSE;
+    }
+
+    private static ValueList ints(int... values) {
+        List<termvalue> elems = new ArrayList<>(values.length);
+        for (int v : values) {
+            elems.add(new ValueInt(v));
+        }
+        return ValueList.of(elems);
+    }
+
+    /** a list of pairs from alternating first and second components */
+    private static ValueList pairs(int... values) {
+        List<termvalue> elems = new ArrayList<>(values.length / 2);
+        for (int i = 0; i + 1 < values.length; i += 2) {
+            elems.add(new ValuePair(new ValueInt(values[i]), new ValueInt(values[i + 1])));
+        }
+        return ValueList.of(elems);
+    }
+}
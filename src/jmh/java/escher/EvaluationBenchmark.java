@@ -0,0 +1,180 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Micro-benchmarks of the inner loops of synthesis: running a term on the examples, splitting a goal by a
+ * candidate's outputs and looking up the memo table of {@link BatchGoalSearch}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    /** the reverse solution, run on the reverse examples */
+    @State(Scope.Thread)
+    public static class ReverseTerm {
+        Term term;
+        CompiledTerm compiled;
+        Map<String, ComponentImpl> compMap;
+        List<Map<String, termvalue>> inputs;
+        List<termvalue[]> slots;
+
+        @Setup
+        public void setUp() {
+            SynthesisFixtures.Problem fixture = SynthesisFixtures.reverse();
+            Var xs = Var.of("xs");
+            term = If.of(
+                    Component.of("isEmpty", List.of(xs)),
+                    Component.of("nil", List.of()),
+                    Component.of("concat", List.of(
+                            Component.of("reverse", List.of(Component.of("tail", List.of(xs)))),
+                            Component.of("cons", List.of(
+                                    Component.of("head", List.of(xs)),
+                                    Component.of("nil", List.of()))))));
+            compMap = fixture.compMap();
+            inputs = fixture.inputs;
+            List<String> varNames = new ArrayList<>(fixture.varTypes.keySet());
+            compiled = CompiledTerm.compile(term, varNames, compMap);
+            slots = new ArrayList<>();
+            for (Map<String, termvalue> input : inputs) {
+                slots.add(CompiledTerm.slots(varNames, input));
+            }
+        }
+    }
+
+    @Benchmark
+    public void executeTerm(ReverseTerm s, Blackhole bh) throws Exception {
+        for (Map<String, termvalue> input : s.inputs) {
+            bh.consume(s.term.executeTerm(input, s.compMap));
+        }
+    }
+
+    @Benchmark
+    public void executeCompiled(ReverseTerm s, Blackhole bh) throws Exception {
+        for (termvalue[] args : s.slots) {
+            bh.consume(s.compiled.execute(args));
+        }
+    }
+
+    /** a goal over <i>examples</i> integers and a candidate that gets about half of them right */
+    @State(Scope.Thread)
+    public static class Split {
+        @Param({"8", "64", "512"})
+        public int examples;
+
+        IndexValueMap goal;
+        ValueVector candidate;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            List<termvalue> outputs = new ArrayList<>(examples);
+            termvalue[] values = new termvalue[examples];
+            for (int i = 0; i < examples; i++) {
+                int v = random.nextInt(100);
+                outputs.add(new ValueInt(v));
+                values[i] = new ValueInt(random.nextBoolean() ? v : v + 1);
+            }
+            goal = IndexValueMap.of(outputs);
+            candidate = ValueVector.of(values);
+        }
+    }
+
+    @Benchmark
+    public Optional<Triple<IndexValueMap, List<Integer>, List<Integer>>> splitValueMap(Split s) {
+        return IndexValueMap.splitValueMap(s.goal, s.candidate);
+    }
+
+    /**
+     * A memo table holding <i>entries</i> sub-goals of a 64 example goal, queried in a fixed random order of which
+     * half are hits.
+     */
+    @State(Scope.Thread)
+    public static class Memo {
+        @Param({"1024", "65536"})
+        public int entries;
+
+        @Param({"unbounded", "LRU", "COST_AWARE"})
+        public String table;
+
+        private static final BatchGoalSearch.SearchResult UNSOLVED = new BatchGoalSearch.SearchResult() {
+            @Override
+            public void foreach(BiConsumer<Integer, Term> f) {
+            }
+
+            @Override
+            public boolean answers(int cost) {
+                return false;
+            }
+
+            @Override
+            public Optional<Pair<Integer, Term>> within(int cost) {
+                return Optional.empty();
+            }
+        };
+
+        MemoCache<BatchGoalSearch.SearchResult> memo;
+        GoalKey[] queries;
+        int next;
+
+        @Setup
+        public void setUp() {
+            memo = table.equals("unbounded") ? MemoCache.unbounded()
+                    : MemoCache.bounded(entries, MemoCache.Eviction.valueOf(table));
+            Random random = new Random(42);
+            List<termvalue> outputs = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                outputs.add(new ValueInt(i));
+            }
+            IndexValueMap top = IndexValueMap.of(outputs);
+            GoalKey[] stored = new GoalKey[entries];
+            for (int i = 0; i < entries; i++) {
+                stored[i] = subGoal(top, random).key();
+                memo.merge(stored[i], UNSOLVED, (a, b) -> b);
+            }
+            queries = new GoalKey[4096];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextBoolean() ? stored[random.nextInt(entries)] : subGoal(top, random).key();
+            }
+        }
+
+        private static IndexValueMap subGoal(IndexValueMap top, Random random) {
+            List<Integer> removed = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                if (random.nextBoolean()) {
+                    removed.add(i);
+                }
+            }
+            return top.remove(removed);
+        }
+    }
+
+    @Benchmark
+    public BatchGoalSearch.SearchResult memoLookup(Memo s) {
+        GoalKey key = s.queries[s.next];
+        s.next = (s.next + 1) & (s.queries.length - 1);
+        return s.memo.get(key);
+    }
+}
@@ -0,0 +1,75 @@
+package escher;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end synthesis of the {@link SynthesisFixtures} problems: building the typed term bank and deepening the
+ * cost until the goal is solved or the problem's cost limit is reached. Every invocation starts from an empty
+ * bank and memo table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SynthesisBenchmark {
+    @Param({"reverse", "stutter", "cartesian", "squareList"})
+    public String problem;
+
+    private SynthesisFixtures.Problem fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = SynthesisFixtures.byName(problem);
+    }
+
+    @Benchmark
+    public Optional<Pair<Integer, Term>> thenFirst() {
+        BatchGoalSearch search = new BatchGoalSearch(fixture.maxCompCost, fixture.bank(), null, MemoCache.unbounded());
+        CostScheduler scheduler = new CostScheduler(search, fixture.goal(), fixture.maxCost);
+        while (!scheduler.isDone()) {
+            scheduler.step();
+        }
+        return scheduler.result();
+    }
+
+    @Benchmark
+    public Optional<Pair<Integer, Term>> condFirst() {
+        BatchGoalSearch search = new BatchGoalSearch(fixture.maxCompCost, fixture.bank(), null, MemoCache.unbounded());
+        IndexValueMap goal = fixture.goal();
+        for (int cost = 1; cost <= fixture.maxCost; cost++) {
+            Optional<Pair<Integer, Term>> result = search.searchCondFirst(cost, goal);
+            if (result.isPresent()) {
+                return result;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** enumeration alone, the part of synthesis that does not depend on the search strategy */
+    @Benchmark
+    public int termBank() {
+        TermBank bank = fixture.bank();
+        int n = 0;
+        for (int cost = 1; cost <= fixture.maxCompCost; cost++) {
+            for (Pair<ValueVector, Term> ignored : bank.termsOfCost(cost)) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
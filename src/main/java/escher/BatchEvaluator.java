@@ -0,0 +1,163 @@
+package escher;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates terms on all examples at once, one column (sub-term outputs over the examples) at a time. An
+ * evaluator is meant to live as long as its examples: columns computed on every example are cached per sub-term,
+ * so all the candidates evaluated through it share the work for their common sub-terms. Terms are interned, so
+ * the cache is keyed by the term itself and a lookup costs a hash and an identity check. Examples on which an
+ * argument already produced {@link valueerror} are dropped before the remaining arguments and the component itself
+ * are evaluated.
+ *
+ * <p>A condition that is neither TRUE nor FALSE gives {@link valueerror}, as in the extended evaluation, rather
+ * than an exception. Safe for concurrent use; two threads missing the same column may both compute it.
+ */
+public class BatchEvaluator {
+    /** the default number of cached columns */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final List<Map<String, termvalue>> varMaps;
+    private final Map<String, ComponentImpl> compMap;
+    private final Supplier<Fuel> fuel;
+    private final int capacity;
+    private final int exampleCount;
+    private final BitSet allRows;
+    private final LinkedHashMap<Term, ValueVector> columns = new LinkedHashMap<>(16, 0.75f, true);
+
+    public BatchEvaluator(List<Map<String, termvalue>> varMaps, Map<String, ComponentImpl> compMap) {
+        this(varMaps, compMap, () -> null, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param fuel     gives the budget of each component call, or null for none
+     * @param capacity the number of columns to keep, least recently used first out
+     */
+    public BatchEvaluator(List<Map<String, termvalue>> varMaps, Map<String, ComponentImpl> compMap,
+                          Supplier<Fuel> fuel, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.varMaps = varMaps;
+        this.compMap = compMap;
+        this.fuel = fuel;
+        this.capacity = capacity;
+        this.exampleCount = varMaps.size();
+        this.allRows = new BitSet(exampleCount);
+        allRows.set(0, exampleCount);
+    }
+
+    public ValueVector evaluate(Term term) {
+        ValueVector cached = cached(term);
+        return cached != null ? cached : cache(term, compute(term, allRows));
+    }
+
+    public int cachedColumns() {
+        synchronized (columns) {
+            return columns.size();
+        }
+    }
+
+    private ValueVector cached(Term term) {
+        synchronized (columns) {
+            return columns.get(term);
+        }
+    }
+
+    private ValueVector cache(Term term, termvalue[] column) {
+        ValueVector vec = ValueVector.of(column);
+        synchronized (columns) {
+            columns.put(term, vec);
+            if (columns.size() > capacity) {
+                columns.remove(columns.keySet().iterator().next());
+            }
+        }
+        return vec;
+    }
+
+    /** the outputs of <i>term</i> on the examples in <i>rows</i>; entries outside <i>rows</i> may be anything */
+    private termvalue[] column(Term term, BitSet rows) {
+        ValueVector cached = cached(term);
+        if (cached != null) {
+            termvalue[] column = new termvalue[exampleCount];
+            for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                column[i] = cached.get(i);
+            }
+            return column;
+        }
+        termvalue[] column = compute(term, rows);
+        if (rows.cardinality() == exampleCount) {
+            cache(term, column);
+        }
+        return column;
+    }
+
+    private termvalue[] compute(Term term, BitSet rows) {
+        termvalue[] column = new termvalue[exampleCount];
+        if (term instanceof Var) {
+            String name = ((Var) term).getName();
+            for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                column[i] = varMaps.get(i).get(name);
+            }
+        } else if (term instanceof Component) {
+            computeComponent((Component) term, rows, column);
+        } else if (term instanceof If) {
+            computeIf((If) term, rows, column);
+        } else {
+            throw new IllegalArgumentException("unknown term: " + term.show());
+        }
+        return column;
+    }
+
+    private void computeComponent(Component term, BitSet rows, termvalue[] column) {
+        List<Term> terms = term.getTerms();
+        ComponentImpl impl = compMap.get(term.getName());
+        BitSet live = (BitSet) rows.clone();
+        termvalue[][] argColumns = new termvalue[terms.size()][];
+        for (int a = 0; a < argColumns.length; a++) {
+            argColumns[a] = column(terms.get(a), live);
+            for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+                if (argColumns[a][i] == valueerror.INSTANCE) {
+                    column[i] = valueerror.INSTANCE;
+                    live.clear(i);
+                }
+            }
+        }
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            List<termvalue> args = new ArrayList<>(argColumns.length);
+            for (termvalue[] argColumn : argColumns) {
+                args.add(argColumn[i]);
+            }
+            column[i] = impl.executeEfficient(args, fuel.get());
+        }
+    }
+
+    private void computeIf(If term, BitSet rows, termvalue[] column) {
+        termvalue[] cond = column(term.getCondition(), rows);
+        BitSet thenRows = new BitSet(exampleCount);
+        BitSet elseRows = new BitSet(exampleCount);
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+            termvalue cv = cond[i];
+            if (cv instanceof valueBool && ((valueBool) cv).getValue()) {
+                thenRows.set(i);
+            } else if (cv instanceof valueBool) {
+                elseRows.set(i);
+            } else {
+                column[i] = valueerror.INSTANCE;
+            }
+        }
+        if (!thenRows.isEmpty()) {
+            termvalue[] thenColumn = column(term.getThenBranch(), thenRows);
+            for (int i = thenRows.nextSetBit(0); i >= 0; i = thenRows.nextSetBit(i + 1)) {
+                column[i] = thenColumn[i];
+            }
+        }
+        if (!elseRows.isEmpty()) {
+            termvalue[] elseColumn = column(term.getElseBranch(), elseRows);
+            for (int i = elseRows.nextSetBit(0); i >= 0; i = elseRows.nextSetBit(i + 1)) {
+                column[i] = elseColumn[i];
+            }
+        }
+    }
+}
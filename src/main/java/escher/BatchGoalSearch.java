@@ -1,11 +1,23 @@
 package escher;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class BatchGoalSearch {
-    interface SearchResult {
+    public interface SearchResult {
         void foreach(BiConsumer<Integer, Term> f);
+
+        /** whether this buffered result settles a search under the given cost */
+        boolean answers(int cost);
+
+        /** the result of a search under the given cost, assuming {@link #answers(int)} */
+        Optional<Pair<Integer, Term>> within(int cost);
     }
 
     private static class NotFoundUnderCost implements SearchResult {
@@ -18,6 +30,16 @@ public class BatchGoalSearch {
         @Override
         public void foreach(BiConsumer<Integer, Term> f) {
         }
+
+        @Override
+        public boolean answers(int cost) {
+            return cost <= this.cost;
+        }
+
+        @Override
+        public Optional<Pair<Integer, Term>> within(int cost) {
+            return Optional.empty();
+        }
     }
 
     private static class FoundAtCost implements SearchResult {
@@ -33,26 +55,75 @@ public class BatchGoalSearch {
         public void foreach(BiConsumer<Integer, Term> f) {
             f.accept(cost, term);
         }
+
+        /** a found cost is always the minimum, so it settles searches under any cost */
+        @Override
+        public boolean answers(int cost) {
+            return true;
+        }
+
+        @Override
+        public Optional<Pair<Integer, Term>> within(int cost) {
+            return this.cost <= cost ? Optional.of(new Pair<>(this.cost, term)) : Optional.empty();
+        }
+    }
+
+    private static final int IF_COST = 1;
+
+    private static MemoCache<SearchResult> emptyBuffer() {
+        return MemoCache.unbounded();
+    }
+
+    /** keeps whichever of two buffered results for the same goal says more */
+    private static SearchResult moreInformative(SearchResult a, SearchResult b) {
+        if (a instanceof FoundAtCost) {
+            return a;
+        }
+        if (b instanceof FoundAtCost) {
+            return b;
+        }
+        return ((NotFoundUnderCost) a).cost >= ((NotFoundUnderCost) b).cost ? a : b;
     }
 
-    private static Map<Set<Integer>, SearchResult> emptyBuffer() {
-        return new HashMap<>();
+    /** splits the goal into the indices where the condition is TRUE and where it is FALSE */
+    private static Optional<Pair<IndexValueMap, IndexValueMap>> splitGoal(ValueVector condVec, IndexValueMap goal) {
+        List<Integer> trueKeys = new ArrayList<>();
+        List<Integer> falseKeys = new ArrayList<>();
+        for (int i = goal.nextKey(0); i >= 0; i = goal.nextKey(i + 1)) {
+            termvalue v = condVec.get(i);
+            if (v == valueBool.TRUE) {
+                trueKeys.add(i);
+            } else if (v == valueBool.FALSE) {
+                falseKeys.add(i);
+            } else {
+                return Optional.empty();
+            }
+        }
+        if (trueKeys.isEmpty() || falseKeys.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Pair<>(goal.remove(falseKeys), goal.remove(trueKeys)));
     }
 
-    private static Optional<AscendRecSynthesizer.Pair<AscendRecSynthesizer.Pair<Integer, Term>, List<Integer>>> maxSatConditions(IndexValueMap vm,
-                                                                                                                                 Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM) {
-        List<Integer> keyList = vm.keySet().stream()
-                .filter(i -> vm.get(i) == valueBool.TRUE)
-                .sorted(Comparator.reverseOrder())
-                .toList();
+    /**
+     * Finds a condition that is FALSE on every FALSE entry of <i>vm</i> and TRUE on as many of its TRUE entries as
+     * possible, giving up TRUE entries from the largest index down. Returns the condition together with the indices
+     * on which it is TRUE.
+     */
+    private static Optional<Pair<Pair<Integer, Term>, List<Integer>>> maxSatConditions(IndexValueMap vm,
+                                                                                       Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM) {
+        int[] trueKeys = vm.keysWithValue(valueBool.TRUE);
         IndexValueMap vm1 = vm;
-        while (!keyList.isEmpty()) {
-            Optional<AscendRecSynthesizer.Pair<Integer, Term>> result = boolOfVM.apply(vm1);
+        for (int n = trueKeys.length; n > 0; n--) {
+            Optional<Pair<Integer, Term>> result = boolOfVM.apply(vm1);
             if (result.isPresent()) {
-                return Optional.of(result.get().mapFirst(x -> x).mapSecond(x -> keyList));
+                List<Integer> keyList = new ArrayList<>(n);
+                for (int k = 0; k < n; k++) {
+                    keyList.add(trueKeys[k]);
+                }
+                return Optional.of(new Pair<>(result.get(), keyList));
             }
-            vm1 = vm1.updated(keyList.get(0), valueBool.FALSE);
-            keyList = keyList.subList(1, keyList.size());
+            vm1 = vm1.updated(trueKeys[n - 1], valueBool.FALSE);
         }
         return Optional.empty();
     }
@@ -62,139 +133,405 @@ public class BatchGoalSearch {
     private final Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost;
     private final Function<Integer, Iterable<Pair<ValueVector, Term>>> boolTermsOfCost;
     private final Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM;
-    private final Map<Set<Integer>, SearchResult> buffer;
+    private final Function<IndexValueMap, Optional<Pair<Pair<Integer, Term>, List<Integer>>>> maxSatOfVM;
+    private final MemoCache<SearchResult> buffer;
+    private final SubsumptionIndex subsumption = new SubsumptionIndex(1 << 20);
+    private final ForkJoinPool pool;
+    private volatile boolean cancelled;
+    private volatile boolean hasDeadline;
+    private volatile long deadline;
 
     public BatchGoalSearch(int maxCompCost,
                            BiFunction<Integer, IndexValueMap, Optional<Term>> termOfCostAndVM,
                            Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost,
                            Function<Integer, Iterable<Pair<ValueVector, Term>>> boolTermsOfCost,
                            Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM) {
+        this(maxCompCost, termOfCostAndVM, termsOfCost, boolTermsOfCost, boolOfVM, null);
+    }
+
+    /**
+     * @param pool if not null, {@link #searchThenFirst(int, IndexValueMap)} explores the then-branch candidates of
+     *             the top level goal concurrently on this pool. The result is the same as in sequential mode.
+     */
+    public BatchGoalSearch(int maxCompCost,
+                           BiFunction<Integer, IndexValueMap, Optional<Term>> termOfCostAndVM,
+                           Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost,
+                           Function<Integer, Iterable<Pair<ValueVector, Term>>> boolTermsOfCost,
+                           Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM,
+                           ForkJoinPool pool) {
+        this(maxCompCost, termOfCostAndVM, termsOfCost, boolTermsOfCost, boolOfVM, pool, emptyBuffer());
+    }
+
+    /**
+     * @param buffer the memo table shared by {@link #searchThenFirst(int, IndexValueMap)} and
+     *               {@link #searchCondFirst(int, IndexValueMap)}, e.g. {@link MemoCache#bounded} to cap its memory
+     */
+    public BatchGoalSearch(int maxCompCost,
+                           BiFunction<Integer, IndexValueMap, Optional<Term>> termOfCostAndVM,
+                           Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost,
+                           Function<Integer, Iterable<Pair<ValueVector, Term>>> boolTermsOfCost,
+                           Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM,
+                           ForkJoinPool pool,
+                           MemoCache<SearchResult> buffer) {
+        this(maxCompCost, termOfCostAndVM, termsOfCost, boolTermsOfCost, boolOfVM,
+                vm -> maxSatConditions(vm, boolOfVM), pool, buffer);
+    }
+
+    private BatchGoalSearch(int maxCompCost,
+                            BiFunction<Integer, IndexValueMap, Optional<Term>> termOfCostAndVM,
+                            Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost,
+                            Function<Integer, Iterable<Pair<ValueVector, Term>>> boolTermsOfCost,
+                            Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM,
+                            Function<IndexValueMap, Optional<Pair<Pair<Integer, Term>, List<Integer>>>> maxSatOfVM,
+                            ForkJoinPool pool,
+                            MemoCache<SearchResult> buffer) {
         this.maxCompCost = maxCompCost;
         this.termOfCostAndVM = termOfCostAndVM;
         this.termsOfCost = termsOfCost;
         this.boolTermsOfCost = boolTermsOfCost;
         this.boolOfVM = boolOfVM;
-        this.buffer = emptyBuffer();
+        this.maxSatOfVM = maxSatOfVM;
+        this.buffer = buffer;
+        this.pool = pool;
     }
 
-    public Optional<Pair<Integer, Term>> searchThenFirst(int cost, IndexValueMap currentGoal) {
-        Set<Integer> keySet = currentGoal.keySet();
-        SearchResult result = buffer.get(keySet);
-        if (result != null) {
-            result.foreach((c, term) -> {
-                if (c <= cost) {
-                    return Optional.of(new Pair<>(c, term));
-                }
-            });
-            if (result instanceof NotFoundUnderCost && ((NotFoundUnderCost) result).cost >= cost) {
-                return Optional.empty();
-            }
+    public BatchGoalSearch(int maxCompCost, TermBank bank) {
+        this(maxCompCost, bank, null);
+    }
+
+    public BatchGoalSearch(int maxCompCost, TermBank bank, ForkJoinPool pool) {
+        this(maxCompCost, bank, pool, emptyBuffer());
+    }
+
+    public BatchGoalSearch(int maxCompCost, TermBank bank, ForkJoinPool pool, MemoCache<SearchResult> buffer) {
+        this(maxCompCost, bank::termOfCostAndVM, bank::termsOfCost, bank::boolTermsOfCost, bank::boolOfVM,
+                bank::maxSatCondition, pool, buffer);
+    }
+
+    public MemoCache.Stats memoStats() {
+        return buffer.stats();
+    }
+
+    /**
+     * Makes running and future searches of this instance throw {@link CancellationException}. Cancelled searches
+     * record nothing for the goals they did not finish, so the memo table stays valid for other searches.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /** undoes {@link #cancel()} and any deadline, so searches may run again */
+    void resume() {
+        cancelled = false;
+        hasDeadline = false;
+    }
+
+    /** cancels searches still running at <i>nanoTime</i>, as given by {@link System#nanoTime()} */
+    void cancelAt(long nanoTime) {
+        deadline = nanoTime;
+        hasDeadline = true;
+    }
+
+    private void checkCancelled() {
+        if (cancelled || (hasDeadline && System.nanoTime() - deadline > 0)) {
+            throw new CancellationException();
         }
-        SearchResult buffered = searchResult -> {
-            buffer.put(keySet, searchResult);
-            if (searchResult instanceof NotFoundUnderCost) {
-                return Optional.empty();
-            } else if (searchResult instanceof FoundAtCost) {
-                FoundAtCost foundAtCost = (FoundAtCost) searchResult;
-                return Optional.of(new Pair<>(foundAtCost.cost, foundAtCost.term));
-            }
-        };
+    }
+
+    /**
+     * The cheapest cost a search of the goal could still find, given what the buffer says: a goal that was found
+     * unsolvable under some cost in an earlier round has nothing to offer up to that cost.
+     */
+    private static int firstUnexplored(SearchResult result) {
+        return result instanceof NotFoundUnderCost ? ((NotFoundUnderCost) result).cost + 1 : 1;
+    }
+
+    private Optional<Pair<Integer, Term>> record(GoalKey key, SearchResult result) {
+        buffer.merge(key, result, BatchGoalSearch::moreInformative);
+        if (result instanceof FoundAtCost) {
+            FoundAtCost found = (FoundAtCost) result;
+            subsumption.recordFound(key, found.cost, found.term);
+        }
+        return result.within(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Whether <i>candidate</i>, the best of a shared bound, is <i>own</i>, the best of this search. Only then may it
+     * be memoized: a candidate of another search is not one this search found, and it may have cut branches here that
+     * this search would have explored on its own.
+     */
+    private static boolean isOwn(Pair<Integer, Term> candidate, Pair<Integer, Term> own) {
+        return own != null && own.getFirst().equals(candidate.getFirst()) && own.getSecond().equals(candidate.getSecond());
+    }
+
+    /**
+     * What a search of the goal concludes if it finds nothing under its capped cost: the solution of a superset
+     * goal if that is within <i>cost</i>, otherwise that there is nothing under <i>cost</i>.
+     */
+    private static SearchResult fallback(int cost, Pair<Integer, Term> superset) {
+        if (superset != null && superset.getFirst() <= cost) {
+            return new FoundAtCost(superset.getFirst(), superset.getSecond());
+        }
+        return new NotFoundUnderCost(cost);
+    }
+
+    /** the cheapest single term (no if-then-else) that meets the goal, of cost in [<i>from</i>, <i>cost</i>] */
+    private Optional<Pair<Integer, Term>> directTerm(int from, int cost, IndexValueMap currentGoal) {
         int maxCost = Math.min(maxCompCost, cost);
-        for (int c = 1; c <= maxCost; c++) {
+        for (int c = from; c <= maxCost; c++) {
             Optional<Term> term = termOfCostAndVM.apply(c, currentGoal);
             if (term.isPresent()) {
-                return buffered.apply(new FoundAtCost(c, term.get()));
+                return Optional.of(new Pair<>(c, term.get()));
             }
         }
-        int ifCost = 1;
-        Optional<Pair<Integer, Term>> minCostCandidate = Optional.empty();
-        for (int cThen = 1; cThen <= maxCost - 1 - ifCost; cThen++) {
-            for (Pair<ValueVector, Term> pair : termsOfCost.apply(cThen)) {
-                ValueVector thenVec = pair.getFirst();
-                Term tThen = pair.getSecond();
-                Optional<Triple<IndexValueMap, List<Integer>, List<Integer>>> splitResult = IndexValueMap.splitValueMap(currentGoal, thenVec);
-                if (splitResult.isPresent()) {
-                    Triple<IndexValueMap, List<Integer>, List<Integer>> triple = splitResult.get();
-                    IndexValueMap vm = triple.getFirst();
-                    List<Integer> trueKeys = triple.getSecond();
-                    Optional<Pair<Pair<Integer, Term>, List<Integer>>> maxSatResult = maxSatConditions(vm, boolOfVM);
-                    if (maxSatResult.isPresent()) {
-                        Pair<Pair<Integer, Term>, List<Integer>> pair2 = maxSatResult.get();
-                        Pair<Integer, Term> pair3 = pair2.getFirst();
-                        List<Integer> pair4 = pair2.getSecond();
-                        IndexValueMap elseGoal = currentGoal.remove(pair4);
-                        int costSoFar = cThen + pair3.getFirst() + ifCost;
-                        int maxCostForElse = Math.min(cost, minCostCandidate.map(Pair::getFirst).orElse(Integer.MAX_VALUE) - 1) - costSoFar;
-                        Optional<Pair<Integer, Term>> searchResult = searchThenFirst(maxCostForElse, elseGoal);
-                        if (searchResult.isPresent()) {
-                            int cElse = searchResult.get().getFirst();
-                            Term tElse = searchResult.get().getSecond();
-                            Term t = DSL.ifThenElse(tCond, tThen, tElse);
-                            int totalCost = cElse + costSoFar;
-                            minCostCandidate = Optional.of(new Pair<>(totalCost, t));
-                        }
-                    }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the cheapest term of cost at most <i>cost</i> meeting the goal. A direct term wins ties with an
+     * if-then-else, so the direct scan only bounds the branch search and every buffered {@link FoundAtCost} is the
+     * true minimum. That makes the buffer independent of the order in which goals are searched.
+     *
+     * <p>Besides results buffered for exactly this goal, the search is capped at the cost of a recorded solution of
+     * a superset goal, which solves this goal too; that solution is the answer if nothing cheaper turns up. The
+     * converse does not hold: the split condition is chosen greedily, so a sub-goal without a solution under some
+     * cost says nothing about its supersets.
+     */
+    public Optional<Pair<Integer, Term>> searchThenFirst(int cost, IndexValueMap currentGoal) {
+        return instrumented(SearchPortfolio.Strategy.THEN_FIRST, cost, currentGoal,
+                () -> thenFirst(cost, currentGoal, pool != null, new SearchBound()));
+    }
+
+    /**
+     * Like {@link #searchThenFirst(int, IndexValueMap)}, but the top level goal competes against the candidates in
+     * <i>shared</i>, which may come from concurrent searches of the same goal. A shared candidate within the cost is
+     * returned if nothing cheaper is found.
+     */
+    Optional<Pair<Integer, Term>> searchThenFirst(int cost, IndexValueMap currentGoal, SearchBound shared) {
+        return instrumented(SearchPortfolio.Strategy.THEN_FIRST, cost, currentGoal,
+                () -> thenFirst(cost, currentGoal, pool != null, shared));
+    }
+
+    /** runs a top level search, timing it and reporting it as a {@link SynthesisEvents.CostLevelEvent} */
+    private Optional<Pair<Integer, Term>> instrumented(SearchPortfolio.Strategy strategy, int cost,
+                                                       IndexValueMap currentGoal,
+                                                       Supplier<Optional<Pair<Integer, Term>>> search) {
+        boolean thenFirst = strategy == SearchPortfolio.Strategy.THEN_FIRST;
+        SynthesisMetrics.Timer timer = thenFirst ? SynthesisMetrics.THEN_FIRST : SynthesisMetrics.COND_FIRST;
+        long start = timer.start();
+        SynthesisEvents.CostLevelEvent event = new SynthesisEvents.CostLevelEvent();
+        event.begin();
+        Optional<Pair<Integer, Term>> result = null;
+        try {
+            result = search.get();
+            return result;
+        } finally {
+            timer.stop(start);
+            event.finish(thenFirst ? "thenFirst" : "condFirst", cost, currentGoal, result);
+        }
+    }
+
+    private Optional<Pair<Integer, Term>> thenFirst(int cost, IndexValueMap currentGoal, boolean parallel, SearchBound bound) {
+        GoalKey key = currentGoal.key();
+        SearchResult result = buffer.get(key);
+        if (result != null && result.answers(cost)) {
+            SynthesisMetrics.MEMO_HITS.increment();
+            SynthesisEvents.MemoLookupEvent.emit(key, cost, true);
+            return result.within(cost);
+        }
+        SynthesisMetrics.MEMO_MISSES.increment();
+        SynthesisEvents.MemoLookupEvent.emit(key, cost, false);
+        Pair<Integer, Term> superset = subsumption.supersetSolution(key);
+        int searchCost = superset == null ? cost : Math.min(cost, superset.getFirst());
+        Optional<Pair<Integer, Term>> direct = directTerm(firstUnexplored(result), searchCost, currentGoal);
+        SearchBound own = SearchBound.reportingTo(bound);
+        // the direct term only bounds the branch search, but is the best answer so far if the search is cut short
+        direct.ifPresent(d -> own.offer(d.getFirst(), Long.MAX_VALUE, d.getSecond()));
+        int limit = direct.map(p -> p.getFirst() - 1).orElse(searchCost);
+        int maxThenCost = Math.min(maxCompCost, limit) - 1 - IF_COST;
+        if (parallel) {
+            List<Pair<Integer, Pair<ValueVector, Term>>> candidates = new ArrayList<>();
+            for (int cThen = 1; cThen <= maxThenCost; cThen++) {
+                for (Pair<ValueVector, Term> pair : termsOfCost.apply(cThen)) {
+                    candidates.add(new Pair<>(cThen, pair));
+                }
+            }
+            if (!candidates.isEmpty()) {
+                pool.invoke(new ThenBranchTask(currentGoal, candidates, 0, candidates.size(), limit, own));
+            }
+        } else {
+            long order = 0;
+            for (int cThen = 1; cThen <= maxThenCost; cThen++) {
+                for (Pair<ValueVector, Term> pair : termsOfCost.apply(cThen)) {
+                    exploreThenBranch(currentGoal, cThen, pair, order++, limit, own);
                 }
             }
         }
-        if (minCostCandidate.isPresent()) {
-            return buffered.apply(new FoundAtCost(minCostCandidate.get().getFirst(), minCostCandidate.get().getSecond()));
+        Pair<Integer, Term> minCostCandidate = bound.get();
+        if (minCostCandidate != null && minCostCandidate.getFirst() <= limit) {
+            if (!isOwn(minCostCandidate, own.get())) {
+                // found by another search sharing the bound, and no answer of this one to memoize
+                return Optional.of(minCostCandidate);
+            }
+            return record(key, new FoundAtCost(minCostCandidate.getFirst(), minCostCandidate.getSecond()));
+        } else if (direct.isPresent()) {
+            return record(key, new FoundAtCost(direct.get().getFirst(), direct.get().getSecond()));
         } else {
-            return buffered.apply(new NotFoundUnderCost(cost));
+            return record(key, fallback(cost, superset));
         }
     }
 
-    public Optional<Pair<Integer, Term>> searchCondFirst(int cost, IndexValueMap currentGoal) {
-        Set<Integer> keySet = currentGoal.keySet();
-        SearchResult result = buffer.get(keySet);
-        if (result != null) {
-            result.foreach((c, term) -> {
-                if (c <= cost) {
-                    return Optional.of(new Pair<>(c, term));
-                }
-            });
-            if (result instanceof NotFoundUnderCost && ((NotFoundUnderCost) result).cost >= cost) {
-                return Optional.empty();
+    /**
+     * Tries <i>then</i> as the then-branch of an if-then-else for the goal and offers the resulting candidate to
+     * <i>bound</i>. <i>order</i> is the position of the then-branch in the sequential enumeration order.
+     */
+    private void exploreThenBranch(IndexValueMap currentGoal, int cThen, Pair<ValueVector, Term> then, long order,
+                                   int limit, SearchBound bound) {
+        checkCancelled();
+        ValueVector thenVec = then.getFirst();
+        Term tThen = then.getSecond();
+        Optional<Triple<IndexValueMap, List<Integer>, List<Integer>>> splitResult = IndexValueMap.splitValueMap(currentGoal, thenVec);
+        if (splitResult.isEmpty()) {
+            return;
+        }
+        SynthesisMetrics.SPLITS.increment();
+        Optional<Pair<Pair<Integer, Term>, List<Integer>>> maxSatResult = maxSatOfVM.apply(splitResult.get().getFirst());
+        if (maxSatResult.isEmpty()) {
+            return;
+        }
+        Pair<Integer, Term> cond = maxSatResult.get().getFirst();
+        Term tCond = cond.getSecond();
+        int costSoFar = cThen + cond.getFirst() + IF_COST;
+        SynthesisEvents.GoalSplitEvent.emit(currentGoal, maxSatResult.get().getSecond().size(), limit, costSoFar);
+        int maxCostForElse = bound.limitFor(order, limit) - costSoFar;
+        if (maxCostForElse < 1) {
+            return;
+        }
+        IndexValueMap elseGoal = currentGoal.remove(maxSatResult.get().getSecond());
+        Optional<Pair<Integer, Term>> searchResult = thenFirst(maxCostForElse, elseGoal, false, new SearchBound());
+        if (searchResult.isPresent()) {
+            int cElse = searchResult.get().getFirst();
+            Term tElse = searchResult.get().getSecond();
+            bound.offer(cElse + costSoFar, order, DSL.if_(tCond, tThen, tElse));
+        }
+    }
+
+    /** explores a contiguous range of then-branch candidates, splitting it in halves until single candidates */
+    @SuppressWarnings("serial")
+    private class ThenBranchTask extends RecursiveAction {
+        private final IndexValueMap currentGoal;
+        private final List<Pair<Integer, Pair<ValueVector, Term>>> candidates;
+        private final int from;
+        private final int until;
+        private final int limit;
+        private final SearchBound bound;
+
+        ThenBranchTask(IndexValueMap currentGoal, List<Pair<Integer, Pair<ValueVector, Term>>> candidates,
+                       int from, int until, int limit, SearchBound bound) {
+            this.currentGoal = currentGoal;
+            this.candidates = candidates;
+            this.from = from;
+            this.until = until;
+            this.limit = limit;
+            this.bound = bound;
+        }
+
+        @Override
+        protected void compute() {
+            if (until - from == 1) {
+                Pair<Integer, Pair<ValueVector, Term>> candidate = candidates.get(from);
+                exploreThenBranch(currentGoal, candidate.getFirst(), candidate.getSecond(), from, limit, bound);
+                return;
             }
+            int mid = (from + until) >>> 1;
+            invokeAll(new ThenBranchTask(currentGoal, candidates, from, mid, limit, bound),
+                    new ThenBranchTask(currentGoal, candidates, mid, until, limit, bound));
         }
-        SearchResult buffered = searchResult -> {
-            buffer.put(keySet, searchResult);
-            if (searchResult instanceof NotFoundUnderCost) {
-                return Optional.empty();
-            } else if (searchResult instanceof FoundAtCost) {
-                FoundAtCost foundAtCost = (FoundAtCost) searchResult;
-                return Optional.of(new Pair<>(foundAtCost.cost, foundAtCost.term));
+    }
+
+    public Optional<Pair<Integer, Term>> searchCondFirst(int cost, IndexValueMap currentGoal) {
+        return instrumented(SearchPortfolio.Strategy.COND_FIRST, cost, currentGoal,
+                () -> condFirst(cost, currentGoal, null));
+    }
+
+    /**
+     * Anytime search: tells <i>onImprovement</i> about every cheaper solution of the top level goal as soon as it
+     * is found, and gives up after <i>timeoutNanos</i>, returning the best solution found by then. Without a
+     * timeout the result is that of the plain search.
+     *
+     * <p>The timeout only shortens a deadline set by {@link #cancelAt}, and is lifted again afterwards. A
+     * {@link #cancel()} or an earlier deadline still stops the search with {@link CancellationException} and stays
+     * in effect.
+     */
+    public Optional<Pair<Integer, Term>> searchAnytime(SearchPortfolio.Strategy strategy, int cost, IndexValueMap currentGoal,
+                                                       long timeoutNanos, BiConsumer<Integer, Term> onImprovement) {
+        SearchBound bound = new SearchBound(onImprovement);
+        boolean hadDeadline = hasDeadline;
+        long previousDeadline = deadline;
+        long timeout = System.nanoTime() + timeoutNanos;
+        boolean ownDeadline = !hadDeadline || timeout - previousDeadline < 0;
+        if (ownDeadline) {
+            cancelAt(timeout);
+        }
+        try {
+            return instrumented(strategy, cost, currentGoal, () -> strategy == SearchPortfolio.Strategy.THEN_FIRST
+                    ? thenFirst(cost, currentGoal, pool != null, bound)
+                    : condFirst(cost, currentGoal, bound));
+        } catch (CancellationException e) {
+            if (cancelled || !ownDeadline) {
+                throw e;
             }
-        };
-        int maxCost = Math.min(maxCompCost, cost);
-        for (int c = 1; c <= maxCost; c++) {
-            Optional<Term> term = termOfCostAndVM.apply(c, currentGoal);
-            if (term.isPresent()) {
-                return buffered.apply(new FoundAtCost(c, term.get()));
+            return Optional.ofNullable(bound.get());
+        } finally {
+            if (ownDeadline) {
+                deadline = previousDeadline;
+                hasDeadline = hadDeadline;
             }
         }
-        int ifCost = 1;
+    }
+
+    /** the cond-first counterpart of {@link #searchThenFirst(int, IndexValueMap, SearchBound)} */
+    Optional<Pair<Integer, Term>> searchCondFirst(int cost, IndexValueMap currentGoal, SearchBound shared) {
+        return instrumented(SearchPortfolio.Strategy.COND_FIRST, cost, currentGoal,
+                () -> condFirst(cost, currentGoal, shared));
+    }
+
+    private Optional<Pair<Integer, Term>> condFirst(int cost, IndexValueMap currentGoal, SearchBound shared) {
+        GoalKey key = currentGoal.key();
+        SearchResult result = buffer.get(key);
+        if (result != null && result.answers(cost)) {
+            SynthesisMetrics.MEMO_HITS.increment();
+            SynthesisEvents.MemoLookupEvent.emit(key, cost, true);
+            return result.within(cost);
+        }
+        SynthesisMetrics.MEMO_MISSES.increment();
+        SynthesisEvents.MemoLookupEvent.emit(key, cost, false);
+        Pair<Integer, Term> superset = subsumption.supersetSolution(key);
+        int searchCost = superset == null ? cost : Math.min(cost, superset.getFirst());
+        Optional<Pair<Integer, Term>> direct = directTerm(firstUnexplored(result), searchCost, currentGoal);
+        if (shared != null) {
+            direct.ifPresent(d -> shared.offer(d.getFirst(), Long.MAX_VALUE, d.getSecond()));
+        }
+        int limit = direct.map(p -> p.getFirst() - 1).orElse(searchCost);
+        int ifCost = IF_COST;
         Optional<Pair<Integer, Term>> minCostCandidate = Optional.empty();
-        for (int cCond = 1; cCond <= Math.min(maxCompCost, cost - ifCost - 2); cCond++) {
+        for (int cCond = 1; cCond <= Math.min(maxCompCost, limit - ifCost - 2); cCond++) {
             for (Pair<ValueVector, Term> pair : boolTermsOfCost.apply(cCond)) {
+                checkCancelled();
                 ValueVector condVec = pair.getFirst();
                 Term tCond = pair.getSecond();
                 Optional<Pair<IndexValueMap, IndexValueMap>> splitResult = splitGoal(condVec, currentGoal);
                 if (splitResult.isPresent()) {
+                    SynthesisMetrics.SPLITS.increment();
                     Pair<IndexValueMap, IndexValueMap> pair2 = splitResult.get();
                     IndexValueMap thenGoal = pair2.getFirst();
                     IndexValueMap elseGoal = pair2.getSecond();
+                    SynthesisEvents.GoalSplitEvent.emit(currentGoal, thenGoal.size(), limit, cCond + ifCost);
                     Optional<Pair<Integer, Term>> thenCandidate = Optional.empty();
-                    for (int cThen = 1; cThen <= Math.min(maxCompCost, cost - ifCost - cCond - 1); cThen++) {
-                        for (Pair<ValueVector, Term> pair3 : termsOfCost.apply(cThen)) {
-                            ValueVector vv = pair3.getFirst();
-                            Term term = pair3.getSecond();
-                            if (IndexValueMap.matchVector(thenGoal, vv)) {
-                                thenCandidate = Optional.of(new Pair<>(cThen, term));
-                                break;
-                            }
-                        }
-                        if (thenCandidate.isPresent()) {
+                    for (int cThen = 1; cThen <= Math.min(maxCompCost, limit - ifCost - cCond - 1); cThen++) {
+                        Optional<Term> term = termOfCostAndVM.apply(cThen, thenGoal);
+                        if (term.isPresent()) {
+                            thenCandidate = Optional.of(new Pair<>(cThen, term.get()));
                             break;
                         }
                     }
@@ -202,25 +539,38 @@ public class BatchGoalSearch {
                         int cThen = thenCandidate.get().getFirst();
                         Term tThen = thenCandidate.get().getSecond();
                         int costSoFar = cThen + cCond + ifCost;
-                        int maxCostForElse = Math.min(cost, minCostCandidate.map(Pair::getFirst).orElse(Integer.MAX_VALUE) - 1) - costSoFar;
-                        Optional<Pair<Integer, Term>> searchResult = searchCondFirst(maxCostForElse, elseGoal);
+                        int cap = shared == null ? limit : shared.limitFor(Long.MAX_VALUE, limit);
+                        int maxCostForElse = Math.min(cap, minCostCandidate.map(Pair::getFirst).orElse(Integer.MAX_VALUE) - 1) - costSoFar;
+                        if (maxCostForElse < 1) {
+                            continue;
+                        }
+                        Optional<Pair<Integer, Term>> searchResult = condFirst(maxCostForElse, elseGoal, null);
                         if (searchResult.isPresent()) {
                             int cElse = searchResult.get().getFirst();
                             Term tElse = searchResult.get().getSecond();
-                            Term t = DSL.ifThenElse(tCond, tThen, tElse);
+                            Term t = DSL.if_(tCond, tThen, tElse);
                             int totalCost = cElse + costSoFar;
                             minCostCandidate = Optional.of(new Pair<>(totalCost, t));
+                            if (shared != null) {
+                                shared.offer(totalCost, Long.MAX_VALUE, t);
+                            }
                         }
                     }
                 }
             }
         }
+        Pair<Integer, Term> sharedCandidate = shared == null ? null : shared.get();
+        if (sharedCandidate != null && sharedCandidate.getFirst() <= limit
+                && !isOwn(sharedCandidate, minCostCandidate.orElse(null))) {
+            // found by another search sharing the bound, and no answer of this one to memoize
+            return Optional.of(sharedCandidate);
+        }
         if (minCostCandidate.isPresent()) {
-            return buffered.apply(new FoundAtCost(minCostCandidate.get().getFirst(), minCostCandidate.get().getSecond()));
+            return record(key, new FoundAtCost(minCostCandidate.get().getFirst(), minCostCandidate.get().getSecond()));
+        } else if (direct.isPresent()) {
+            return record(key, new FoundAtCost(direct.get().getFirst(), direct.get().getSecond()));
         } else {
-            return buffered.apply(new NotFoundUnderCost(cost));
+            return record(key, fallback(cost, superset));
         }
     }
 }
-
-
@@ -0,0 +1,95 @@
+package escher;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Persistent binary tree. Building a node shares its subtrees, and every node caches the size and the deep hash
+ * of the tree below it, so equality between trees of different shape or content usually fails in O(1) and
+ * comparing trees that share subtrees stops at the shared parts.
+ */
+public final class BinaryTree<A> {
+    private static final BinaryTree<?> LEAF = new BinaryTree<>(null, null, null);
+
+    private final A tag;
+    private final BinaryTree<A> left;
+    private final BinaryTree<A> right;
+    private final int size;
+    private final int hash;
+
+    private BinaryTree(A tag, BinaryTree<A> left, BinaryTree<A> right) {
+        this.tag = tag;
+        this.left = left;
+        this.right = right;
+        if (left == null) {
+            this.size = 0;
+            this.hash = 1;
+        } else {
+            this.size = 1 + left.size + right.size;
+            this.hash = 31 * (31 * (31 + Objects.hashCode(tag)) + left.hash) + right.hash;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A> BinaryTree<A> leaf() {
+        return (BinaryTree<A>) LEAF;
+    }
+
+    public static <A> BinaryTree<A> node(A tag, BinaryTree<A> left, BinaryTree<A> right) {
+        return new BinaryTree<>(tag, left, right);
+    }
+
+    public boolean isLeaf() {
+        return left == null;
+    }
+
+    /** the tag of a node; the tree must not be a leaf */
+    public A tag() {
+        return tag;
+    }
+
+    public BinaryTree<A> left() {
+        return left;
+    }
+
+    public BinaryTree<A> right() {
+        return right;
+    }
+
+    /** number of nodes */
+    public int size() {
+        return size;
+    }
+
+    public <B> BinaryTree<B> map(Function<A, B> f) {
+        if (isLeaf()) {
+            return leaf();
+        }
+        return node(f.apply(tag), left.map(f), right.map(f));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BinaryTree)) {
+            return false;
+        }
+        BinaryTree<?> that = (BinaryTree<?>) o;
+        if (size != that.size || hash != that.hash) {
+            return false;
+        }
+        return isLeaf() || (Objects.equals(tag, that.tag) && left.equals(that.left) && right.equals(that.right));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return isLeaf() ? "L" : "T(" + tag + ", " + left + ", " + right + ")";
+    }
+}
@@ -0,0 +1,93 @@
+package escher;
+
+import java.util.List;
+
+/**
+ * Bitset index over one cost level of boolean terms: for every term, the examples on which it is TRUE and the
+ * examples on which it is FALSE, packed into 64-bit words. Matching a term against a boolean goal then takes a
+ * few word operations per 64 examples and needs no projection of the level.
+ */
+class BoolVectorIndex {
+    private final List<Pair<ValueVector, Term>> terms;
+    private final int words;
+    private final long[][] trueBits;
+    private final long[][] falseBits;
+
+    BoolVectorIndex(List<Pair<ValueVector, Term>> terms, int exampleCount) {
+        this.terms = terms;
+        this.words = (exampleCount + 63) >>> 6;
+        this.trueBits = new long[terms.size()][words];
+        this.falseBits = new long[terms.size()][words];
+        for (int j = 0; j < terms.size(); j++) {
+            ValueVector vec = terms.get(j).getFirst();
+            for (int i = 0; i < exampleCount; i++) {
+                termvalue v = vec.get(i);
+                if (v == valueBool.TRUE) {
+                    trueBits[j][i >>> 6] |= 1L << i;
+                } else if (v == valueBool.FALSE) {
+                    falseBits[j][i >>> 6] |= 1L << i;
+                }
+            }
+        }
+    }
+
+    int words() {
+        return words;
+    }
+
+    Term term(int position) {
+        return terms.get(position).getSecond();
+    }
+
+    /**
+     * Among the terms that are FALSE on every example of <i>goal</i> outside <i>wantTrue</i> and TRUE on a
+     * non-empty prefix (in index order) of <i>wantTrue</i> and FALSE on the rest of it, finds the first one whose
+     * prefix is longest, provided that is longer than <i>atLeast</i>.
+     *
+     * @param prefix receives the length of the prefix of the term found
+     * @return the position of the term in the level, or -1
+     */
+    int longestPrefix(long[] goal, long[] wantTrue, int atLeast, int[] prefix) {
+        int best = -1;
+        int bestLength = atLeast;
+        for (int j = 0; j < trueBits.length; j++) {
+            int n = prefixLength(trueBits[j], falseBits[j], goal, wantTrue);
+            if (n > bestLength) {
+                best = j;
+                bestLength = n;
+            }
+        }
+        prefix[0] = bestLength;
+        return best;
+    }
+
+    /** the length of the prefix of <i>wantTrue</i> on which the term is TRUE, or -1 if it does not fit the goal */
+    private int prefixLength(long[] t, long[] f, long[] goal, long[] wantTrue) {
+        int n = 0;
+        boolean gap = false;
+        for (int w = 0; w < words; w++) {
+            long g = goal[w];
+            if ((g & ~(t[w] | f[w])) != 0) {
+                // an error on the goal
+                return -1;
+            }
+            long tt = t[w] & g;
+            if ((tt & ~wantTrue[w]) != 0) {
+                return -1;
+            }
+            if (gap && tt != 0) {
+                return -1;
+            }
+            long missing = wantTrue[w] & ~tt;
+            if (missing != 0) {
+                // every TRUE bit has to lie below the first wanted bit that is missing
+                if ((tt & -(missing & -missing)) != 0) {
+                    return -1;
+                }
+                gap = true;
+            }
+            n += Long.bitCount(tt);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,58 @@
+package escher;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU table from argument lists to the results of one {@link ComponentImpl}. Keys rely on the structural
+ * equality of {@link termvalue}s, so equal lists and trees built by different calls share an entry.
+ */
+class CallCache {
+    private final int capacity;
+    private final LinkedHashMap<List<termvalue>, termvalue> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    CallCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    termvalue get(List<termvalue> args) {
+        termvalue value;
+        synchronized (this) {
+            value = map.get(args);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /** results are stored after the call returns, since a recursive call may consult the cache again meanwhile */
+    synchronized void put(List<termvalue> args, termvalue value) {
+        map.put(args, value);
+        if (map.size() > capacity) {
+            map.remove(map.keySet().iterator().next());
+            evictions.increment();
+        }
+    }
+
+    synchronized void clear() {
+        map.clear();
+    }
+
+    MemoCache.Stats stats() {
+        int size;
+        synchronized (this) {
+            size = map.size();
+        }
+        return new MemoCache.Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+}
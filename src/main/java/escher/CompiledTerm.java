@@ -0,0 +1,146 @@
+package escher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A term with its variables resolved to argument slots and its components resolved to their implementations,
+ * so executing it does no name lookups. Every component node owns the argument list it hands to its component
+ * and refills it on each execution, so the term itself allocates nothing; components must not keep that list.
+ * Compile a term once with {@link #compile} and then run it against one argument array per example.
+ *
+ * <p>A compiled term is not thread safe, since its argument lists are shared by all executions. It may be
+ * re-entered from a recursive component on the same thread: a node that is already running falls back to a
+ * fresh argument list.
+ *
+ * <p>Candidates that may not terminate are run with a {@link Fuel} budget instead, which turns divergence into
+ * {@link valueerror} at the cost of one counter update per component call.
+ */
+public abstract class CompiledTerm {
+    public termvalue execute(termvalue[] args) throws Exception {
+        return execute(args, null);
+    }
+
+    /** @param fuel the budget of this evaluation, or null to run unbounded */
+    public abstract termvalue execute(termvalue[] args, Fuel fuel) throws Exception;
+
+    /**
+     * @param varNames the variable bound to each argument slot
+     * @param compMap  implementations of every component the term uses
+     */
+    public static CompiledTerm compile(Term term, List<String> varNames, Map<String, ComponentImpl> compMap) {
+        if (term instanceof Var) {
+            String name = ((Var) term).getName();
+            int slot = varNames.indexOf(name);
+            if (slot < 0) {
+                throw new ExecutionError("variable '" + name + "' not in scope!");
+            }
+            return new VarNode(slot);
+        } else if (term instanceof Component) {
+            Component c = (Component) term;
+            ComponentImpl impl = compMap.get(c.getName());
+            if (impl == null) {
+                throw new ExecutionError("component '" + c.getName() + "' not in scope!");
+            }
+            List<Term> terms = c.getTerms();
+            CompiledTerm[] children = new CompiledTerm[terms.size()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = compile(terms.get(i), varNames, compMap);
+            }
+            return new ComponentNode(impl, children);
+        } else if (term instanceof If) {
+            If t = (If) term;
+            return new IfNode(compile(t.getCondition(), varNames, compMap),
+                    compile(t.getThenBranch(), varNames, compMap),
+                    compile(t.getElseBranch(), varNames, compMap));
+        }
+        throw new IllegalArgumentException("unknown term: " + term.show());
+    }
+
+    /** the argument array for <i>varMap</i>, laid out as expected by terms compiled with <i>varNames</i> */
+    public static termvalue[] slots(List<String> varNames, Map<String, termvalue> varMap) {
+        termvalue[] args = new termvalue[varNames.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = varMap.get(varNames.get(i));
+        }
+        return args;
+    }
+
+    private static final class VarNode extends CompiledTerm {
+        private final int slot;
+
+        private VarNode(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public termvalue execute(termvalue[] args, Fuel fuel) {
+            return args[slot];
+        }
+    }
+
+    private static final class ComponentNode extends CompiledTerm {
+        private final ComponentImpl impl;
+        private final CompiledTerm[] children;
+        private final termvalue[] values;
+        /** a view of <i>values</i>, so refilling the array refills the list */
+        private final List<termvalue> valueList;
+        private boolean running;
+
+        private ComponentNode(ComponentImpl impl, CompiledTerm[] children) {
+            this.impl = impl;
+            this.children = children;
+            this.values = new termvalue[children.length];
+            this.valueList = Arrays.asList(values);
+        }
+
+        @Override
+        public termvalue execute(termvalue[] args, Fuel fuel) throws Exception {
+            if (running) {
+                return execute(args, fuel, new termvalue[children.length]);
+            }
+            running = true;
+            try {
+                return execute(args, fuel, values);
+            } finally {
+                running = false;
+            }
+        }
+
+        private termvalue execute(termvalue[] args, Fuel fuel, termvalue[] buffer) throws Exception {
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = children[i].execute(args, fuel);
+                if (fuel != null && fuel.exhausted()) {
+                    return valueerror.INSTANCE;
+                }
+            }
+            return impl.executeEfficient(buffer == values ? valueList : Arrays.asList(buffer), fuel);
+        }
+    }
+
+    private static final class IfNode extends CompiledTerm {
+        private final CompiledTerm condition;
+        private final CompiledTerm thenBranch;
+        private final CompiledTerm elseBranch;
+
+        private IfNode(CompiledTerm condition, CompiledTerm thenBranch, CompiledTerm elseBranch) {
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        public termvalue execute(termvalue[] args, Fuel fuel) throws Exception {
+            termvalue cv = condition.execute(args, fuel);
+            if (cv == valueerror.INSTANCE) {
+                return valueerror.INSTANCE;
+            } else if (cv == valueBool.TRUE) {
+                return thenBranch.execute(args, fuel);
+            } else if (cv == valueBool.FALSE) {
+                return elseBranch.execute(args, fuel);
+            }
+            throw new ExecutionError("Branch condition evaluated to false type");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package escher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Iterative deepening over the cost of one goal: round k searches for a solution of cost k, knowing there is
+ * none cheaper. Rounds share everything a {@link BatchGoalSearch} keeps, which saves part of the repeated work:
+ * <ul>
+ *     <li>the term bank has already enumerated the levels of the earlier rounds,</li>
+ *     <li>sub-goals settled in earlier rounds at a cost at least as high are answered by the memo table, and</li>
+ *     <li>goals known to be unsolvable under some cost resume their direct-term scan just above it.</li>
+ * </ul>
+ * The branch search is not resumed: a goal that is searched again at a higher cost tries all of its then-branches
+ * (or conditions) from the start, with the larger budget, so round k repeats the branch enumeration of the rounds
+ * before it.
+ *
+ * <p>Call caches of the library are cleared after every round: the arguments a round applies components to are
+ * mostly new at its cost, so entries of earlier rounds would only crowd out the ones still being hit.
+ *
+ * <p>Long jobs can be time-sliced with {@link #runFor} or stopped from another thread with {@link #pause}. An
+ * interrupted round keeps what it finished in the memo table and picks up from there when run again.
+ */
+public class CostScheduler {
+    private final BatchGoalSearch search;
+    private final IndexValueMap goal;
+    private final int maxCost;
+    private final List<ComponentImpl> library;
+    private final SearchPortfolio.Strategy strategy;
+    private int exploredCost;
+    /** set by {@link #pause}; owned here, since the search's own flag is reset after every round */
+    private volatile boolean paused;
+    private Optional<Pair<Integer, Term>> result = Optional.empty();
+
+    /**
+     * @param search should not be used for other goals concurrently, since pausing cancels all of its searches
+     */
+    public CostScheduler(BatchGoalSearch search, IndexValueMap goal, int maxCost) {
+        this(search, goal, maxCost, List.of());
+    }
+
+    /**
+     * @param library the components the term bank of <i>search</i> applies, whose call caches are cleared
+     *                between rounds; leave out components that searches of other goals are using at the same time
+     */
+    public CostScheduler(BatchGoalSearch search, IndexValueMap goal, int maxCost, Collection<ComponentImpl> library) {
+        this(search, goal, maxCost, library, SearchPortfolio.Strategy.THEN_FIRST);
+    }
+
+    /**
+     * @param strategy how every round searches; the rounds themselves are the same for both
+     */
+    public CostScheduler(BatchGoalSearch search, IndexValueMap goal, int maxCost, Collection<ComponentImpl> library,
+                         SearchPortfolio.Strategy strategy) {
+        this.search = search;
+        this.goal = goal;
+        this.maxCost = maxCost;
+        this.library = List.copyOf(library);
+        this.strategy = strategy;
+    }
+
+    /** the cost up to which the goal is known to be unsolvable, or its solution's cost once found */
+    public synchronized int exploredCost() {
+        return exploredCost;
+    }
+
+    public synchronized boolean isDone() {
+        return result.isPresent() || exploredCost >= maxCost;
+    }
+
+    public synchronized Optional<Pair<Integer, Term>> result() {
+        return result;
+    }
+
+    /**
+     * Runs the next round to completion unless paused.
+     *
+     * @return whether the round finished
+     */
+    public synchronized boolean step() {
+        unpause();
+        return round();
+    }
+
+    /** forgets an earlier pause; one that lands while this runs still counts, as the search is resumed first */
+    private void unpause() {
+        search.resume();
+        paused = false;
+    }
+
+    private boolean round() {
+        if (isDone()) {
+            return true;
+        }
+        if (paused) {
+            return false;
+        }
+        try {
+            Optional<Pair<Integer, Term>> found = strategy == SearchPortfolio.Strategy.THEN_FIRST
+                    ? search.searchThenFirst(exploredCost + 1, goal)
+                    : search.searchCondFirst(exploredCost + 1, goal);
+            exploredCost++;
+            result = found;
+            return true;
+        } catch (CancellationException e) {
+            return false;
+        } finally {
+            search.resume();
+            library.forEach(ComponentImpl::clearCallCache);
+        }
+    }
+
+    /**
+     * Runs rounds until the goal is solved, <i>maxCost</i> is exhausted or <i>nanos</i> have passed, whichever
+     * comes first, and returns the solution if there is one yet.
+     */
+    public synchronized Optional<Pair<Integer, Term>> runFor(long nanos) {
+        unpause();
+        return runUntil(System.nanoTime() + nanos);
+    }
+
+    /**
+     * Like {@link #runFor}, but stops at the {@link System#nanoTime()} <i>deadline</i>, or never if it is
+     * {@link Long#MAX_VALUE}. Unlike {@link #runFor} it keeps an earlier pause, so a scheduler that is paused
+     * before it is started does not run at all.
+     */
+    public synchronized Optional<Pair<Integer, Term>> runUntil(long deadline) {
+        while (!isDone()) {
+            if (deadline != Long.MAX_VALUE) {
+                search.cancelAt(deadline);
+            }
+            if (!round()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops the running round, if any, at its next candidate, and the rounds {@link #runFor} would start after it;
+     * safe to call from any thread. A pause that comes too late to stop the round still ends the run after it.
+     */
+    public void pause() {
+        paused = true;
+        search.cancel();
+    }
+}
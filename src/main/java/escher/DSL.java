@@ -21,14 +21,14 @@ public class DSL {
         return new ComponentFromString(name);
     }
     public static Var v(String name) {
-        return new Var(name);
+        return Var.of(name);
     }
 
     public static If if_(Term condition, Term thenBranch, Term elseBranch) {
-        return new If(condition, thenBranch, elseBranch);
+        return If.of(condition, thenBranch, elseBranch);
     }
     public static Var var(String name) {
-        return new Var(name);
+        return Var.of(name);
     }
     public static TVar tyVar(int id) {
         return new TVar(id);
@@ -43,10 +43,10 @@ public class DSL {
         return new valueBool(b);
     }
     public static ValueTree binaryTreeConversion(BinaryTree<termvalue> t) {
-        return new ValueTree(t);
+        return ValueTree.of(t);
     }
     public static < A > ValueTree binaryTreeConversion(BinaryTree< A > t, Function< A, termvalue> conv) {
-        return new ValueTree(t.map(conv));
+        return ValueTree.of(t.map(conv));
     }
     public static ValuePair pairConversion(termvalue a, termvalue b) {
         return new ValuePair(a, b);
@@ -56,7 +56,7 @@ public class DSL {
     }
 
     public static ValueList listValue(termvalue... terms) {
-        return new ValueList(Arrays.asList(terms));
+        return ValueList.of(Arrays.asList(terms));
     }
     public static final TInt tyInt = TInt.of();
     public static final TBool tyBool = TBool.of();
@@ -4,24 +4,41 @@ import java.util.Set;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
-import escher.BatchGoalSearch.*;
-
-public class DynamicGoalSearch<ArgListCompare, CostAndVMToTerm, CostToTerms, VMToBool, TermToTerm> {
-    private int maxCompCost;
-    private Set<ComponentImpl> envComps;
-    private ArgListCompare argListCompare;
-    private CostAndVMToTerm termOfCostAndVM;
-    private CostToTerms termsOfCost;
-    private VMToBool boolOfVM;
-    private String holeName;
-    private List<Map<String, termvalue>> varMaps;
-    private Map<String, ComponentImpl> envCompMap;
-
-    public DynamicGoalSearch(int maxCompCost, ComponentSignature signature, Set<ComponentImpl> envComps,
-                             ArgListCompare argListCompare, List<ArgList> inputVector,
-                             CostAndVMToTerm termOfCostAndVM, CostToTerms termsOfCost, VMToBool boolOfVM) {
+public class DynamicGoalSearch {
+    private static final int IF_COST = 1;
+
+    private final int maxCompCost;
+    private final Synthesis.ComponentSignature signature;
+    private final Set<ComponentImpl> envComps;
+    private final BiPredicate<List<termvalue>, List<termvalue>> argListCompare;
+    private final List<List<termvalue>> inputVector;
+    private final BiFunction<Integer, IndexValueMap, Optional<Term>> termOfCostAndVM;
+    private final Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost;
+    private final Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM;
+    private final String holeName;
+    private final Term hole;
+    private final List<Map<String, termvalue>> varMaps;
+    private final Map<String, ComponentImpl> envCompMap;
+
+    /**
+     * @param inputVector the argument lists of the examples, in the order of the goal indices
+     */
+    public DynamicGoalSearch(int maxCompCost, Synthesis.ComponentSignature signature, Set<ComponentImpl> envComps,
+                             BiPredicate<List<termvalue>, List<termvalue>> argListCompare,
+                             List<List<termvalue>> inputVector,
+                             BiFunction<Integer, IndexValueMap, Optional<Term>> termOfCostAndVM,
+                             Function<Integer, Iterable<Pair<ValueVector, Term>>> termsOfCost,
+                             Function<IndexValueMap, Optional<Pair<Integer, Term>>> boolOfVM) {
         this.maxCompCost = maxCompCost;
         this.signature = signature;
         this.envComps = envComps;
@@ -31,163 +48,305 @@ public class DynamicGoalSearch<ArgListCompare, CostAndVMToTerm, CostToTerms, VMT
         this.termsOfCost = termsOfCost;
         this.boolOfVM = boolOfVM;
         this.holeName = "HOLE";
+        this.hole = Component.of(holeName, List.of());
         this.varMaps = new ArrayList<>();
-        for (int i = 0; i < inputVector.size(); i++) {
+        for (List<termvalue> args : inputVector) {
             Map<String, termvalue> varMap = new HashMap<>();
-
+            for (int i = 0; i < signature.argNames.size(); i++) {
+                varMap.put(signature.argNames.get(i), args.get(i));
+            }
             this.varMaps.add(varMap);
         }
         this.envCompMap = new HashMap<>();
         for (ComponentImpl comp : envComps) {
             this.envCompMap.put(comp.name, comp);
         }
-
-
     }
 
     public ComponentImpl assembleRecProgram(Term term) {
         return ComponentImpl.recursiveImpl(signature, envCompMap, argListCompare, term);
     }
 
-    public SearchResult searchMin(int cost, IndexValueMap currentGoal, List<List<AscendRecSynthesizer.Pair<Term, ExtendedValueVec>>> recTermsOfReturnType,
-                                  TermToTerm fillTermToHole, boolean isFirstBranch, Option<List<String>> prefixTrigger) {
+    /** the evaluator of the initial partial program, which is just the hole */
+    public IncrementalRecEvaluator rootEvaluator() {
+        return new IncrementalRecEvaluator(signature.name, signature.argNames, holeName, hole,
+                varMaps, envCompMap, argListCompare);
+    }
+
+    /**
+     * The recursive terms of each cost with their outputs under the initial partial program, where every
+     * self-call is unknown; this is the <i>recTermsOfReturnType</i> of the first {@link #searchMin}. Within a cost
+     * the terms are ordered by how many outputs are unknown, fewest first.
+     */
+    public List<List<Pair<Term, ExtendedValueVec>>> rootRecTerms(List<List<Term>> recTermsOfCost) {
+        Map<String, ExtendedCompImpl> compMap = new HashMap<>();
+        envCompMap.forEach((name, comp) -> compMap.put(name, ExtendedCompImpl.of(comp)));
+        compMap.put(signature.name, ExtendedCompImpl.hole());
+        List<Map<String, ExtendedValue>> extendedVarMaps = new ArrayList<>(varMaps.size());
+        for (Map<String, termvalue> varMap : varMaps) {
+            extendedVarMaps.add(new HashMap<>(varMap));
+        }
+        List<List<Pair<Term, ExtendedValueVec>>> recTerms = new ArrayList<>(recTermsOfCost.size());
+        for (List<Term> terms : recTermsOfCost) {
+            List<Pair<Term, ExtendedValueVec>> withValues = new ArrayList<>(terms.size());
+            for (Term term : terms) {
+                withValues.add(new Pair<>(term, new ExtendedValueVec(term.executeInExtendedEnvs(extendedVarMaps,
+                        compMap))));
+            }
+            recTerms.add(byUnknowns(withValues));
+        }
+        return recTerms;
+    }
+
+    /**
+     * <i>recTerms</i> with the fewest unknown outputs first, and otherwise in their given order. A match of such a
+     * term leaves fewer examples to check against the complete program, so the cheap checks are tried first.
+     */
+    private static List<Pair<Term, ExtendedValueVec>> byUnknowns(List<Pair<Term, ExtendedValueVec>> recTerms) {
+        List<List<Pair<Term, ExtendedValueVec>>> buckets = new ArrayList<>();
+        for (Pair<Term, ExtendedValueVec> pair : recTerms) {
+            int unknown = valueunknown.count(pair.getSecond().values());
+            while (buckets.size() <= unknown) {
+                buckets.add(new ArrayList<>());
+            }
+            buckets.get(unknown).add(pair);
+        }
+        List<Pair<Term, ExtendedValueVec>> ordered = new ArrayList<>(recTerms.size());
+        buckets.forEach(ordered::addAll);
+        return ordered;
+    }
+
+    /**
+     * The cheapest term of cost at most <i>cost</i> that meets <i>currentGoal</i> when put in the hole of the
+     * partial program <i>fillTermToHole</i>. <i>recTermsOfReturnType</i> holds, per cost, the recursive terms with
+     * their outputs under that partial program, as given by <i>recEvaluator</i>.
+     */
+    public Optional<Pair<Integer, Term>> searchMin(int cost, IndexValueMap currentGoal,
+                                                   List<List<Pair<Term, ExtendedValueVec>>> recTermsOfReturnType,
+                                                   UnaryOperator<Term> fillTermToHole, IncrementalRecEvaluator recEvaluator,
+                                                   boolean isFirstBranch, Optional<List<Term>> prefixTrigger) {
+        long start = SynthesisMetrics.SEARCH_MIN.start();
+        try {
+            return searchMinUntimed(cost, currentGoal, recTermsOfReturnType, fillTermToHole, recEvaluator,
+                    isFirstBranch, prefixTrigger, null, Long.MAX_VALUE);
+        } finally {
+            SynthesisMetrics.SEARCH_MIN.stop(start);
+        }
+    }
+
+    /**
+     * Anytime {@link #searchMin}: tells <i>onImprovement</i> about every cheaper term for the top level hole as
+     * soon as it is found, and gives up after <i>timeoutNanos</i>, returning the best term found by then. If it
+     * does not time out, the result is that of {@link #searchMin}. As with {@link BatchGoalSearch#searchAnytime}, the
+     * costs <i>onImprovement</i> sees never increase.
+     */
+    public Optional<Pair<Integer, Term>> searchMinAnytime(int cost, IndexValueMap currentGoal,
+                                                          List<List<Pair<Term, ExtendedValueVec>>> recTermsOfReturnType,
+                                                          UnaryOperator<Term> fillTermToHole,
+                                                          IncrementalRecEvaluator recEvaluator, boolean isFirstBranch,
+                                                          long timeoutNanos, BiConsumer<Integer, Term> onImprovement) {
+        SearchBound bound = new SearchBound(onImprovement);
+        long deadline = System.nanoTime() + timeoutNanos;
+        long start = SynthesisMetrics.SEARCH_MIN.start();
+        try {
+            return searchMinUntimed(cost, currentGoal, recTermsOfReturnType, fillTermToHole, recEvaluator,
+                    isFirstBranch, Optional.empty(), bound, deadline);
+        } catch (CancellationException e) {
+            return Optional.ofNullable(bound.get());
+        } finally {
+            SynthesisMetrics.SEARCH_MIN.stop(start);
+        }
+    }
+
+    /** the candidate <i>term</i> of cost <i>c</i>, offered to <i>bound</i> if there is one */
+    private static Optional<Pair<Integer, Term>> found(int c, Term term, SearchBound bound) {
+        if (bound != null) {
+            bound.offer(c, Long.MAX_VALUE, term);
+        }
+        return Optional.of(new Pair<>(c, term));
+    }
+
+    /** throws {@link CancellationException} once <i>deadline</i> has passed; {@link Long#MAX_VALUE} is none */
+    private static void checkDeadline(long deadline) {
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new CancellationException();
+        }
+    }
+
+    private Optional<Pair<Integer, Term>> searchMinUntimed(int cost, IndexValueMap currentGoal,
+                                                           List<List<Pair<Term, ExtendedValueVec>>> recTermsOfReturnType,
+                                                           UnaryOperator<Term> fillTermToHole,
+                                                           IncrementalRecEvaluator recEvaluator, boolean isFirstBranch,
+                                                           Optional<List<Term>> prefixTrigger, SearchBound bound,
+                                                           long deadline) {
         if (cost <= 0) {
-            return null;
+            return Optional.empty();
         }
-        Set<Integer> keySet = currentGoal.keySet();
-        for (int c = 1; c <= maxCompCost; c++) {
-
-            if (!isFirstBranch) {
-                for (AscendRecSynthesizer.Pair<Term, Synthesis.ExtendedValueVec> recTerms : recTermsOfReturnType.get(c - 1)) {
-                    for (AscendRecSynthesizer.Pair<Term, ExtendedValueVec> pair : recTerms) {
-                        Term term = pair.first();
-                        ExtendedValueVec vv = pair.second();
-                        ExtendedValueVec.MatchResult matchResult = vv.matchWithIndexValueMap(currentGoal);
-                        if (matchResult == ExtendedValueVec.MatchResult.ExactMatch) {
-                            return new FoundAtCost(c, term);
-                        } else if (matchResult == ExtendedValueVec.MatchResult.PossibleMatch) {
-                            boolean passCheck = true;
-                            for (Pair<Integer, Value> pair2 : matchResult.leftToCheck()) {
-                                int i = pair2.first();
-                                Value desired = pair2.second();
-                                ComponentImpl p = assembleRecProgram(fillTermToHole.apply(term));
-                                if (!p.executeEfficient(inputVector.get(i)).equals(desired)) {
-                                    passCheck = false;
-                                    break;
-                                }
-                            }
-                            if (passCheck) {
-                                return new FoundAtCost(c, term);
+        for (int c = 1; c <= Math.min(maxCompCost, cost); c++) {
+            checkDeadline(deadline);
+            Optional<Term> direct = termOfCostAndVM.apply(c, currentGoal);
+            if (direct.isPresent()) {
+                return found(c, direct.get(), bound);
+            }
+            if (!isFirstBranch && c <= recTermsOfReturnType.size()) {
+                for (Pair<Term, ExtendedValueVec> pair : recTermsOfReturnType.get(c - 1)) {
+                    Term term = pair.getFirst();
+                    ExtendedValueVec vv = pair.getSecond();
+                    ExtendedValueVec.MatchResult matchResult = vv.matchWithIndexValueMap(currentGoal);
+                    if (matchResult.isExact()) {
+                        return found(c, term, bound);
+                    } else if (matchResult.isMatch()) {
+                        checkDeadline(deadline);
+                        SynthesisEvents.RecursiveCheckEvent check = new SynthesisEvents.RecursiveCheckEvent();
+                        check.begin();
+                        boolean passCheck = true;
+                        int rows = 0;
+                        ComponentImpl p = assembleRecProgram(fillTermToHole.apply(term));
+                        for (Pair<Integer, termvalue> pair2 : matchResult.leftToCheck()) {
+                            int i = pair2.getFirst();
+                            termvalue desired = pair2.getSecond();
+                            rows++;
+                            if (!ValueVector.sameValue(p.executeEfficient(inputVector.get(i), limitFuel()), desired)) {
+                                passCheck = false;
+                                break;
                             }
                         }
+                        check.finish(currentGoal, c, rows, passCheck);
+                        if (passCheck) {
+                            return found(c, term, bound);
+                        }
                     }
                 }
             }
         }
-        int ifCost = 1;
         Pair<Integer, Term> minCostCandidate = null;
-        for (int cThen = 1; cThen <= maxCompCost - ifCost - 2; cThen++) {
-            for (Pair<Term, ExtendedValueVec> pair : termsOfCost.apply(cThen)) {
-                Term tThen = pair.first();
-                ExtendedValueVec thenVec = pair.second();
-                Pair<Boolean, Option<List<String>>> result = checkTrigger(tThen, prefixTrigger);
-                boolean trig = result.first();
-                Option<List<String>> prefixTrigger1 = result.second();
+        for (int cThen = 1; cThen <= Math.min(maxCompCost, cost - IF_COST - 2); cThen++) {
+            for (Pair<ValueVector, Term> pair : termsOfCost.apply(cThen)) {
+                checkDeadline(deadline);
+                ValueVector thenVec = pair.getFirst();
+                Term tThen = pair.getSecond();
+                Pair<Boolean, Optional<List<Term>>> result = checkTrigger(tThen, prefixTrigger);
+                boolean trig = result.getFirst();
+                Optional<List<Term>> prefixTrigger1 = result.getSecond();
                 if (trig) {
                     System.out.println("trigger then branch!");
                 }
-                for (Triple<IndexValueMap, Pair<Integer, Term>, Set<Integer>> triple : IndexValueMap.splitValueMap(currentGoal, thenVec)) {
-                    IndexValueMap vm = triple.first();
-                    Pair<Integer, Term> pair2 = triple.second();
-                    int cCond = pair2.first();
-                    Term tCond = pair2.second();
-                    Set<Integer> trueKeys = triple.third();
-                    Pair<Boolean, Option<List<String>>> result2 = checkTrigger(tCond, prefixTrigger1);
-                    boolean trig2 = result2.first();
-                    Option<List<String>> prefixTrigger2 = result2.second();
-                    if (trig2) {
-                        System.out.println("trigger condition!");
-                        int costSoFar = cThen + cCond + ifCost;
-                        int maxCostForElse = Math.min(cost, minCostCandidate != null ? minCostCandidate.first() : Integer.MAX_VALUE) - costSoFar;
-                        String target = "createNode(treeValue(@baseTree), tConcat(treeLeft(@baseTree), @inserted), tConcat(treeRight(@baseTree), @inserted))";
-                        boolean found = false;
-                        for (List<Pair<Term, ExtendedValueVec>> recTerms : recTermsOfReturnType.subList(0, maxCostForElse)) {
-                            for (Pair<Term, ExtendedValueVec> pair3 : recTerms) {
-                                if (pair3.first().show().equals(target)) {
-                                    found = true;
-                                    break;
-                                }
-                            }
-                            if (found) {
+                Optional<Triple<IndexValueMap, List<Integer>, List<Integer>>> split =
+                        IndexValueMap.splitValueMap(currentGoal, thenVec);
+                if (split.isEmpty()) {
+                    continue;
+                }
+                SynthesisMetrics.SPLITS.increment();
+                Optional<Pair<Integer, Term>> cond = boolOfVM.apply(split.get().getFirst());
+                if (cond.isEmpty()) {
+                    continue;
+                }
+                int cCond = cond.get().getFirst();
+                Term tCond = cond.get().getSecond();
+                List<Integer> trueKeys = split.get().getSecond();
+                Pair<Boolean, Optional<List<Term>>> result2 = checkTrigger(tCond, prefixTrigger1);
+                boolean trig2 = result2.getFirst();
+                Optional<List<Term>> prefixTrigger2 = result2.getSecond();
+                int costSoFar = cThen + cCond + IF_COST;
+                int maxCostForElse = Math.min(cost, minCostCandidate != null ? minCostCandidate.getFirst() - 1 : Integer.MAX_VALUE) - costSoFar;
+                if (trig2) {
+                    System.out.println("trigger condition!");
+                    Var baseTree = Var.of("baseTree");
+                    Var inserted = Var.of("inserted");
+                    Term target = Component.of("createNode", List.of(
+                            Component.of("treeValue", List.of(baseTree)),
+                            Component.of("tConcat", List.of(Component.of("treeLeft", List.of(baseTree)), inserted)),
+                            Component.of("tConcat", List.of(Component.of("treeRight", List.of(baseTree)), inserted))));
+                    boolean found = false;
+                    for (List<Pair<Term, ExtendedValueVec>> recTerms : upTo(recTermsOfReturnType, maxCostForElse)) {
+                        for (Pair<Term, ExtendedValueVec> pair3 : recTerms) {
+                            if (pair3.getFirst().equals(target)) {
+                                found = true;
                                 break;
                             }
                         }
-                        System.out.println("found: " + found);
+                        if (found) {
+                            break;
+                        }
                     }
-                    Term assembleTerm = fillTermToHole.apply(new If(tCond, tThen, holeName.$()));
-                    int costSoFar = cThen + cCond + ifCost;
-                    int maxCostForElse = Math.min(cost, minCostCandidate != null ? minCostCandidate.first() : Integer.MAX_VALUE) - costSoFar;
-                    ComponentImpl partialImpl = ComponentImpl.recursiveImpl(signature, compMapWithHole, argListCompare, assembleTerm);
-                    Map<String, ComponentImpl> envWithPartialImpl = new HashMap<>(envCompMap);
-                    envWithPartialImpl.put(signature.name, partialImpl);
-                    List<List<Pair<Term, ExtendedValueVec>>> newRecTermsOfCost = new ArrayList<>();
-                    for (List<Pair<Term, ExtendedValueVec>> recTerms : recTermsOfReturnType.subList(0, maxCostForElse)) {
-                        List<Pair<Term, ExtendedValueVec>> newRecTerms = new ArrayList<>();
-                        for (Pair<Term, ExtendedValueVec> pair3 : recTerms) {
-                            Term term = pair3.first();
-                            ExtendedValueVec vv = pair3.second();
-                            List<Value> newVV = new ArrayList<>();
-                            for (int i = 0; i < vv.size(); i++) {
-                                Value value = vv.get(i);
-                                if (value instanceof valueunknown) {
-                                    Map<String, termvalue> varMap = varMaps.get(i);
-                                    try {
-                                        newVV.add(Term.executeTerm(varMap, envWithPartialImpl, term));
-                                    } catch (ExecuteHoleException e) {
-                                        newVV.add(valueunknown.getInstance());
-                                    }
-                                } else {
-                                    newVV.add((termvalue) value);
-                                }
+                    System.out.println("found: " + found);
+                }
+                if (maxCostForElse < 1) {
+                    continue;
+                }
+                Term assembleTerm = fillTermToHole.apply(If.of(tCond, tThen, hole));
+                IncrementalRecEvaluator evaluator = recEvaluator.refine(assembleTerm, holeName);
+                List<List<Pair<Term, ExtendedValueVec>>> newRecTermsOfCost = new ArrayList<>();
+                for (List<Pair<Term, ExtendedValueVec>> recTerms : upTo(recTermsOfReturnType, maxCostForElse)) {
+                    List<Pair<Term, ExtendedValueVec>> newRecTerms = new ArrayList<>();
+                    for (Pair<Term, ExtendedValueVec> pair3 : recTerms) {
+                        Term term = pair3.getFirst();
+                        ExtendedValueVec vv = pair3.getSecond();
+                        BitSet unknownRows = new BitSet(vv.size());
+                        for (int i = 0; i < vv.size(); i++) {
+                            if (vv.get(i) == valueunknown.INSTANCE) {
+                                unknownRows.set(i);
                             }
-                            newRecTerms.add(new Pair<>(term, new ExtendedValueVec(newVV)));
                         }
-                        newRecTermsOfCost.add(newRecTerms);
-                    }
-                    IndexValueMap elseGoal = currentGoal.remove(trueKeys);
-                    Pair<Integer, Term> pair3 = searchMin(maxCostForElse, elseGoal, newRecTermsOfCost, assembleTerm,
-                            false, prefixTrigger2);
-                    if (pair3 != null) {
-                        int totalCost = pair3.first() + costSoFar;
-                        Term t = new If(tCond, tThen, pair3.second());
-                        minCostCandidate = new Pair<>(totalCost, t);
+                        if (unknownRows.isEmpty()) {
+                            newRecTerms.add(pair3);
+                            continue;
+                        }
+                        termvalue[] column = evaluator.column(term, unknownRows);
+                        List<ExtendedValue> newVV = new ArrayList<>(vv.size());
+                        for (int i = 0; i < vv.size(); i++) {
+                            if (!unknownRows.get(i)) {
+                                newVV.add(vv.get(i));
+                            } else if (column[i] == null) {
+                                newVV.add(valueunknown.getInstance());
+                            } else {
+                                newVV.add(column[i]);
+                            }
+                        }
+                        newRecTerms.add(new Pair<>(term, new ExtendedValueVec(newVV)));
                     }
+                    newRecTermsOfCost.add(byUnknowns(newRecTerms));
+                }
+                IndexValueMap elseGoal = currentGoal.remove(trueKeys);
+                // untimed, so search.min only counts the outermost call
+                Optional<Pair<Integer, Term>> pair3 = searchMinUntimed(maxCostForElse, elseGoal, newRecTermsOfCost,
+                        t -> fillTermToHole.apply(If.of(tCond, tThen, t)), evaluator, false, prefixTrigger2, null,
+                        deadline);
+                if (pair3.isPresent()) {
+                    int totalCost = pair3.get().getFirst() + costSoFar;
+                    Term t = If.of(tCond, tThen, pair3.get().getSecond());
+                    minCostCandidate = found(totalCost, t, bound).get();
                 }
             }
         }
-        if (minCostCandidate != null) {
-            return new FoundAtCost(minCostCandidate.first(), minCostCandidate.second());
-        } else {
-            return new NotFoundUnderCost(cost);
-        }
+        return Optional.ofNullable(minCostCandidate);
     }
 
-    public Pair<Boolean, Option<List<String>>> checkTrigger(Term term, Option<List<String>> prefixTrigger) {
+    private static <T> List<T> upTo(List<T> perCost, int cost) {
+        return perCost.subList(0, Math.max(0, Math.min(cost, perCost.size())));
+    }
+
+    /** bounds the self-calls of a check against the complete program, which may not terminate */
+    private static Fuel limitFuel() {
+        return new Fuel(TermBank.DEFAULT_FUEL_STEPS, TermBank.DEFAULT_FUEL_DEPTH);
+    }
+
+    public Pair<Boolean, Optional<List<Term>>> checkTrigger(Term term, Optional<List<Term>> prefixTrigger) {
         if (prefixTrigger.isEmpty()) {
-            return new Pair<>(false, Option.empty());
+            return new Pair<>(false, Optional.empty());
         } else {
-            List<String> ts = prefixTrigger.get();
+            List<Term> ts = prefixTrigger.get();
             if (ts.isEmpty()) {
-                return new Pair<>(false, Option.empty());
+                return new Pair<>(false, Optional.empty());
             } else if (ts.size() == 1) {
-                return new Pair<>(ts.get(0).equals(term.show()), Option.empty());
+                return new Pair<>(ts.get(0).equals(term), Optional.empty());
             } else {
-                String h = ts.get(0);
-                List<String> t = ts.subList(1, ts.size());
-                if (term.show().equals(h)) {
-                    return new Pair<>(false, Option.of(t));
+                Term h = ts.get(0);
+                List<Term> t = ts.subList(1, ts.size());
+                if (term.equals(h)) {
+                    return new Pair<>(false, Optional.of(t));
                 } else {
-                    return new Pair<>(false, Option.empty());
+                    return new Pair<>(false, Optional.empty());
                 }
             }
         }
@@ -196,5 +355,3 @@ public class DynamicGoalSearch<ArgListCompare, CostAndVMToTerm, CostToTerms, VMT
     public static class ExecuteHoleException extends Exception {
     }
 }
-
-
@@ -0,0 +1,67 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outputs of a recursive term on the examples under a partial program. An entry is {@link valueunknown}
+ * where the term reaches the hole, so matching a goal can only rule the term out or leave some examples to check
+ * against the complete program.
+ */
+final class ExtendedValueVec {
+    static final class MatchResult {
+        static final MatchResult NO_MATCH = new MatchResult(null);
+        static final MatchResult EXACT_MATCH = new MatchResult(Collections.emptyList());
+
+        private final List<Pair<Integer, termvalue>> leftToCheck;
+
+        private MatchResult(List<Pair<Integer, termvalue>> leftToCheck) {
+            this.leftToCheck = leftToCheck;
+        }
+
+        boolean isMatch() {
+            return leftToCheck != null;
+        }
+
+        boolean isExact() {
+            return leftToCheck != null && leftToCheck.isEmpty();
+        }
+
+        /** the unknown examples with the output the goal wants there */
+        List<Pair<Integer, termvalue>> leftToCheck() {
+            return leftToCheck;
+        }
+    }
+
+    private final List<ExtendedValue> values;
+
+    ExtendedValueVec(List<? extends ExtendedValue> values) {
+        this.values = List.copyOf(values);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    ExtendedValue get(int i) {
+        return values.get(i);
+    }
+
+    List<ExtendedValue> values() {
+        return values;
+    }
+
+    MatchResult matchWithIndexValueMap(IndexValueMap goal) {
+        List<Pair<Integer, termvalue>> leftToCheck = new ArrayList<>();
+        for (int i = goal.nextKey(0); i >= 0; i = goal.nextKey(i + 1)) {
+            ExtendedValue v = values.get(i);
+            if (v == valueunknown.INSTANCE) {
+                leftToCheck.add(new Pair<>(i, goal.get(i)));
+            } else if (!ValueVector.sameValue((termvalue) v, goal.get(i))) {
+                return MatchResult.NO_MATCH;
+            }
+        }
+        return leftToCheck.isEmpty() ? MatchResult.EXACT_MATCH : new MatchResult(leftToCheck);
+    }
+}
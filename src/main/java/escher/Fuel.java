@@ -0,0 +1,41 @@
+package escher;
+
+/**
+ * Step and recursion-depth budget of one evaluation. Every component call spends one step and holds one level of
+ * depth while it runs; once either runs out, calls return {@link valueerror} without running and {@link #exhausted}
+ * tells a diverging evaluation apart from one that failed on its own. Not thread safe: use one per evaluation.
+ */
+public final class Fuel {
+    private long steps;
+    private final int maxDepth;
+    private int depth;
+    private boolean exhausted;
+
+    public Fuel(long steps, int maxDepth) {
+        this.steps = steps;
+        this.maxDepth = maxDepth;
+    }
+
+    /** takes one step and one level of depth for a call, or returns false if the budget is spent */
+    boolean enter() {
+        if (exhausted || steps <= 0 || depth >= maxDepth) {
+            exhausted = true;
+            return false;
+        }
+        steps--;
+        depth++;
+        return true;
+    }
+
+    void exit() {
+        depth--;
+    }
+
+    public boolean exhausted() {
+        return exhausted;
+    }
+
+    public long remainingSteps() {
+        return steps;
+    }
+}
@@ -1,32 +1,52 @@
 package escher;
 
-object GenExamples {
-        def compress[A](buffer: mutable.Map[List[A], List[A]]): List[A] => List[A] = {
-        def f(xs: List[A]): List[A] = {
-        val result = xs match {
-        case a::b::tail => if(a==b) f(b::tail) else a :: f(b::tail)
-        case _ => xs
-        }
-        buffer(xs) = result
-        result
-        }
-        f
-        }
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
-        def main(args: Array[String]): Unit = {
-        val buffer: mutable.Map[List[Int], List[Int]] = mutable.Map()
-        val impl = compress(buffer)
-        val inputs = List(
-        List(),
-        List(7),
-        List(3, 9),
-        List(9, 9),
-        List(2, 3, 9),
-        List(9, 9, 2),
-        List(3, 3, 3, 9),
-        List(2, 3, 3, 9, 9)
-        )
-        inputs.foreach(in => impl(in))
-        buffer.toList.map(._1.toString).sorted.foreach(println)
-        }
-        }
+/**
+ * Prints the inputs of every recursive call the reference implementation of compress makes on a few inputs, which
+ * are the examples a recursive synthesizer needs to check its self-calls against.
+ */
+public class GenExamples {
+    static <A> Function<List<A>, List<A>> compress(Map<List<A>, List<A>> buffer) {
+        return new Function<>() {
+            @Override
+            public List<A> apply(List<A> xs) {
+                List<A> result = xs;
+                if (xs.size() >= 2) {
+                    A a = xs.get(0);
+                    List<A> rest = apply(xs.subList(1, xs.size()));
+                    if (a.equals(xs.get(1))) {
+                        result = rest;
+                    } else {
+                        result = new ArrayList<>(rest.size() + 1);
+                        result.add(a);
+                        result.addAll(rest);
+                    }
+                }
+                buffer.put(List.copyOf(xs), result);
+                return result;
+            }
+        };
+    }
+
+    public static void main(String[] args) {
+        Map<List<Integer>, List<Integer>> buffer = new HashMap<>();
+        Function<List<Integer>, List<Integer>> impl = compress(buffer);
+        List<List<Integer>> inputs = List.of(
+                List.of(),
+                List.of(7),
+                List.of(3, 9),
+                List.of(9, 9),
+                List.of(2, 3, 9),
+                List.of(9, 9, 2),
+                List.of(3, 3, 3, 9),
+                List.of(2, 3, 3, 9, 9)
+        );
+        inputs.forEach(impl::apply);
+        buffer.keySet().stream().map(List::toString).sorted().forEach(System.out::println);
+    }
+}
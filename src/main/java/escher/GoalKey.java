@@ -0,0 +1,83 @@
+package escher;
+
+import java.util.Arrays;
+
+/**
+ * The set of example indices of an {@link IndexValueMap}, packed into 64-bit words. Within one synthesis run
+ * every goal is a sub-map of the top level goal, so the index set alone identifies a goal and this is what
+ * the goal searches use as their memo key. Instances must not be mutated after construction.
+ */
+public final class GoalKey {
+    private final long[] words;
+    private final int hash;
+
+    GoalKey(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /** number of example indices in this key */
+    public int size() {
+        int n = 0;
+        for (long w : words) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+
+    public boolean contains(int index) {
+        int w = index >>> 6;
+        return w < words.length && (words[w] & (1L << index)) != 0;
+    }
+
+    /** the smallest index that is at least <i>from</i>, or -1 if there is none */
+    public int nextIndex(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GoalKey)) {
+            return false;
+        }
+        GoalKey that = (GoalKey) o;
+        return hash == that.hash && Arrays.equals(words, that.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(i);
+        }
+        return sb.append("}").toString();
+    }
+}
@@ -0,0 +1,276 @@
+package escher;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Evaluates recursive terms against a partial program, one whose body still contains the hole, and re-evaluates
+ * them incrementally as the hole is filled in.
+ *
+ * <p>An example on which a term reaches the hole is unknown, and remembers the arguments of the innermost
+ * self-call whose body reached it. Filling the hole only changes what happens from the hole on, so after a
+ * {@link #refine} such an entry is still unknown exactly when that one self-call still is. Checking that costs
+ * one memoized self-call instead of re-running the whole term. Self-calls resolved by an earlier program keep
+ * their results in every refinement of it.
+ *
+ * <p>Terms run in the extended environment, where the hole and every self-call it blocks evaluate to
+ * {@link valueunknown}, so reaching the hole costs no exception. Sub-terms that call neither the program nor the
+ * hole have the same outputs under every refinement, so they are evaluated by a {@link BatchEvaluator} shared by
+ * the whole refinement tree, once for all candidates and all examples.
+ *
+ * <p>As in Escher, a self-call must be on arguments smaller than those of its caller, the example itself for
+ * calls made by the term; other self-calls evaluate to {@link valueerror}. Every example is also evaluated within
+ * a {@link Fuel} budget of self-calls, so an argument order that is not well-founded cannot hang the search.
+ *
+ * <p>Not thread safe; every branch of the search refines its own instance.
+ */
+class IncrementalRecEvaluator {
+    private final IncrementalRecEvaluator parent;
+    private final String selfName;
+    private final List<String> argNames;
+    private final BiPredicate<List<termvalue>, List<termvalue>> argListCompare;
+    private final long fuelSteps;
+    private final int fuelDepth;
+    private final List<Map<String, ExtendedValue>> varMaps;
+    private final Term body;
+    private final Map<String, ExtendedCompImpl> compMap;
+    private final String holeName;
+    /** evaluates the sub-terms that do not depend on the program */
+    private final BatchEvaluator batch;
+    private final Map<List<termvalue>, termvalue> resolved = new HashMap<>();
+    /** self-call arguments to the innermost self-call that reached the hole */
+    private final Map<List<termvalue>, List<termvalue>> blocked = new HashMap<>();
+    private final Map<Term, List<termvalue>[]> entryBlockers = new HashMap<>();
+    private final ArrayDeque<List<termvalue>> inProgress = new ArrayDeque<>();
+    /** the self-call behind the most recent unknown result, which propagates straight up to the caller */
+    private List<termvalue> lastBlocker;
+    /** the arguments of the example being evaluated, which self-calls made by the term itself must be below */
+    private List<termvalue> exampleArgs;
+    private Fuel fuel;
+
+    /**
+     * @param selfName       the name of the recursive component, under which terms call the partial program
+     * @param holeName       the name of the zero-argument component standing for the hole in <i>body</i>
+     * @param argListCompare whether the first argument list is smaller than the second
+     */
+    IncrementalRecEvaluator(String selfName, List<String> argNames, String holeName, Term body,
+                            List<Map<String, termvalue>> varMaps, Map<String, ComponentImpl> envCompMap,
+                            BiPredicate<List<termvalue>, List<termvalue>> argListCompare) {
+        this(selfName, argNames, holeName, body, varMaps, envCompMap, argListCompare,
+                TermBank.DEFAULT_FUEL_STEPS, TermBank.DEFAULT_FUEL_DEPTH);
+    }
+
+    /** an evaluator granting each example <i>fuelSteps</i> self-calls, nested at most <i>fuelDepth</i> deep */
+    IncrementalRecEvaluator(String selfName, List<String> argNames, String holeName, Term body,
+                            List<Map<String, termvalue>> varMaps, Map<String, ComponentImpl> envCompMap,
+                            BiPredicate<List<termvalue>, List<termvalue>> argListCompare, long fuelSteps, int fuelDepth) {
+        this(null, selfName, argNames, holeName, body, extendedVarMaps(varMaps), extendedComps(envCompMap),
+                argListCompare, fuelSteps, fuelDepth, new BatchEvaluator(varMaps, envCompMap));
+    }
+
+    private IncrementalRecEvaluator(IncrementalRecEvaluator parent, String selfName, List<String> argNames,
+                                    String holeName, Term body, List<Map<String, ExtendedValue>> varMaps,
+                                    Map<String, ExtendedCompImpl> envCompMap,
+                                    BiPredicate<List<termvalue>, List<termvalue>> argListCompare,
+                                    long fuelSteps, int fuelDepth, BatchEvaluator batch) {
+        this.parent = parent;
+        this.selfName = selfName;
+        this.argNames = argNames;
+        this.varMaps = varMaps;
+        this.body = body;
+        this.holeName = holeName;
+        this.batch = batch;
+        this.argListCompare = argListCompare;
+        this.fuelSteps = fuelSteps;
+        this.fuelDepth = fuelDepth;
+        this.compMap = new HashMap<>(envCompMap);
+        compMap.put(selfName, new ExtendedCompImpl(this::selfCall));
+        compMap.put(holeName, new ExtendedCompImpl(args -> {
+            lastBlocker = inProgress.peek();
+            return valueunknown.INSTANCE;
+        }));
+    }
+
+    private static List<Map<String, ExtendedValue>> extendedVarMaps(List<Map<String, termvalue>> varMaps) {
+        List<Map<String, ExtendedValue>> extended = new ArrayList<>(varMaps.size());
+        for (Map<String, termvalue> varMap : varMaps) {
+            Map<String, ExtendedValue> m = new HashMap<>();
+            varMap.forEach((name, v) -> m.put(name, (ExtendedValue) v));
+            extended.add(m);
+        }
+        return extended;
+    }
+
+    private static Map<String, ExtendedCompImpl> extendedComps(Map<String, ComponentImpl> compMap) {
+        Map<String, ExtendedCompImpl> extended = new HashMap<>();
+        compMap.forEach((name, impl) -> extended.put(name, ExtendedCompImpl.of(impl)));
+        return extended;
+    }
+
+    /** an evaluator for <i>newBody</i>, which must be this program with its hole replaced by a term */
+    IncrementalRecEvaluator refine(Term newBody, String holeName) {
+        return new IncrementalRecEvaluator(this, selfName, argNames, holeName, newBody, varMaps, compMap,
+                argListCompare, fuelSteps, fuelDepth, batch);
+    }
+
+    /**
+     * The outputs of <i>term</i> on the examples in <i>rows</i>, which should be the examples on which it was
+     * unknown under the parent program. Entries outside <i>rows</i> and entries that still reach the hole are null;
+     * entries whose evaluation ran out of fuel are {@link valueerror}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    termvalue[] column(Term term, BitSet rows) {
+        termvalue[] column = new termvalue[varMaps.size()];
+        List<termvalue>[] blockers = entryBlockers.computeIfAbsent(term, t -> new List[varMaps.size()]);
+        List<termvalue>[] parentBlockers = parent == null ? null : parent.entryBlockers.get(term);
+        Map<Term, ValueVector> fixed = new HashMap<>();
+        if (fixedColumns(term, fixed)) {
+            fixed.put(term, term.executeBatch(batch));
+        }
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+            exampleArgs = new ArrayList<>(argNames.size());
+            for (String name : argNames) {
+                exampleArgs.add((termvalue) varMaps.get(i).get(name));
+            }
+            fuel = new Fuel(fuelSteps, fuelDepth);
+            ExtendedValue v = valueunknown.INSTANCE;
+            if (parentBlockers == null || parentBlockers[i] == null || call(parentBlockers[i]) != valueunknown.INSTANCE) {
+                v = evaluate(term, i, fixed);
+            }
+            if (fuel.exhausted()) {
+                column[i] = valueerror.INSTANCE;
+            } else if (v == valueunknown.INSTANCE) {
+                blockers[i] = lastBlocker;
+            } else {
+                column[i] = (termvalue) v;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Puts the batch columns of the largest sub-terms of <i>term</i> that call neither the program nor the hole into
+     * <i>fixed</i>, returning whether <i>term</i> itself is one of them.
+     */
+    private boolean fixedColumns(Term term, Map<Term, ValueVector> fixed) {
+        List<Term> children;
+        boolean isFixed = true;
+        if (term instanceof Component) {
+            Component c = (Component) term;
+            children = c.getTerms();
+            isFixed = !c.getName().equals(selfName) && !c.getName().equals(holeName);
+        } else if (term instanceof If) {
+            If t = (If) term;
+            children = List.of(t.getCondition(), t.getThenBranch(), t.getElseBranch());
+        } else {
+            return true;
+        }
+        boolean[] childFixed = new boolean[children.size()];
+        for (int k = 0; k < childFixed.length; k++) {
+            childFixed[k] = fixedColumns(children.get(k), fixed);
+            isFixed &= childFixed[k];
+        }
+        if (!isFixed) {
+            for (int k = 0; k < childFixed.length; k++) {
+                if (childFixed[k]) {
+                    fixed.put(children.get(k), children.get(k).executeBatch(batch));
+                }
+            }
+        }
+        return isFixed;
+    }
+
+    /** <i>term</i> on example <i>row</i>, taking the sub-terms in <i>fixed</i> from their batch columns */
+    private ExtendedValue evaluate(Term term, int row, Map<Term, ValueVector> fixed) {
+        ValueVector column = fixed.get(term);
+        if (column != null) {
+            return column.get(row);
+        }
+        if (term instanceof Component) {
+            Component c = (Component) term;
+            List<termvalue> args = new ArrayList<>(c.getTerms().size());
+            boolean error = false;
+            for (Term t : c.getTerms()) {
+                ExtendedValue v = evaluate(t, row, fixed);
+                if (v == valueunknown.INSTANCE) {
+                    return valueunknown.INSTANCE;
+                }
+                error |= v == valueerror.INSTANCE;
+                args.add((termvalue) v);
+            }
+            if (error) {
+                return (ExtendedValue) valueerror.INSTANCE;
+            }
+            return compMap.get(c.getName()).execute(args);
+        } else if (term instanceof If) {
+            If t = (If) term;
+            ExtendedValue cv = evaluate(t.getCondition(), row, fixed);
+            if (cv == valueunknown.INSTANCE) {
+                return valueunknown.INSTANCE;
+            } else if (cv instanceof valueBool) {
+                return evaluate(((valueBool) cv).getValue() ? t.getThenBranch() : t.getElseBranch(), row, fixed);
+            }
+            return (ExtendedValue) valueerror.INSTANCE;
+        }
+        return term.executeTermInExtendedEnv(varMaps.get(row), compMap);
+    }
+
+    /** a self-call made by a term, which must be on arguments below those of its caller */
+    private ExtendedValue selfCall(List<termvalue> args) {
+        List<termvalue> caller = inProgress.isEmpty() ? exampleArgs : inProgress.peek();
+        if (!argListCompare.test(args, caller)) {
+            return (ExtendedValue) valueerror.INSTANCE;
+        }
+        return call(args);
+    }
+
+    private ExtendedValue call(List<termvalue> args) {
+        termvalue known = resolvedResult(args);
+        if (known != null) {
+            return (ExtendedValue) known;
+        }
+        List<termvalue> blocker = blocked.get(args);
+        if (blocker != null) {
+            lastBlocker = blocker;
+            return valueunknown.INSTANCE;
+        }
+        if (!fuel.enter()) {
+            return (ExtendedValue) valueerror.INSTANCE;
+        }
+        ExtendedValue result = valueunknown.INSTANCE;
+        inProgress.push(args);
+        try {
+            List<termvalue> parentBlocker = parent == null ? null : parent.blocked.get(args);
+            if (parentBlocker == null || parentBlocker.equals(args) || call(parentBlocker) != valueunknown.INSTANCE) {
+                Map<String, ExtendedValue> varMap = new HashMap<>();
+                for (int i = 0; i < argNames.size(); i++) {
+                    varMap.put(argNames.get(i), (ExtendedValue) args.get(i));
+                }
+                result = body.executeTermInExtendedEnv(varMap, compMap);
+            }
+        } finally {
+            inProgress.pop();
+            fuel.exit();
+        }
+        if (fuel.exhausted()) {
+            // the result depends on the budget rather than the arguments
+            return result;
+        }
+        if (result == valueunknown.INSTANCE) {
+            blocked.put(args, lastBlocker);
+        } else {
+            resolved.put(args, (termvalue) result);
+        }
+        return result;
+    }
+
+    private termvalue resolvedResult(List<termvalue> args) {
+        for (IncrementalRecEvaluator e = this; e != null; e = e.parent) {
+            termvalue result = e.resolved.get(args);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
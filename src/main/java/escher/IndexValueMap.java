@@ -0,0 +1,198 @@
+package escher;
+
+import java.util.*;
+
+/**
+ * A partial map from example indices to desired values. The present indices are kept as a bitset and the values
+ * in a plain array indexed by example, so {@link #remove(Collection)} only copies the bitset and shares the
+ * value array, and {@link #updated(int, termvalue)} shares the bitset and copies only the value array.
+ */
+public class IndexValueMap {
+    private final long[] bits;
+    private final termvalue[] values;
+    private final GoalKey key;
+
+    private IndexValueMap(long[] bits, termvalue[] values) {
+        this.bits = bits;
+        this.values = values;
+        this.key = new GoalKey(bits);
+    }
+
+    /** a goal covering every example, where <i>outputs[i]</i> is the desired value of example <i>i</i> */
+    public static IndexValueMap of(List<termvalue> outputs) {
+        int n = outputs.size();
+        long[] bits = new long[wordsFor(n)];
+        termvalue[] values = new termvalue[n];
+        for (int i = 0; i < n; i++) {
+            bits[i >>> 6] |= 1L << i;
+            values[i] = outputs.get(i);
+        }
+        return new IndexValueMap(bits, values);
+    }
+
+    /** a goal over the entries of <i>map</i>, for a problem with <i>exampleCount</i> examples */
+    public static IndexValueMap fromMap(Map<Integer, termvalue> map, int exampleCount) {
+        long[] bits = new long[wordsFor(exampleCount)];
+        termvalue[] values = new termvalue[exampleCount];
+        map.forEach((i, v) -> {
+            bits[i >>> 6] |= 1L << i;
+            values[i] = v;
+        });
+        return new IndexValueMap(bits, values);
+    }
+
+    private static int wordsFor(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    /** the memo key of this goal, i.e. its index set */
+    public GoalKey key() {
+        return key;
+    }
+
+    public int size() {
+        return key.size();
+    }
+
+    public boolean isEmpty() {
+        for (long w : bits) {
+            if (w != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** the number of examples of the problem this goal belongs to */
+    public int exampleCount() {
+        return values.length;
+    }
+
+    public boolean containsKey(int index) {
+        return key.contains(index);
+    }
+
+    /** the desired value at <i>index</i>, or null if the index is not part of this goal */
+    public termvalue get(int index) {
+        return containsKey(index) ? values[index] : null;
+    }
+
+    /** the smallest present index that is at least <i>from</i>, or -1; use this to iterate without allocation */
+    public int nextKey(int from) {
+        return key.nextIndex(from);
+    }
+
+    public Set<Integer> keySet() {
+        Set<Integer> keys = new TreeSet<>();
+        for (int i = nextKey(0); i >= 0; i = nextKey(i + 1)) {
+            keys.add(i);
+        }
+        return keys;
+    }
+
+    /** the present indices whose desired value is <i>value</i> (by identity), in ascending order */
+    public int[] keysWithValue(termvalue value) {
+        int[] keys = new int[size()];
+        int n = 0;
+        for (int i = nextKey(0); i >= 0; i = nextKey(i + 1)) {
+            if (values[i] == value) {
+                keys[n++] = i;
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    public IndexValueMap updated(int index, termvalue value) {
+        termvalue[] newValues = values.clone();
+        newValues[index] = value;
+        if (containsKey(index)) {
+            return new IndexValueMap(bits, newValues);
+        }
+        long[] newBits = bits.clone();
+        newBits[index >>> 6] |= 1L << index;
+        return new IndexValueMap(newBits, newValues);
+    }
+
+    public IndexValueMap remove(Collection<Integer> indices) {
+        long[] newBits = bits.clone();
+        for (int i : indices) {
+            newBits[i >>> 6] &= ~(1L << i);
+        }
+        return new IndexValueMap(newBits, values);
+    }
+
+    /** whether <i>vv</i> agrees with <i>vm</i> on every index of <i>vm</i> */
+    public static boolean matchVector(IndexValueMap vm, ValueVector vv) {
+        for (int i = vm.nextKey(0); i >= 0; i = vm.nextKey(i + 1)) {
+            if (!vv.matchesAt(i, vm.values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits <i>goal</i> by the outputs of a then-branch candidate. Returns the boolean goal a condition has to meet
+     * (TRUE where <i>vv</i> already gives the desired value, FALSE elsewhere) together with the true and the false
+     * indices, or nothing when the candidate matches none or all of the goal.
+     */
+    public static Optional<Triple<IndexValueMap, List<Integer>, List<Integer>>> splitValueMap(IndexValueMap goal, ValueVector vv) {
+        termvalue[] condValues = new termvalue[goal.values.length];
+        List<Integer> trueKeys = new ArrayList<>();
+        List<Integer> falseKeys = new ArrayList<>();
+        for (int i = goal.nextKey(0); i >= 0; i = goal.nextKey(i + 1)) {
+            if (vv.matchesAt(i, goal.values[i])) {
+                condValues[i] = valueBool.TRUE;
+                trueKeys.add(i);
+            } else {
+                condValues[i] = valueBool.FALSE;
+                falseKeys.add(i);
+            }
+        }
+        if (trueKeys.isEmpty() || falseKeys.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Triple<>(new IndexValueMap(goal.bits, condValues), trueKeys, falseKeys));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IndexValueMap)) {
+            return false;
+        }
+        IndexValueMap that = (IndexValueMap) o;
+        if (!key.equals(that.key)) {
+            return false;
+        }
+        for (int i = nextKey(0); i >= 0; i = nextKey(i + 1)) {
+            if (!values[i].equals(that.values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = key.hashCode();
+        for (int i = nextKey(0); i >= 0; i = nextKey(i + 1)) {
+            h = 31 * h + values[i].hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = nextKey(0); i >= 0; i = nextKey(i + 1)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(i).append(" -> ").append(values[i].show());
+        }
+        return sb.append("}").toString();
+    }
+}
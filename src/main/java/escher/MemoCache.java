@@ -0,0 +1,76 @@
+package escher;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Memo table of the goal searches, keyed by goal index set. Implementations must be safe for concurrent use and
+ * may forget entries at any time; a forgotten entry only costs a recomputation.
+ */
+public interface MemoCache<V> {
+    V get(GoalKey key);
+
+    /** stores <i>value</i>, or the result of <i>remapping</i> if the key is already present */
+    void merge(GoalKey key, V value, BinaryOperator<V> remapping);
+
+    int size();
+
+    void clear();
+
+    Stats stats();
+
+    enum Eviction {
+        /** evict the least recently used entry */
+        LRU,
+        /** among the least recently used entries, evict the one with the smallest goal, the cheapest to recompute */
+        COST_AWARE
+    }
+
+    static <V> MemoCache<V> unbounded() {
+        return new StripedMemoCache<>(Integer.MAX_VALUE, Eviction.LRU);
+    }
+
+    static <V> MemoCache<V> bounded(int capacity, Eviction eviction) {
+        return new StripedMemoCache<>(capacity, eviction);
+    }
+
+    class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        public Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d, misses: %d (%.1f%% hit rate), evictions: %d, size: %d",
+                    hits, misses, hitRate() * 100, evictions, size);
+        }
+    }
+}
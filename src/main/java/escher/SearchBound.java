@@ -0,0 +1,100 @@
+package escher;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * The best candidate found so far by a group of concurrent searches, used as a shared branch-and-bound limit.
+ * Candidates are ordered by cost and then by their position in the sequential enumeration order, so the
+ * winner does not depend on which worker happens to report first.
+ */
+class SearchBound {
+    private static class Candidate {
+        private final int cost;
+        private final long order;
+        private final Term term;
+
+        private Candidate(int cost, long order, Term term) {
+            this.cost = cost;
+            this.order = order;
+            this.term = term;
+        }
+    }
+
+    private final AtomicReference<Candidate> best = new AtomicReference<>();
+    private final BiConsumer<Integer, Term> listener;
+    /** the bound this one reports to, or null */
+    private final SearchBound shared;
+
+    SearchBound() {
+        this(null, null);
+    }
+
+    /**
+     * @param listener told about every new best (cost, term), one call at a time and never about a candidate that
+     *                 was already beaten when the call would be made, so the costs it sees never increase
+     */
+    SearchBound(BiConsumer<Integer, Term> listener) {
+        this(listener, null);
+    }
+
+    private SearchBound(BiConsumer<Integer, Term> listener, SearchBound shared) {
+        this.listener = listener;
+        this.shared = shared;
+    }
+
+    /**
+     * A bound for one search among several that share <i>shared</i>: it keeps the best of its own candidates,
+     * offers each of them to <i>shared</i> as well, and limits by whichever of the two is tighter.
+     */
+    static SearchBound reportingTo(SearchBound shared) {
+        return new SearchBound(null, shared);
+    }
+
+    /**
+     * The largest total cost a candidate at position <i>order</i> may still have in order to beat the current
+     * best, capped at <i>cost</i>.
+     */
+    int limitFor(long order, int cost) {
+        if (shared != null) {
+            cost = shared.limitFor(order, cost);
+        }
+        Candidate current = best.get();
+        if (current == null) {
+            return cost;
+        }
+        return Math.min(cost, order < current.order ? current.cost : current.cost - 1);
+    }
+
+    /** records the candidate if it beats the current best, returning whether it did */
+    boolean offer(int cost, long order, Term term) {
+        Candidate candidate = new Candidate(cost, order, term);
+        while (true) {
+            Candidate current = best.get();
+            if (current != null && (current.cost < cost || (current.cost == cost && current.order <= order))) {
+                return false;
+            }
+            if (best.compareAndSet(current, candidate)) {
+                if (listener != null) {
+                    publish(candidate);
+                }
+                if (shared != null) {
+                    shared.offer(cost, order, term);
+                }
+                return true;
+            }
+        }
+    }
+
+    private synchronized void publish(Candidate candidate) {
+        if (best.get() == candidate) {
+            listener.accept(candidate.cost, candidate.term);
+        }
+    }
+
+    /** the best (cost, term) so far, or null */
+    Pair<Integer, Term> get() {
+        Candidate current = best.get();
+        return current == null ? null : new Pair<>(current.cost, current.term);
+    }
+}
@@ -0,0 +1,119 @@
+package escher;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import escher.BatchGoalSearch.SearchResult;
+
+/**
+ * Runs {@link BatchGoalSearch#searchThenFirst} and {@link BatchGoalSearch#searchCondFirst} on the same goal
+ * concurrently, each on its own virtual thread. The two share only the best top level candidate, so either one
+ * stops exploring branches that cannot beat what the other already found. The first strategy to finish has
+ * searched its whole space under the cost, so the other is cancelled then.
+ *
+ * <p>Each strategy keeps its own memo table. A strategy returns the other's candidate when that one is best, but
+ * does not memoize it for the goal, so its memo holds only results of its own searches. Its sub-goal searches are
+ * capped by the shared bound, and what they record holds under the cap they ran with, so it is sound whatever the
+ * other strategy did; which caps they ran with, and so what the memo knows, may still depend on timing.
+ *
+ * <p>The result costs no more than the cheapest solution in the winner's space, and is cheaper only if the other
+ * strategy had already found a cheaper one. When both strategies reach the same minimum, as on the usual problems,
+ * its cost does not depend on timing; otherwise, and among equally cheap terms, the result may.
+ */
+public class SearchPortfolio {
+    public enum Strategy {
+        THEN_FIRST,
+        COND_FIRST
+    }
+
+    public static class Outcome {
+        private final Strategy winner;
+        private final Optional<Pair<Integer, Term>> result;
+        private final long nanos;
+
+        Outcome(Strategy winner, Optional<Pair<Integer, Term>> result, long nanos) {
+            this.winner = winner;
+            this.result = result;
+            this.nanos = nanos;
+        }
+
+        /** the strategy that finished first */
+        public Strategy getWinner() {
+            return winner;
+        }
+
+        public Optional<Pair<Integer, Term>> getResult() {
+            return result;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s won in %.1f ms: %s", winner, nanos / 1e6,
+                    result.map(p -> p.getSecond().show() + " (cost " + p.getFirst() + ")").orElse("no solution"));
+        }
+    }
+
+    private final int maxCompCost;
+    private final TermBank bank;
+    private final MemoCache<SearchResult> thenFirstBuffer;
+    private final MemoCache<SearchResult> condFirstBuffer;
+
+    /**
+     * @param thenFirstBuffer memo table of the then-first strategy, kept across calls to {@link #search}
+     * @param condFirstBuffer memo table of the cond-first strategy; must not be <i>thenFirstBuffer</i>
+     */
+    public SearchPortfolio(int maxCompCost, TermBank bank, MemoCache<SearchResult> thenFirstBuffer,
+                           MemoCache<SearchResult> condFirstBuffer) {
+        if (thenFirstBuffer == condFirstBuffer) {
+            throw new IllegalArgumentException("the strategies need separate memo tables");
+        }
+        this.maxCompCost = maxCompCost;
+        this.bank = bank;
+        this.thenFirstBuffer = thenFirstBuffer;
+        this.condFirstBuffer = condFirstBuffer;
+    }
+
+    public Outcome search(int cost, IndexValueMap goal) {
+        long start = System.nanoTime();
+        SearchBound shared = new SearchBound();
+        BatchGoalSearch thenFirst = new BatchGoalSearch(maxCompCost, bank, null, thenFirstBuffer);
+        BatchGoalSearch condFirst = new BatchGoalSearch(maxCompCost, bank, null, condFirstBuffer);
+        Callable<Outcome> thenFirstTask = () -> {
+            Optional<Pair<Integer, Term>> result = thenFirst.searchThenFirst(cost, goal, shared);
+            condFirst.cancel();
+            return new Outcome(Strategy.THEN_FIRST, result, System.nanoTime() - start);
+        };
+        Callable<Outcome> condFirstTask = () -> {
+            Optional<Pair<Integer, Term>> result = condFirst.searchCondFirst(cost, goal, shared);
+            thenFirst.cancel();
+            return new Outcome(Strategy.COND_FIRST, result, System.nanoTime() - start);
+        };
+        // closing the executor waits for the loser, so it has to be cancelled before that on every path
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                return executor.invokeAny(List.of(thenFirstTask, condFirstTask));
+            } catch (InterruptedException e) {
+                thenFirst.cancel();
+                condFirst.cancel();
+                Thread.currentThread().interrupt();
+                throw new CancellationException("portfolio search interrupted");
+            } catch (ExecutionException e) {
+                thenFirst.cancel();
+                condFirst.cancel();
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new ExecutionError("portfolio search failed: " + e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package escher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+
+/**
+ * A {@link MemoCache} split into independently locked stripes. Each stripe is an access-ordered
+ * {@link LinkedHashMap} holding an equal share of the capacity, so eviction is LRU per stripe.
+ */
+class StripedMemoCache<V> implements MemoCache<V> {
+    private static final int STRIPES = 16;
+    /** how many of the least recently used entries {@link Eviction#COST_AWARE} looks at */
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final Stripe<V>[] stripes;
+    private final Eviction eviction;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    StripedMemoCache(int capacity, Eviction eviction) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.eviction = eviction;
+        this.stripes = new Stripe[STRIPES];
+        int stripeCapacity = capacity == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity);
+        }
+    }
+
+    private Stripe<V> stripeOf(GoalKey key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    @Override
+    public V get(GoalKey key) {
+        Stripe<V> stripe = stripeOf(key);
+        V value;
+        synchronized (stripe) {
+            value = stripe.map.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public void merge(GoalKey key, V value, BinaryOperator<V> remapping) {
+        Stripe<V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.map.merge(key, value, remapping);
+            if (stripe.map.size() > stripe.capacity) {
+                evictOne(stripe);
+            }
+        }
+    }
+
+    private void evictOne(Stripe<V> stripe) {
+        Iterator<Map.Entry<GoalKey, V>> it = stripe.map.entrySet().iterator();
+        GoalKey victim = it.next().getKey();
+        if (eviction == Eviction.COST_AWARE) {
+            int victimSize = victim.size();
+            for (int n = 1; n < EVICTION_SAMPLE && it.hasNext(); n++) {
+                GoalKey k = it.next().getKey();
+                int size = k.size();
+                if (size < victimSize) {
+                    victim = k;
+                    victimSize = size;
+                }
+            }
+        }
+        stripe.map.remove(victim);
+        evictions.increment();
+    }
+
+    @Override
+    public int size() {
+        int n = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                n += stripe.map.size();
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.map.clear();
+            }
+        }
+    }
+
+    @Override
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    private static class Stripe<V> {
+        private final int capacity;
+        private final LinkedHashMap<GoalKey, V> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+}
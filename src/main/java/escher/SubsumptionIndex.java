@@ -0,0 +1,95 @@
+package escher;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Trie over the sorted example indices of goals with a known solution, answering which recorded goals contain a
+ * given one. All goals of one search are sub-maps of the same top level goal, so a term solving a goal also solves
+ * every subset goal, and its cost bounds theirs. Every node keeps the cheapest solution of its whole subtree,
+ * which lets a query skip subtrees that cannot beat the best superset found so far.
+ *
+ * <p>Only solutions are recorded. A goal with no solution under some cost says nothing about its supersets, since
+ * the split conditions are chosen greedily and the search is not complete.
+ */
+class SubsumptionIndex {
+    private static class Node {
+        private final TreeMap<Integer, Node> children = new TreeMap<>();
+        /** the cheapest known solution anywhere in this subtree */
+        private int bestCostBelow = Integer.MAX_VALUE;
+        private Term bestTermBelow;
+    }
+
+    private final int maxNodes;
+    private Node root = new Node();
+    private int nodes = 1;
+
+    /**
+     * @param maxNodes once the trie grows past this many nodes it is cleared, bounding its memory
+     */
+    SubsumptionIndex(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    synchronized void recordFound(GoalKey key, int cost, Term term) {
+        Node node = root;
+        improve(node, cost, term);
+        for (int i = key.nextIndex(0); i >= 0; i = key.nextIndex(i + 1)) {
+            node = child(node, i);
+            improve(node, cost, term);
+        }
+        trim();
+    }
+
+    private static void improve(Node node, int cost, Term term) {
+        if (cost < node.bestCostBelow) {
+            node.bestCostBelow = cost;
+            node.bestTermBelow = term;
+        }
+    }
+
+    private Node child(Node node, int index) {
+        Node child = node.children.get(index);
+        if (child == null) {
+            child = new Node();
+            node.children.put(index, child);
+            nodes++;
+        }
+        return child;
+    }
+
+    private void trim() {
+        if (nodes > maxNodes) {
+            root = new Node();
+            nodes = 1;
+        }
+    }
+
+    /** the cheapest recorded solution of <i>key</i> or of a superset of it, or null */
+    synchronized Pair<Integer, Term> supersetSolution(GoalKey key) {
+        Node[] best = new Node[1];
+        findSuperset(root, key, key.nextIndex(0), best);
+        return best[0] == null ? null : new Pair<>(best[0].bestCostBelow, best[0].bestTermBelow);
+    }
+
+    /**
+     * Walks the paths that contain every index of <i>key</i> from <i>next</i> on. Indices not in the key may be
+     * skipped over, but a child beyond the next required index can never lead to it since paths are sorted.
+     */
+    private static void findSuperset(Node node, GoalKey key, int next, Node[] best) {
+        if (node.bestTermBelow == null || (best[0] != null && node.bestCostBelow >= best[0].bestCostBelow)) {
+            return;
+        }
+        if (next < 0) {
+            best[0] = node;
+            return;
+        }
+        for (Map.Entry<Integer, Node> e : node.children.headMap(next, true).entrySet()) {
+            if (e.getKey() == next) {
+                findSuperset(e.getValue(), key, key.nextIndex(next + 1), best);
+            } else {
+                findSuperset(e.getValue(), key, next, best);
+            }
+        }
+    }
+}
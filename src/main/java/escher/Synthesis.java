@@ -0,0 +1,23 @@
+package escher;
+
+import java.util.List;
+
+final class Synthesis {
+    private Synthesis() {
+    }
+
+    /** the name, argument names and types of the function being synthesized */
+    static final class ComponentSignature {
+        final String name;
+        final List<String> argNames;
+        final List<Type> inputTypes;
+        final Type returnType;
+
+        ComponentSignature(String name, List<String> argNames, List<Type> inputTypes, Type returnType) {
+            this.name = name;
+            this.argNames = List.copyOf(argNames);
+            this.inputTypes = List.copyOf(inputTypes);
+            this.returnType = returnType;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package escher;
+
+import java.util.Optional;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the synthesizer, under the "Escher" category. Every emitting site asks the event
+ * whether it will be committed before computing any field, so nothing is spent while no recording is running.
+ *
+ * <p>Goal splits and memo lookups happen millions of times per search. They are disabled unless the settings of
+ * a recording enable them with {@code escher.GoalSplit#enabled=true} and {@code escher.MemoLookup#enabled=true}.
+ */
+public final class SynthesisEvents {
+    private SynthesisEvents() {
+    }
+
+    @Name("escher.CostLevel")
+    @Label("Cost Level")
+    @Category({"Escher", "Search"})
+    @Description("A top level goal search under one cost")
+    public static final class CostLevelEvent extends Event {
+        @Label("Strategy")
+        String strategy;
+
+        @Label("Cost")
+        int cost;
+
+        @Label("Goal Size")
+        int goalSize;
+
+        @Label("Found")
+        boolean found;
+
+        @Label("Solution Cost")
+        int solutionCost;
+
+        /** commits the event, started with {@link #begin()}, if the recording wants it */
+        void finish(String strategy, int cost, IndexValueMap goal, Optional<Pair<Integer, Term>> result) {
+            end();
+            if (shouldCommit()) {
+                this.strategy = strategy;
+                this.cost = cost;
+                this.goalSize = goal.size();
+                this.found = result != null && result.isPresent();
+                this.solutionCost = found ? result.get().getFirst() : -1;
+                commit();
+            }
+        }
+    }
+
+    @Name("escher.GoalSplit")
+    @Label("Goal Split")
+    @Category({"Escher", "Search"})
+    @Description("A goal split into the examples of a then-branch and those left to the else-branch")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class GoalSplitEvent extends Event {
+        @Label("Goal Size")
+        int goalSize;
+
+        @Label("Then Size")
+        int thenSize;
+
+        @Label("Cost")
+        int cost;
+
+        @Label("Branch Cost")
+        int branchCost;
+
+        static void emit(IndexValueMap goal, int thenSize, int cost, int branchCost) {
+            GoalSplitEvent event = new GoalSplitEvent();
+            if (event.shouldCommit()) {
+                event.goalSize = goal.size();
+                event.thenSize = thenSize;
+                event.cost = cost;
+                event.branchCost = branchCost;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("escher.MemoLookup")
+    @Label("Memo Lookup")
+    @Category({"Escher", "Search"})
+    @Description("A lookup of a goal and cost in a search memo table")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class MemoLookupEvent extends Event {
+        @Label("Goal Size")
+        int goalSize;
+
+        @Label("Cost")
+        int cost;
+
+        @Label("Hit")
+        boolean hit;
+
+        static void emit(GoalKey key, int cost, boolean hit) {
+            MemoLookupEvent event = new MemoLookupEvent();
+            if (event.shouldCommit()) {
+                event.goalSize = key.size();
+                event.cost = cost;
+                event.hit = hit;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("escher.TermBankGrowth")
+    @Label("Term Bank Growth")
+    @Category({"Escher", "Enumeration"})
+    @Description("One cost level of a term bank, enumerated and indexed")
+    @StackTrace(false)
+    public static final class TermBankGrowthEvent extends Event {
+        @Label("Cost")
+        int cost;
+
+        @Label("Terms Kept")
+        int terms;
+
+        @Label("Boolean Terms Kept")
+        int boolTerms;
+
+        void finish(int cost, int terms, int boolTerms) {
+            end();
+            if (shouldCommit()) {
+                this.cost = cost;
+                this.terms = terms;
+                this.boolTerms = boolTerms;
+                commit();
+            }
+        }
+    }
+
+    @Name("escher.RecursiveCheck")
+    @Label("Recursive Program Check")
+    @Category({"Escher", "Search"})
+    @Description("Running an assembled recursive program on the examples its partial result left open")
+    public static final class RecursiveCheckEvent extends Event {
+        @Label("Goal Size")
+        int goalSize;
+
+        @Label("Cost")
+        int cost;
+
+        @Label("Rows Checked")
+        int rows;
+
+        @Label("Passed")
+        boolean passed;
+
+        void finish(IndexValueMap goal, int cost, int rows, boolean passed) {
+            end();
+            if (shouldCommit()) {
+                this.goalSize = goal.size();
+                this.cost = cost;
+                this.rows = rows;
+                this.passed = passed;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import escher.BatchGoalSearch.SearchResult;
+
+/**
+ * Runs batches of synthesis jobs concurrently. Every job gets its own virtual thread, but only <i>workers</i> of
+ * them search at a time, since searching is CPU-bound; the others wait for a permit without holding a carrier
+ * thread. Each job deepens the cost of its goal in a {@link CostScheduler} over a fresh {@link BatchGoalSearch}
+ * until it is solved, its cost limit is reached or its deadline passes.
+ *
+ * <p>Jobs over the same component library, variables and example inputs share one {@link TermBank}, which is
+ * built lazily and only read by the searches, so a library like the standard components is enumerated once per
+ * set of inputs rather than once per job. A bank is dropped once the last submitted job using it has finished.
+ *
+ * <p>What a job holds on to is bounded as follows: its memo table can be capped with {@link Job#withMemoCapacity},
+ * every level of its bank keeps at most {@link VectorIndex#MAX_PROJECTIONS} goal projections, and interned terms
+ * are dropped once nothing refers to them. The levels of a bank are not capped; they only grow with the job's
+ * <i>maxCompCost</i>. Call caches belong to the components, which jobs share, so they are not the job's: no job
+ * clears them, since others may be using them, and each holds at most the capacity it was enabled with.
+ */
+public class SynthesisJobRunner implements AutoCloseable {
+    public enum Status {
+        SOLVED,
+        NOT_FOUND,
+        TIMED_OUT,
+        FAILED
+    }
+
+    public static final class Job {
+        private final String name;
+        private final List<ComponentImpl> library;
+        private final List<String> varNames;
+        /** null for an untyped job */
+        private final Map<String, Type> varTypes;
+        private final List<Map<String, termvalue>> inputs;
+        private final List<termvalue> outputs;
+        private final int maxCompCost;
+        private final int maxCost;
+        private final SearchPortfolio.Strategy strategy;
+        private final long timeoutNanos;
+        private final int memoCapacity;
+
+        private Job(String name, Collection<ComponentImpl> library, List<String> varNames, Map<String, Type> varTypes,
+                    List<Map<String, termvalue>> inputs, List<termvalue> outputs, int maxCompCost, int maxCost,
+                    SearchPortfolio.Strategy strategy, long timeoutNanos, int memoCapacity) {
+            if (inputs.size() != outputs.size()) {
+                throw new IllegalArgumentException("job " + name + " has " + inputs.size() + " inputs but "
+                        + outputs.size() + " outputs");
+            }
+            this.name = name;
+            this.library = List.copyOf(library);
+            this.varNames = List.copyOf(varNames);
+            this.varTypes = varTypes;
+            this.inputs = List.copyOf(inputs);
+            this.outputs = List.copyOf(outputs);
+            this.maxCompCost = maxCompCost;
+            this.maxCost = maxCost;
+            this.strategy = strategy;
+            this.timeoutNanos = timeoutNanos;
+            this.memoCapacity = memoCapacity;
+        }
+
+        /** a job without type information, searched then-first with no deadline and an unbounded memo table */
+        public static Job untyped(String name, Collection<ComponentImpl> library, List<String> varNames,
+                                  List<Map<String, termvalue>> inputs, List<termvalue> outputs,
+                                  int maxCompCost, int maxCost) {
+            return new Job(name, library, varNames, null, inputs, outputs, maxCompCost, maxCost,
+                    SearchPortfolio.Strategy.THEN_FIRST, Long.MAX_VALUE, 0);
+        }
+
+        /**
+         * A job whose term bank only enumerates well-typed terms; see {@link TermBank#TermBank(Collection, Map,
+         * List, int)}.
+         */
+        public static Job typed(String name, Collection<ComponentImpl> library, Map<String, Type> varTypes,
+                                List<Map<String, termvalue>> inputs, List<termvalue> outputs,
+                                int maxCompCost, int maxCost) {
+            return new Job(name, library, new ArrayList<>(varTypes.keySet()), Map.copyOf(varTypes), inputs, outputs,
+                    maxCompCost, maxCost, SearchPortfolio.Strategy.THEN_FIRST, Long.MAX_VALUE, 0);
+        }
+
+        public Job withStrategy(SearchPortfolio.Strategy strategy) {
+            return new Job(name, library, varNames, varTypes, inputs, outputs, maxCompCost, maxCost, strategy,
+                    timeoutNanos, memoCapacity);
+        }
+
+        /** gives up on the job <i>timeout</i> after it was submitted, including the time spent waiting to run */
+        public Job withTimeout(long timeout, TimeUnit unit) {
+            return new Job(name, library, varNames, varTypes, inputs, outputs, maxCompCost, maxCost, strategy,
+                    unit.toNanos(timeout), memoCapacity);
+        }
+
+        /** caps the memo table of the job at <i>entries</i> goals, evicting cheap ones first */
+        public Job withMemoCapacity(int entries) {
+            return new Job(name, library, varNames, varTypes, inputs, outputs, maxCompCost, maxCost, strategy,
+                    timeoutNanos, entries);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private BankKey bankKey() {
+            return new BankKey(library, varNames, varTypes, inputs, maxCompCost);
+        }
+    }
+
+    public static final class JobResult {
+        private final Job job;
+        private final Status status;
+        private final Optional<Pair<Integer, Term>> result;
+        private final long nanos;
+        private final MemoCache.Stats memoStats;
+        private final RuntimeException error;
+
+        JobResult(Job job, Status status, Optional<Pair<Integer, Term>> result, long nanos,
+                  MemoCache.Stats memoStats, RuntimeException error) {
+            this.job = job;
+            this.status = status;
+            this.result = result;
+            this.nanos = nanos;
+            this.memoStats = memoStats;
+            this.error = error;
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Optional<Pair<Integer, Term>> getResult() {
+            return result;
+        }
+
+        /** the time from submission to completion */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /** the memo table statistics of the job, or null if it never started searching */
+        public MemoCache.Stats getMemoStats() {
+            return memoStats;
+        }
+
+        /** what made the job fail, if its status is {@link Status#FAILED} */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String detail = status == Status.FAILED ? String.valueOf(error)
+                    : result.map(p -> p.getSecond().show() + " (cost " + p.getFirst() + ")").orElse("no solution");
+            return String.format("%s: %s in %.1f ms, %s", job.name, status, nanos / 1e6, detail);
+        }
+    }
+
+    /** what a term bank is determined by; components are compared by identity */
+    private static final class BankKey {
+        private final List<ComponentImpl> library;
+        private final List<String> varNames;
+        private final Map<String, Type> varTypes;
+        private final List<Map<String, termvalue>> inputs;
+        private final int maxCompCost;
+
+        BankKey(List<ComponentImpl> library, List<String> varNames, Map<String, Type> varTypes,
+                List<Map<String, termvalue>> inputs, int maxCompCost) {
+            this.library = library;
+            this.varNames = varNames;
+            this.varTypes = varTypes;
+            this.inputs = inputs;
+            this.maxCompCost = maxCompCost;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BankKey)) {
+                return false;
+            }
+            BankKey that = (BankKey) o;
+            return maxCompCost == that.maxCompCost && library.equals(that.library) && varNames.equals(that.varNames)
+                    && java.util.Objects.equals(varTypes, that.varTypes) && inputs.equals(that.inputs);
+        }
+
+        @Override
+        public int hashCode() {
+            return java.util.Objects.hash(library, varNames, varTypes, inputs, maxCompCost);
+        }
+
+        TermBank build() {
+            return varTypes == null
+                    ? new TermBank(library, varNames, inputs, maxCompCost)
+                    : new TermBank(library, varTypes, inputs, maxCompCost);
+        }
+    }
+
+    private final Semaphore workers;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<BankKey, TermBank> banks = new ConcurrentHashMap<>();
+    /** the number of submitted jobs per bank that have not finished yet */
+    private final Map<BankKey, Integer> pendingJobs = new ConcurrentHashMap<>();
+    private final Set<CostScheduler> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /** a runner searching as many jobs at a time as there are processors */
+    public SynthesisJobRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers how many jobs search at the same time
+     */
+    public SynthesisJobRunner(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        this.workers = new Semaphore(workers, true);
+    }
+
+    /**
+     * Starts every job and returns right away. Results can be taken from the returned service in the order the
+     * jobs complete.
+     */
+    public CompletionService<JobResult> submitAll(Collection<Job> jobs) {
+        CompletionService<JobResult> completion = new ExecutorCompletionService<>(executor);
+        for (Job job : jobs) {
+            long submitted = System.nanoTime();
+            BankKey key = job.bankKey();
+            pendingJobs.merge(key, 1, Integer::sum);
+            completion.submit(() -> {
+                try {
+                    return run(job, key, submitted);
+                } finally {
+                    release(key);
+                }
+            });
+        }
+        return completion;
+    }
+
+    /** runs the jobs and hands every result to <i>onResult</i> as soon as it is there, in completion order */
+    public List<JobResult> runAll(Collection<Job> jobs, Consumer<JobResult> onResult) throws InterruptedException {
+        CompletionService<JobResult> completion = submitAll(jobs);
+        List<JobResult> results = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            JobResult result;
+            try {
+                result = completion.take().get();
+            } catch (ExecutionException e) {
+                // run() reports failures as results, so this is an error of the runner itself
+                throw new ExecutionError("synthesis job crashed: " + e.getCause());
+            }
+            onResult.accept(result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /** drops the bank of <i>key</i> when no submitted job needs it any more */
+    private void release(BankKey key) {
+        pendingJobs.computeIfPresent(key, (k, n) -> {
+            if (n > 1) {
+                return n - 1;
+            }
+            banks.remove(k);
+            return null;
+        });
+    }
+
+    private JobResult run(Job job, BankKey key, long submitted) {
+        long deadline = job.timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : submitted + job.timeoutNanos;
+        try {
+            if (!acquireBefore(deadline)) {
+                return new JobResult(job, Status.TIMED_OUT, Optional.empty(), System.nanoTime() - submitted, null, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new JobResult(job, Status.TIMED_OUT, Optional.empty(), System.nanoTime() - submitted, null, null);
+        }
+        BatchGoalSearch search = null;
+        CostScheduler scheduler = null;
+        try {
+            TermBank bank = banks.computeIfAbsent(key, BankKey::build);
+            MemoCache<SearchResult> memo = job.memoCapacity > 0
+                    ? MemoCache.bounded(job.memoCapacity, MemoCache.Eviction.COST_AWARE)
+                    : MemoCache.unbounded();
+            search = new BatchGoalSearch(job.maxCompCost, bank, null, memo);
+            // the components, and so their call caches, may be shared with other running jobs
+            scheduler = new CostScheduler(search, IndexValueMap.of(job.outputs), job.maxCost, List.of(), job.strategy);
+            running.add(scheduler);
+            if (closed) {
+                // close() may already have paused the running jobs; a paused scheduler does not start
+                scheduler.pause();
+            }
+            Optional<Pair<Integer, Term>> found = scheduler.runUntil(deadline);
+            Status status = found.isPresent() ? Status.SOLVED
+                    : scheduler.isDone() ? Status.NOT_FOUND : Status.TIMED_OUT;
+            return new JobResult(job, status, found, System.nanoTime() - submitted, search.memoStats(), null);
+        } catch (RuntimeException e) {
+            return new JobResult(job, Status.FAILED, Optional.empty(), System.nanoTime() - submitted,
+                    search == null ? null : search.memoStats(), e);
+        } finally {
+            if (scheduler != null) {
+                running.remove(scheduler);
+            }
+            workers.release();
+        }
+    }
+
+    private boolean acquireBefore(long deadline) throws InterruptedException {
+        if (deadline == Long.MAX_VALUE) {
+            workers.acquire();
+            return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        return remaining > 0 && workers.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+    }
+
+    /** the number of term banks currently shared by submitted jobs */
+    public int bankCount() {
+        return banks.size();
+    }
+
+    /** drops the shared term banks; jobs running now keep theirs, and jobs started later build them again */
+    public void clearBanks() {
+        banks.clear();
+    }
+
+    /** cancels the running jobs, which then report {@link Status#TIMED_OUT}, and stops the threads */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        running.forEach(CostScheduler::pause);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,317 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and latency timers of the synthesizer. Collection is off by default, and instrumented code
+ * checks {@link #isEnabled()} before doing any work. A disabled metric therefore costs one volatile read.
+ *
+ * <p>Counters are {@link LongAdder}s and timers keep a log-linear histogram with 8 buckets per power of two, so
+ * percentiles are accurate to 12.5%. Both can be updated from any number of search threads without contention.
+ * {@link #snapshot()} copies the current values, and a snapshot prints itself through
+ * {@link CmdInteract#printTable}.
+ */
+public final class SynthesisMetrics {
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    static volatile boolean enabled;
+
+    // metrics of the hot paths, resolved once
+    static final Counter MEMO_HITS = counter("memo.hits");
+    static final Counter MEMO_MISSES = counter("memo.misses");
+    static final Counter SPLITS = counter("search.splits");
+    static final Counter EVALUATIONS = counter("eval.calls");
+    static final Counter EVAL_ERRORS = counter("eval.errors");
+    static final Counter CANDIDATES = counter("bank.candidates");
+    static final Timer THEN_FIRST = timer("search.thenFirst");
+    static final Timer COND_FIRST = timer("search.condFirst");
+    static final Timer SEARCH_MIN = timer("search.min");
+    static final Timer BANK_LEVEL = timer("bank.level");
+
+    private SynthesisMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SynthesisMetrics.enabled = enabled;
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    /** the counter of the terms kept at one cost level of a term bank */
+    static Counter termsOfCost(int cost) {
+        return counter(String.format("bank.terms[%02d]", cost));
+    }
+
+    /** zeroes every metric, e.g. between synthesis problems */
+    public static void reset() {
+        counters.values().forEach(Counter::reset);
+        timers.values().forEach(Timer::reset);
+    }
+
+    public static Snapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, c) -> counterValues.put(name, c.get()));
+        Map<String, TimerSnapshot> timerValues = new TreeMap<>();
+        timers.forEach((name, t) -> timerValues.put(name, t.snapshot()));
+        return new Snapshot(counterValues, timerValues);
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            if (enabled) {
+                value.increment();
+            }
+        }
+
+        public void add(long n) {
+            if (enabled) {
+                value.add(n);
+            }
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        private void reset() {
+            value.reset();
+        }
+    }
+
+    public static final class Timer {
+        private static final long NOT_STARTED = Long.MIN_VALUE;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1));
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** the start time to hand to {@link #stop}, without reading the clock when metrics are disabled */
+        public long start() {
+            return enabled ? System.nanoTime() : NOT_STARTED;
+        }
+
+        public void stop(long start) {
+            if (start != NOT_STARTED) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        public void record(long nanos) {
+            if (!enabled) {
+                return;
+            }
+            long v = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(v));
+            total.add(v);
+            max.accumulate(v);
+        }
+
+        static int bucketOf(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /** the largest value that falls into the bucket */
+        static long bucketLimit(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        private TimerSnapshot snapshot() {
+            long[] counts = new long[buckets.length()];
+            long n = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                n += counts[i];
+            }
+            long maxValue = max.get();
+            return new TimerSnapshot(n, total.sum(), maxValue,
+                    percentile(counts, n, 0.5, maxValue),
+                    percentile(counts, n, 0.9, maxValue),
+                    percentile(counts, n, 0.99, maxValue));
+        }
+
+        private static long percentile(long[] counts, long n, double p, long maxValue) {
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketLimit(i), maxValue);
+                }
+            }
+            return maxValue;
+        }
+
+        private void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            total.reset();
+            max.reset();
+        }
+    }
+
+    public static final class TimerSnapshot {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+
+        TimerSnapshot(long count, long totalNanos, long maxNanos, long p50, long p90, long p99) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /** @param p one of 0.5, 0.9 and 0.99 */
+        public long getPercentileNanos(double p) {
+            if (p == 0.5) {
+                return p50;
+            } else if (p == 0.9) {
+                return p90;
+            } else if (p == 0.99) {
+                return p99;
+            }
+            throw new IllegalArgumentException("percentile not tracked: " + p);
+        }
+    }
+
+    public static final class Snapshot {
+        private final Map<String, Long> counters;
+        private final Map<String, TimerSnapshot> timers;
+
+        Snapshot(Map<String, Long> counters, Map<String, TimerSnapshot> timers) {
+            this.counters = Collections.unmodifiableMap(counters);
+            this.timers = Collections.unmodifiableMap(timers);
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        public Map<String, TimerSnapshot> getTimers() {
+            return timers;
+        }
+
+        public long counter(String name) {
+            return counters.getOrDefault(name, 0L);
+        }
+
+        /** the share of component evaluations that ended in {@link valueerror} */
+        public double errorRate() {
+            long calls = counter(EVALUATIONS.getName());
+            return calls == 0 ? 0 : (double) counter(EVAL_ERRORS.getName()) / calls;
+        }
+
+        public double memoHitRate() {
+            long hits = counter(MEMO_HITS.getName());
+            long lookups = hits + counter(MEMO_MISSES.getName());
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /** the metrics as table rows with a header, timers first */
+        public List<List<String>> rows() {
+            List<List<String>> rows = new ArrayList<>();
+            rows.add(List.of("metric", "count", "total", "mean", "p50", "p90", "p99", "max"));
+            timers.forEach((name, t) -> {
+                if (t.getCount() > 0) {
+                    rows.add(List.of(name, Long.toString(t.getCount()), millis(t.getTotalNanos()),
+                            millis(t.getMeanNanos()), millis(t.p50), millis(t.p90), millis(t.p99),
+                            millis(t.getMaxNanos())));
+                }
+            });
+            counters.forEach((name, value) -> {
+                if (value > 0) {
+                    rows.add(List.of(name, Long.toString(value), "", "", "", "", "", ""));
+                }
+            });
+            rows.add(List.of("eval.error.rate", String.format("%.1f%%", errorRate() * 100), "", "", "", "", "", ""));
+            rows.add(List.of("memo.hit.rate", String.format("%.1f%%", memoHitRate() * 100), "", "", "", "", "", ""));
+            return rows;
+        }
+
+        public void print(int indent) {
+            Set<Integer> alignRight = new HashSet<>(List.of(1, 2, 3, 4, 5, 6, 7));
+            CmdInteract.printTable(rows(), 2, alignRight, indent);
+        }
+
+        private static String millis(long nanos) {
+            return TimeTools.nanoToMillisString(new TimeTools.Nanosecond(nanos));
+        }
+    }
+}
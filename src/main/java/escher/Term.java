@@ -1,38 +1,106 @@
 package escher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
-public interface Term {
+/**
+ * Terms are totally ordered by kind (variables, then components, then if-then-else), then by name, then by their
+ * children from left to right; a shorter argument list orders before a longer one with the same prefix.
+ */
+public interface Term extends Comparable<Term> {
     static boolean termsLt(List<Term> terms, List<Term> terms1) {
-        return false;
+        return compareTerms(terms, terms1) < 0;
+    }
+
+    /** lexicographic order on term lists, usable as the comparator of sorted term collections */
+    static int compareTerms(List<Term> terms, List<Term> terms1) {
+        int n = Math.min(terms.size(), terms1.size());
+        for (int i = 0; i < n; i++) {
+            int c = terms.get(i).compareTo(terms1.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(terms.size(), terms1.size());
     }
 
     String show();
 
     int kind();
 
-    boolean lessThan(Term that);
+    /**
+     * A 64-bit structural hash. Equal terms have equal fingerprints, so differing fingerprints reject equality
+     * without looking at the structure.
+     */
+    long fingerprint();
 
-    boolean greaterThan(Term that);
+    default boolean lessThan(Term that) {
+        return compareTo(that) < 0;
+    }
 
-    termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap) throws Exception;
+    default boolean greaterThan(Term that) {
+        return compareTo(that) > 0;
+    }
+
+    default termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap) throws Exception {
+        return executeTerm(varMap, compMap, null);
+    }
+
+    /**
+     * Evaluates within the budget of <i>fuel</i>, or unbounded if it is null. A term calling a recursive component
+     * may not terminate; once the budget is spent the result is {@link valueerror} and {@link Fuel#exhausted} is set.
+     */
+    termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap, Fuel fuel) throws Exception;
 
     termvalue executeTermDebug(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap, int depth) throws Exception;
 
-    ExtendedValue executeTermInExtendedEnv(Map<String, ExtendedValue> varMap, Map<String, ExtendedCompImpl> compMap) throws Exception;
+    /**
+     * Evaluates in an environment where values may be {@link valueunknown}, e.g. results of a partial program.
+     * Unknown values propagate through components and conditions as ordinary results, so this never throws.
+     */
+    ExtendedValue executeTermInExtendedEnv(Map<String, ExtendedValue> varMap, Map<String, ExtendedCompImpl> compMap);
+
+    /** evaluates on every example; {@link valueunknown#count} tells how informative the result is */
+    default List<ExtendedValue> executeInExtendedEnvs(List<Map<String, ExtendedValue>> varMaps, Map<String, ExtendedCompImpl> compMap) {
+        List<ExtendedValue> values = new ArrayList<>(varMaps.size());
+        for (Map<String, ExtendedValue> varMap : varMaps) {
+            values.add(executeTermInExtendedEnv(varMap, compMap));
+        }
+        return values;
+    }
 
     void printTerm(int depth);
+
+    /** number of nodes, which is also the cost of the term */
+    int size();
+
+    /** evaluates this term on every example of <i>evaluator</i> in one pass, reusing the columns it has cached */
+    default ValueVector executeBatch(BatchEvaluator evaluator) {
+        return evaluator.evaluate(this);
+    }
 }
 
 class Var implements Term {
     private final String name;
+    private final long fingerprint;
+    private String shown;
 
-    public Var(String name) {
+    private Var(String name) {
         this.name = name;
+        this.fingerprint = TermTable.mix(0, name.hashCode());
+    }
+
+    public static Var of(String name) {
+        return TermTable.intern(new Var(name));
     }
 
     public String getName() {
@@ -41,34 +109,57 @@ class Var implements Term {
 
     @Override
     public String show() {
-        return "@" + name;
+        if (shown == null) {
+            shown = "@" + name;
+        }
+        return shown;
     }
 
     @Override
-    public int kind() {
-        return 0;
+    public int size() {
+        return 1;
     }
 
     @Override
-    public boolean lessThan(Term that) {
-        if (that instanceof Var) {
-            Var other = (Var) that;
-            return name.compareTo(other.getName()) < 0;
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Var)) {
+            return false;
         }
-        return false;
+        Var that = (Var) o;
+        return fingerprint == that.fingerprint && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public long fingerprint() {
+        return fingerprint;
     }
 
     @Override
-    public boolean greaterThan(Term that) {
-        if (that instanceof Var) {
-            Var other = (Var) that;
-            return name.compareTo(other.getName()) > 0;
+    public int compareTo(Term that) {
+        if (this == that) {
+            return 0;
         }
-        return false;
+        if (!(that instanceof Var)) {
+            return Integer.compare(kind(), that.kind());
+        }
+        return name.compareTo(((Var) that).name);
     }
 
     @Override
-    public termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap) {
+    public int kind() {
+        return 0;
+    }
+
+    @Override
+    public termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap, Fuel fuel) {
         return varMap.get(name);
     }
 
@@ -92,10 +183,25 @@ class Var implements Term {
 class Component implements Term {
     private final String name;
     private final List<Term> terms;
+    private final long fingerprint;
+    private final int size;
+    private String shown;
 
-    public Component(String name, List<Term> terms) {
+    private Component(String name, List<Term> terms) {
         this.name = name;
-        this.terms = terms;
+        this.terms = List.copyOf(terms);
+        long h = TermTable.mix(1, name.hashCode());
+        int n = 1;
+        for (Term t : this.terms) {
+            h = TermTable.mix(h, t.fingerprint());
+            n += t.size();
+        }
+        this.fingerprint = h;
+        this.size = n;
+    }
+
+    public static Component of(String name, List<Term> terms) {
+        return TermTable.intern(new Component(name, terms));
     }
 
     public String getName() {
@@ -108,61 +214,76 @@ class Component implements Term {
 
     @Override
     public String show() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(name).append("(");
-        for (int i = 0; i < terms.size(); i++) {
-            sb.append(terms.get(i).show());
-            if (i < terms.size() - 1) {
-                sb.append(", ");
+        if (shown == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(name).append("(");
+            for (int i = 0; i < terms.size(); i++) {
+                sb.append(terms.get(i).show());
+                if (i < terms.size() - 1) {
+                    sb.append(", ");
+                }
             }
+            sb.append(")");
+            shown = sb.toString();
         }
-        sb.append(")");
-        return sb.toString();
+        return shown;
     }
 
     @Override
-    public int kind() {
-        return 1;
+    public int size() {
+        return size;
     }
 
     @Override
-    public boolean lessThan(Term that) {
-        if (that instanceof Component) {
-            Component other = (Component) that;
-            if (name.compareTo(other.getName()) < 0) {
-                return true;
-            } else if (name.equals(other.getName())) {
-                return Term.termsLt(terms, other.getTerms());
-            }
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Component)) {
+            return false;
         }
-        return false;
+        Component that = (Component) o;
+        return fingerprint == that.fingerprint && size == that.size && name.equals(that.name) && terms.equals(that.terms);
     }
 
     @Override
-    public boolean greaterThan(Term that) {
-        if (that instanceof Component) {
-            Component other = (Component) that;
-            if (name.compareTo(other.getName()) > 0) {
-                return true;
-            } else if (name.equals(other.getName())) {
-                return Term.termsLt(other.getTerms(), terms);
-            }
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public int compareTo(Term that) {
+        if (this == that) {
+            return 0;
         }
-        return false;
+        if (!(that instanceof Component)) {
+            return Integer.compare(kind(), that.kind());
+        }
+        Component other = (Component) that;
+        int c = name.compareTo(other.name);
+        return c != 0 ? c : Term.compareTerms(terms, other.terms);
     }
 
     @Override
-    public termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap) {
-        List<termvalue> args = terms.stream()
-                .map(t -> {
-                    try {
-                        return t.executeTerm(varMap, compMap);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                })
-                .collect(Collectors.toList());
-        return compMap.get(name).executeEfficient(args);
+    public int kind() {
+        return 1;
+    }
+
+    @Override
+    public termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap, Fuel fuel) throws Exception {
+        List<termvalue> args = new ArrayList<>(terms.size());
+        for (Term t : terms) {
+            args.add(t.executeTerm(varMap, compMap, fuel));
+            if (fuel != null && fuel.exhausted()) {
+                return valueerror.INSTANCE;
+            }
+        }
+        return compMap.get(name).executeEfficient(args, fuel);
     }
 
     @Override
@@ -183,8 +304,21 @@ class Component implements Term {
     }
 
     @Override
-    public ExtendedValue executeTermInExtendedEnv(Map<String, ExtendedValue> varMap, Map<String, ExtendedCompImpl> compMap) throws Exception {
-        return null;
+    public ExtendedValue executeTermInExtendedEnv(Map<String, ExtendedValue> varMap, Map<String, ExtendedCompImpl> compMap) {
+        List<termvalue> args = new ArrayList<>(terms.size());
+        boolean error = false;
+        for (Term t : terms) {
+            ExtendedValue v = t.executeTermInExtendedEnv(varMap, compMap);
+            if (v == valueunknown.INSTANCE) {
+                return valueunknown.INSTANCE;
+            }
+            error |= v == valueerror.INSTANCE;
+            args.add((termvalue) v);
+        }
+        if (error) {
+            return (ExtendedValue) valueerror.INSTANCE;
+        }
+        return compMap.get(name).execute(args);
     }
 
     private void execute(List<termvalue> args, boolean b) {
@@ -202,11 +336,22 @@ class If implements Term {
     private final Term condition;
     private final Term thenBranch;
     private final Term elseBranch;
+    private final long fingerprint;
+    private final int size;
+    private String shown;
 
-    public If(Term condition, Term thenBranch, Term elseBranch) {
+    private If(Term condition, Term thenBranch, Term elseBranch) {
         this.condition = condition;
         this.thenBranch = thenBranch;
         this.elseBranch = elseBranch;
+        long h = TermTable.mix(2, condition.fingerprint());
+        h = TermTable.mix(h, thenBranch.fingerprint());
+        this.fingerprint = TermTable.mix(h, elseBranch.fingerprint());
+        this.size = 1 + condition.size() + thenBranch.size() + elseBranch.size();
+    }
+
+    public static If of(Term condition, Term thenBranch, Term elseBranch) {
+        return TermTable.intern(new If(condition, thenBranch, elseBranch));
     }
 
     public Term getCondition() {
@@ -223,41 +368,70 @@ class If implements Term {
 
     @Override
     public String show() {
-        return "if " + condition.show() + " then " + thenBranch.show() + " else " + elseBranch.show();
+        if (shown == null) {
+            shown = "if " + condition.show() + " then " + thenBranch.show() + " else " + elseBranch.show();
+        }
+        return shown;
     }
 
     @Override
-    public int kind() {
-        return 2;
+    public int size() {
+        return size;
     }
 
     @Override
-    public boolean lessThan(Term that) {
-        if (that instanceof If) {
-            If other = (If) that;
-            return Term.termsLt(List.of(condition, thenBranch, elseBranch), List.of(other.getCondition(), other.getThenBranch(), other.getElseBranch()));
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof If)) {
+            return false;
         }
-        return kind() < that.kind();
+        If that = (If) o;
+        return fingerprint == that.fingerprint && size == that.size && condition.equals(that.condition)
+                && thenBranch.equals(that.thenBranch) && elseBranch.equals(that.elseBranch);
     }
 
     @Override
-    public boolean greaterThan(Term that) {
-        if (that instanceof If) {
-            If other = (If) that;
-            return Term.termsLt(List.of(other.getCondition(), other.getThenBranch(), other.getElseBranch()), List.of(condition, thenBranch, elseBranch));
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public int compareTo(Term that) {
+        if (this == that) {
+            return 0;
         }
-        return kind() > that.kind();
+        if (!(that instanceof If)) {
+            return Integer.compare(kind(), that.kind());
+        }
+        If other = (If) that;
+        int c = condition.compareTo(other.condition);
+        if (c == 0) {
+            c = thenBranch.compareTo(other.thenBranch);
+        }
+        return c != 0 ? c : elseBranch.compareTo(other.elseBranch);
+    }
+
+    @Override
+    public int kind() {
+        return 2;
     }
 
     @Override
-    public termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap) throws Exception {
-        termvalue cv = condition.executeTerm(varMap, compMap);
+    public termvalue executeTerm(Map<String, termvalue> varMap, Map<String, ComponentImpl> compMap, Fuel fuel) throws Exception {
+        termvalue cv = condition.executeTerm(varMap, compMap, fuel);
         if (cv == valueerror.INSTANCE) {
             return valueerror.INSTANCE;
         } else if (cv == valueBool.TRUE) {
-            return thenBranch.executeTerm(varMap, compMap);
+            return thenBranch.executeTerm(varMap, compMap, fuel);
         } else if (cv == valueBool.FALSE) {
-            return elseBranch.executeTerm(varMap, compMap);
+            return elseBranch.executeTerm(varMap, compMap, fuel);
         }
         throw new Exception("Branch condition evaluated to false type");
     }
@@ -282,19 +456,17 @@ class If implements Term {
     }
 
     @Override
-    public ExtendedValue executeTermInExtendedEnv(Map<String, ExtendedValue> varMap, Map<String, ExtendedCompImpl> compMap) throws Exception {
+    public ExtendedValue executeTermInExtendedEnv(Map<String, ExtendedValue> varMap, Map<String, ExtendedCompImpl> compMap) {
         ExtendedValue cv = condition.executeTermInExtendedEnv(varMap, compMap);
         if (cv == valueunknown.INSTANCE) {
             return valueunknown.INSTANCE;
-        } else if (cv == valueerror.INSTANCE) {
-            return (ExtendedValue) valueerror.INSTANCE;
         } else if (cv == valueBool.TRUE) {
             return thenBranch.executeTermInExtendedEnv(varMap, compMap);
         } else if (cv == valueBool.FALSE) {
             return elseBranch.executeTermInExtendedEnv(varMap, compMap);
-        } else {
-            throw new Exception("Branch condition evaluated to false type");
         }
+        // an error or a condition of the wrong type
+        return (ExtendedValue) valueerror.INSTANCE;
     }
 
     @Override
@@ -306,7 +478,12 @@ class If implements Term {
     }
 }
 
-class termvalue {
+/** a value in the extended environment: an ordinary {@link termvalue} or {@link valueunknown} */
+interface ExtendedValue {
+    String show();
+}
+
+class termvalue implements ExtendedValue {
     public String show() {
         String valueError = null;
         return valueError;
@@ -316,18 +493,177 @@ class termvalue {
 
 class ComponentImpl {
     public String name;
-
+    private final int arity;
+    private final BiFunction<List<termvalue>, Fuel, termvalue> impl;
+    /** null when the component is untyped */
+    private final List<Type> argTypes;
+    private final Type returnType;
+    private volatile CallCache callCache;
+
+    @SuppressWarnings("unchecked")
     public <E> ComponentImpl(String holeName, ArrayList<E> es, Type returnType, Object o) {
+        this.name = holeName;
+        this.arity = es.size();
+        if (returnType != null && es.stream().allMatch(e -> e instanceof Type)) {
+            this.argTypes = List.copyOf((List<Type>) es);
+            this.returnType = returnType;
+        } else {
+            this.argTypes = null;
+            this.returnType = null;
+        }
+        if (o instanceof Function) {
+            Function<List<termvalue>, termvalue> f = (Function<List<termvalue>, termvalue>) o;
+            this.impl = (args, fuel) -> f.apply(args);
+        } else {
+            this.impl = null;
+        }
     }
 
-    public static <ArgListCompare> ComponentImpl recursiveImpl(Synthesis.ComponentSignature signature, Map<String, ComponentImpl> envCompMap, ArgListCompare argListCompare, Term term) {
-        return null;
+    /**
+     * @param impl receives the fuel of the calling evaluation, or null if it is unbounded; implementations that
+     *             evaluate terms, recursive ones in particular, should pass it on
+     */
+    public ComponentImpl(String name, int arity, BiFunction<List<termvalue>, Fuel, termvalue> impl) {
+        this.name = name;
+        this.arity = arity;
+        this.impl = impl;
+        this.argTypes = null;
+        this.returnType = null;
+    }
+
+    /** a typed component; {@link TVar}s in the signature are instantiated per application */
+    public ComponentImpl(String name, List<Type> argTypes, Type returnType,
+                         BiFunction<List<termvalue>, Fuel, termvalue> impl) {
+        this.name = name;
+        this.arity = argTypes.size();
+        this.impl = impl;
+        this.argTypes = List.copyOf(argTypes);
+        this.returnType = returnType;
+    }
+
+    public int arity() {
+        return arity;
+    }
+
+    public boolean hasSignature() {
+        return argTypes != null;
+    }
+
+    /** the argument types, or null if the component is untyped */
+    public List<Type> argTypes() {
+        return argTypes;
+    }
+
+    /** the return type, or null if the component is untyped */
+    public Type returnType() {
+        return returnType;
+    }
+
+    /**
+     * Remembers the results of up to <i>capacity</i> distinct argument lists, so a recursive implementation
+     * checked against all examples evaluates each recursive sub-call once. Results must depend on the arguments
+     * only, which holds for every implementation built from terms.
+     */
+    public void enableCallCache(int capacity) {
+        callCache = new CallCache(capacity);
+    }
+
+    public void disableCallCache() {
+        callCache = null;
+    }
+
+    /** forgets the remembered results, e.g. between synthesis rounds; hit counts are kept */
+    public void clearCallCache() {
+        CallCache cache = callCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /** hit rates of the call cache, or null when it is not enabled */
+    public MemoCache.Stats callCacheStats() {
+        CallCache cache = callCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * The program whose body is <i>term</i>, calling itself under the name of <i>signature</i>. As in Escher, a
+     * self-call must be on arguments smaller than those of its caller by <i>argListCompare</i>; other self-calls,
+     * and bodies that fail to evaluate, give {@link valueerror}.
+     */
+    public static ComponentImpl recursiveImpl(Synthesis.ComponentSignature signature, Map<String, ComponentImpl> envCompMap,
+                                              BiPredicate<List<termvalue>, List<termvalue>> argListCompare, Term term) {
+        return new ComponentImpl(signature.name, signature.argNames.size(),
+                (args, fuel) -> callRecursive(signature, envCompMap, argListCompare, term, args, fuel));
+    }
+
+    private static termvalue callRecursive(Synthesis.ComponentSignature signature, Map<String, ComponentImpl> envCompMap,
+                                           BiPredicate<List<termvalue>, List<termvalue>> argListCompare, Term term,
+                                           List<termvalue> args, Fuel fuel) {
+        Map<String, termvalue> varMap = new HashMap<>();
+        for (int i = 0; i < signature.argNames.size(); i++) {
+            varMap.put(signature.argNames.get(i), args.get(i));
+        }
+        Map<String, ComponentImpl> compMap = new HashMap<>(envCompMap);
+        compMap.put(signature.name, new ComponentImpl(signature.name, args.size(), (callArgs, f) ->
+                argListCompare.test(callArgs, args)
+                        ? callRecursive(signature, envCompMap, argListCompare, term, callArgs, f)
+                        : valueerror.INSTANCE));
+        try {
+            return term.executeTerm(varMap, compMap, fuel);
+        } catch (Exception e) {
+            return valueerror.INSTANCE;
+        }
     }
 
     public termvalue executeEfficient(List<termvalue> args) {
-        termvalue extendedValue = new termvalue();
-        return extendedValue;
+        return executeEfficient(args, null);
+    }
+
+    /**
+     * Executes within the budget of <i>fuel</i>, returning {@link valueerror} once it is spent. Results computed
+     * after the budget ran out are not cached, since they depend on the budget rather than the arguments.
+     */
+    public termvalue executeEfficient(List<termvalue> args, Fuel fuel) {
+        CallCache cache = callCache;
+        if (cache != null) {
+            termvalue cached = cache.get(args);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (fuel != null && !fuel.enter()) {
+            return valueerror.INSTANCE;
+        }
+        termvalue result;
+        try {
+            result = apply(args, fuel);
+        } finally {
+            if (fuel != null) {
+                fuel.exit();
+            }
+        }
+        if (SynthesisMetrics.enabled) {
+            SynthesisMetrics.EVALUATIONS.increment();
+            if (result == valueerror.INSTANCE) {
+                SynthesisMetrics.EVAL_ERRORS.increment();
+            }
+        }
+        if (cache != null && (fuel == null || !fuel.exhausted())) {
+            // callers may reuse the list for their next call, so the key is a copy
+            cache.put(Arrays.asList(args.toArray(new termvalue[0])), result);
+        }
+        return result;
+    }
+
+    private termvalue apply(List<termvalue> args, Fuel fuel) {
+        if (impl == null) {
+            termvalue extendedValue = new termvalue();
+            return extendedValue;
+        }
+        return impl.apply(args, fuel);
     }
+
     // implementation of ComponentImpl class
 }
 
@@ -340,10 +676,25 @@ class ExecutionError extends RuntimeException {
 
 
 class ExtendedCompImpl {
+    private final Function<List<termvalue>, ExtendedValue> impl;
+
+    public ExtendedCompImpl(Function<List<termvalue>, ExtendedValue> impl) {
+        this.impl = impl;
+    }
+
+    /** an ordinary component, whose results are always known */
+    public static ExtendedCompImpl of(ComponentImpl comp) {
+        return new ExtendedCompImpl(args -> (ExtendedValue) comp.executeEfficient(args));
+    }
+
+    /** the hole of a partial program, which answers {@link valueunknown} to every call */
+    public static ExtendedCompImpl hole() {
+        return new ExtendedCompImpl(args -> valueunknown.INSTANCE);
+    }
+
     public ExtendedValue execute(List<termvalue> args) {
-        return null;
+        return impl.apply(args);
     }
-    // implementation of ExtendedCompImpl class
 }
 
 class valueerror extends termvalue {
@@ -378,12 +729,94 @@ class valueBool extends termvalue {
     }
 }
 
+class ValueInt extends termvalue {
+    private final int value;
+
+    ValueInt(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ValueInt && value == ((ValueInt) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(value);
+    }
+
+    @Override
+    public String show() {
+        return String.valueOf(value);
+    }
+}
+
+class ValuePair extends termvalue {
+    private final termvalue first;
+    private final termvalue second;
+
+    ValuePair(termvalue first, termvalue second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public termvalue getFirst() {
+        return first;
+    }
+
+    public termvalue getSecond() {
+        return second;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ValuePair)) {
+            return false;
+        }
+        ValuePair that = (ValuePair) o;
+        return Objects.equals(first, that.first) && Objects.equals(second, that.second);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(first) + Objects.hashCode(second);
+    }
+
+    @Override
+    public String show() {
+        return "(" + first.show() + ", " + second.show() + ")";
+    }
+}
+
 class valueunknown implements ExtendedValue {
     public static final valueunknown INSTANCE = new valueunknown();
 
     private valueunknown() {
     }
 
+    public static valueunknown getInstance() {
+        return INSTANCE;
+    }
+
+    /** how many of <i>values</i> are unknown; the fewer, the more a partial result says */
+    public static int count(Iterable<? extends ExtendedValue> values) {
+        int n = 0;
+        for (ExtendedValue v : values) {
+            if (v == INSTANCE) {
+                n++;
+            }
+        }
+        return n;
+    }
+
     @Override
     public String show() {
         return "ValueUnknown";
@@ -392,32 +825,11 @@ class valueunknown implements ExtendedValue {
 
 class TermUtils {
     public static boolean termsLt(List<Term> terms1, List<Term> terms2) {
-        for (int i = 0; i < terms1.size(); i++) {
-            if (lt(terms2.get(i), terms1.get(i))) {
-                return false;
-            } else if (lt(terms1.get(i), terms2.get(i))) {
-                return true;
-            }
-        }
-        return false;
+        return Term.termsLt(terms1, terms2);
     }
 
     public static boolean lt(Term t1, Term t2) {
-        if (t1 instanceof Var && t2 instanceof Var) {
-            Var v1 = (Var) t1;
-            Var v2 = (Var) t2;
-            return v1.lessThan(v2);
-        } else if (t1 instanceof Component && t2 instanceof Component) {
-            Component c1 = (Component) t1;
-            Component c2 = (Component) t2;
-            return c1.lessThan(c2);
-        } else if (t1 instanceof If && t2 instanceof If) {
-            If i1 = (If) t1;
-            If i2 = (If) t2;
-            return termsLt(List.of(i1.getCondition(), i1.getThenBranch(), i1.getElseBranch()),
-                    List.of(i2.getCondition(), i2.getThenBranch(), i2.getElseBranch()));
-        }
-        return t1.kind() < t2.kind();
+        return t1.compareTo(t2) < 0;
     }
 }
 
@@ -0,0 +1,493 @@
+package escher;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Bottom-up term enumerator. Terms are built level by level by cost (a variable or a constant costs 1, a
+ * component application costs 1 plus the cost of its arguments) and every candidate is executed once on all
+ * example inputs. Only the cheapest term of each distinct {@link ValueVector} is kept, so terms that behave
+ * identically on the examples (observational equivalence) are never handed to the goal searches twice.
+ *
+ * <p>The public methods line up with the constructor parameters of {@link BatchGoalSearch}, e.g.
+ * <pre>
+ *     new BatchGoalSearch(maxCost, bank::termOfCostAndVM, bank::termsOfCost, bank::boolTermsOfCost, bank::boolOfVM)
+ * </pre>
+ *
+ * <p>A bank built with variable types only applies components to arguments whose types unify with the
+ * component's signature, and groups every level by term type. Terms are then only merged with terms of the same
+ * type, so a polymorphic term is never hidden behind a specialized one that happens to agree on the examples.
+ */
+public class TermBank {
+    /** the budget of one component call while building levels, see {@link #limitFuel} */
+    public static final long DEFAULT_FUEL_STEPS = 1_000_000;
+    public static final int DEFAULT_FUEL_DEPTH = 1_000;
+
+    private final List<ComponentImpl> comps;
+    private final List<String> varNames;
+    private final List<Map<String, termvalue>> inputs;
+    private final int maxCost;
+    private final List<List<Pair<ValueVector, Term>>> levels = new CopyOnWriteArrayList<>();
+    private final List<List<Pair<ValueVector, Term>>> boolLevels = new CopyOnWriteArrayList<>();
+    private final List<VectorIndex> indexes = new CopyOnWriteArrayList<>();
+    private final List<VectorIndex> boolIndexes = new CopyOnWriteArrayList<>();
+    private final List<BoolVectorIndex> boolBitIndexes = new CopyOnWriteArrayList<>();
+    private final Set<ValueVector> seen = new HashSet<>();
+    /** null for an untyped bank */
+    private final TypeHierarchy hierarchy;
+    private final Map<String, Type> varTypes;
+    private final List<Map<Type, List<Pair<ValueVector, Term>>>> typedLevels = new CopyOnWriteArrayList<>();
+    private final Map<Type, Set<ValueVector>> seenByType = new HashMap<>();
+    private final Map<Term, Type> termTypes = new ConcurrentHashMap<>();
+    private volatile int builtLevels = 0;
+    private volatile long fuelSteps = DEFAULT_FUEL_STEPS;
+    private volatile int fuelDepth = DEFAULT_FUEL_DEPTH;
+    private final BatchEvaluator evaluator;
+
+    /**
+     * @param comps    the component library
+     * @param varNames names of the input variables
+     * @param inputs   one variable assignment per example
+     * @param maxCost  the largest term cost this bank will ever enumerate
+     */
+    public TermBank(Collection<ComponentImpl> comps, List<String> varNames, List<Map<String, termvalue>> inputs, int maxCost) {
+        this.comps = new ArrayList<>(comps);
+        this.varNames = new ArrayList<>(varNames);
+        this.inputs = new ArrayList<>(inputs);
+        this.maxCost = maxCost;
+        this.hierarchy = null;
+        this.varTypes = null;
+        this.evaluator = newEvaluator();
+    }
+
+    /**
+     * A typed bank.
+     *
+     * @param varTypes the input variables and their types, in the order of the leaves
+     * @throws IllegalArgumentException if a component has no type signature
+     */
+    public TermBank(Collection<ComponentImpl> comps, Map<String, Type> varTypes, List<Map<String, termvalue>> inputs, int maxCost) {
+        for (ComponentImpl comp : comps) {
+            if (!comp.hasSignature()) {
+                throw new IllegalArgumentException("component " + comp.name + " has no type signature");
+            }
+        }
+        this.comps = new ArrayList<>(comps);
+        this.varNames = new ArrayList<>(varTypes.keySet());
+        this.inputs = new ArrayList<>(inputs);
+        this.maxCost = maxCost;
+        this.hierarchy = new TypeHierarchy();
+        this.varTypes = new LinkedHashMap<>(varTypes);
+        this.evaluator = newEvaluator();
+    }
+
+    private BatchEvaluator newEvaluator() {
+        Map<String, ComponentImpl> compMap = new HashMap<>();
+        for (ComponentImpl comp : comps) {
+            compMap.put(comp.name, comp);
+        }
+        return new BatchEvaluator(inputs, compMap, () -> new Fuel(fuelSteps, fuelDepth), BatchEvaluator.DEFAULT_CAPACITY);
+    }
+
+    public boolean isTyped() {
+        return hierarchy != null;
+    }
+
+    public int getMaxCost() {
+        return maxCost;
+    }
+
+    public int exampleCount() {
+        return inputs.size();
+    }
+
+    /** all observationally distinct terms of exactly the given cost */
+    public Iterable<Pair<ValueVector, Term>> termsOfCost(int cost) {
+        if (cost < 1 || cost > maxCost) {
+            return Collections.emptyList();
+        }
+        ensureLevel(cost);
+        return levels.get(cost - 1);
+    }
+
+    /**
+     * The terms of exactly the given cost that can be used where a <i>type</i> is expected, that is whose type
+     * unifies with it. An untyped bank returns all of them.
+     */
+    public List<Pair<ValueVector, Term>> termsOfCost(int cost, Type type) {
+        if (cost < 1 || cost > maxCost) {
+            return Collections.emptyList();
+        }
+        ensureLevel(cost);
+        if (hierarchy == null) {
+            return levels.get(cost - 1);
+        }
+        Map<Type, List<Pair<ValueVector, Term>>> level = typedLevels.get(cost - 1);
+        List<Pair<ValueVector, Term>> result = new ArrayList<>();
+        for (Type t : hierarchy.compatibleWith(type)) {
+            result.addAll(level.getOrDefault(t, Collections.emptyList()));
+        }
+        return result;
+    }
+
+    /** the normalized type of a term kept by a typed bank */
+    public Optional<Type> typeOf(Term term) {
+        return Optional.ofNullable(termTypes.get(term));
+    }
+
+    /** the subset of {@link #termsOfCost(int)} whose non-error outputs are all booleans */
+    public Iterable<Pair<ValueVector, Term>> boolTermsOfCost(int cost) {
+        if (cost < 1 || cost > maxCost) {
+            return Collections.emptyList();
+        }
+        ensureLevel(cost);
+        return boolLevels.get(cost - 1);
+    }
+
+    /** the first term of exactly the given cost that agrees with the goal on all of its indices */
+    public Optional<Term> termOfCostAndVM(int cost, IndexValueMap goal) {
+        if (cost < 1 || cost > maxCost) {
+            return Optional.empty();
+        }
+        ensureLevel(cost);
+        return indexes.get(cost - 1).lookup(goal);
+    }
+
+    /** the cheapest boolean term that agrees with the given boolean goal */
+    public Optional<Pair<Integer, Term>> boolOfVM(IndexValueMap goal) {
+        for (int c = 1; c <= maxCost; c++) {
+            ensureLevel(c);
+            Optional<Term> term = boolIndexes.get(c - 1).lookup(goal);
+            if (term.isPresent()) {
+                return Optional.of(new Pair<>(c, term.get()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The condition to split a then-first goal on: among the boolean terms that are FALSE on the FALSE entries of
+     * <i>goal</i>, TRUE on a prefix (in index order) of its TRUE entries and FALSE on the rest of them, the
+     * cheapest one with the longest prefix. Returns it together with the indices of that prefix.
+     *
+     * <p>This is what {@link BatchGoalSearch} otherwise finds by giving up TRUE entries one at a time and calling
+     * {@link #boolOfVM} after each, but here every level is scanned once on bitsets. Levels are built and scanned
+     * in increasing cost, and the scan stops at the first level whose best term covers all TRUE entries: no
+     * higher level can beat it, so those levels are not built for it.
+     */
+    public Optional<Pair<Pair<Integer, Term>, List<Integer>>> maxSatCondition(IndexValueMap goal) {
+        int[] trueKeys = goal.keysWithValue(valueBool.TRUE);
+        if (trueKeys.length == 0) {
+            return Optional.empty();
+        }
+        int words = (inputs.size() + 63) >>> 6;
+        long[] goalBits = Arrays.copyOf(goal.key().words(), words);
+        long[] wantTrue = new long[words];
+        for (int k : trueKeys) {
+            wantTrue[k >>> 6] |= 1L << k;
+        }
+        Term best = null;
+        int bestCost = 0;
+        int bestLength = 0;
+        int[] prefix = new int[1];
+        for (int c = 1; c <= maxCost && bestLength < trueKeys.length; c++) {
+            ensureLevel(c);
+            BoolVectorIndex index = boolBitIndexes.get(c - 1);
+            int position = index.longestPrefix(goalBits, wantTrue, bestLength, prefix);
+            if (position >= 0) {
+                best = index.term(position);
+                bestCost = c;
+                bestLength = prefix[0];
+            }
+        }
+        if (best == null) {
+            return Optional.empty();
+        }
+        List<Integer> keyList = new ArrayList<>(bestLength);
+        for (int k = 0; k < bestLength; k++) {
+            keyList.add(trueKeys[k]);
+        }
+        return Optional.of(new Pair<>(new Pair<>(bestCost, best), keyList));
+    }
+
+    /**
+     * The outputs of any term over the components of this bank on its examples, e.g. of a solution assembled from
+     * bank terms. Columns are cached across calls, so terms sharing sub-terms evaluate them once.
+     */
+    public ValueVector vectorOf(Term term) {
+        return term.executeBatch(evaluator);
+    }
+
+    /**
+     * Frees the goal projections the level indexes have cached. The levels themselves are kept, so searches
+     * running at the same time only pay for rebuilding the projections they use again.
+     */
+    public void clearIndexes() {
+        for (VectorIndex index : indexes) {
+            index.clearProjections();
+        }
+        for (VectorIndex index : boolIndexes) {
+            index.clearProjections();
+        }
+    }
+
+    /**
+     * Runs every component call of the levels built from now on with a fresh {@link Fuel} of <i>steps</i> and
+     * <i>maxDepth</i>. A recursive component that diverges on some arguments then yields {@link valueerror} for
+     * them instead of hanging the enumeration.
+     */
+    public void limitFuel(long steps, int maxDepth) {
+        this.fuelSteps = steps;
+        this.fuelDepth = maxDepth;
+    }
+
+    private termvalue apply(ComponentImpl comp, List<termvalue> args) {
+        return comp.executeEfficient(args, new Fuel(fuelSteps, fuelDepth));
+    }
+
+    /** builds the missing levels up to <i>cost</i>; safe to call from several search threads */
+    private void ensureLevel(int cost) {
+        if (builtLevels >= cost) {
+            return;
+        }
+        synchronized (this) {
+            buildLevels(cost);
+        }
+    }
+
+    private void buildLevels(int cost) {
+        while (levels.size() < cost) {
+            int c = levels.size() + 1;
+            long start = SynthesisMetrics.BANK_LEVEL.start();
+            SynthesisEvents.TermBankGrowthEvent event = new SynthesisEvents.TermBankGrowthEvent();
+            event.begin();
+            List<Pair<ValueVector, Term>> level = new ArrayList<>();
+            List<Pair<ValueVector, Term>> boolLevel = new ArrayList<>();
+            Map<Type, List<Pair<ValueVector, Term>>> typedLevel = new LinkedHashMap<>();
+            if (c == 1) {
+                buildLeaves(level, boolLevel, typedLevel);
+            } else {
+                for (ComponentImpl comp : comps) {
+                    int arity = comp.arity();
+                    if (arity > 0 && arity <= c - 1) {
+                        buildApplications(comp, c - 1, level, boolLevel, typedLevel);
+                    }
+                }
+            }
+            typedLevels.add(typedLevel);
+            levels.add(level);
+            boolLevels.add(boolLevel);
+            indexes.add(new VectorIndex(level));
+            boolIndexes.add(new VectorIndex(boolLevel));
+            boolBitIndexes.add(new BoolVectorIndex(boolLevel, inputs.size()));
+            builtLevels = c;
+            SynthesisMetrics.BANK_LEVEL.stop(start);
+            event.finish(c, level.size(), boolLevel.size());
+            SynthesisMetrics.termsOfCost(c).add(level.size());
+        }
+    }
+
+    private void buildLeaves(List<Pair<ValueVector, Term>> level, List<Pair<ValueVector, Term>> boolLevel,
+                             Map<Type, List<Pair<ValueVector, Term>>> typedLevel) {
+        int n = inputs.size();
+        for (String name : varNames) {
+            ValueVector vec = Var.of(name).executeBatch(evaluator);
+            termvalue[] values = new termvalue[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = vec.get(i);
+            }
+            Type type = varTypes == null ? null : varTypes.get(name).normalize();
+            offer(() -> Var.of(name), type, values, level, boolLevel, typedLevel);
+        }
+        for (ComponentImpl comp : comps) {
+            if (comp.arity() == 0) {
+                termvalue[] values = new termvalue[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = apply(comp, new ArrayList<>());
+                }
+                Type type = hierarchy == null ? null : comp.returnType().normalize();
+                offer(() -> Component.of(comp.name, List.of()), type, values, level, boolLevel, typedLevel);
+            }
+        }
+    }
+
+    /**
+     * Enumerates every way of splitting <i>argCost</i> among the arguments of <i>comp</i> and applies the
+     * component to every combination of previously kept terms. Argument values are taken from the stored
+     * vectors, so no sub-term is ever executed twice.
+     */
+    private void buildApplications(ComponentImpl comp, int argCost, List<Pair<ValueVector, Term>> level,
+                                   List<Pair<ValueVector, Term>> boolLevel,
+                                   Map<Type, List<Pair<ValueVector, Term>>> typedLevel) {
+        int arity = comp.arity();
+        int[] costs = new int[arity];
+        Arrays.fill(costs, 1);
+        costs[arity - 1] = argCost - (arity - 1);
+        while (true) {
+            if (hierarchy == null) {
+                List<List<Pair<ValueVector, Term>>> argLevels = new ArrayList<>(arity);
+                for (int cost : costs) {
+                    argLevels.add(levels.get(cost - 1));
+                }
+                applyToCombinations(comp, argLevels, null, level, boolLevel, typedLevel);
+            } else {
+                applyToTypedCombinations(comp, costs, level, boolLevel, typedLevel);
+            }
+            if (!nextComposition(costs)) {
+                return;
+            }
+        }
+    }
+
+    /** advances <i>costs</i> to the next composition of the same total, returning false after the last one */
+    static boolean nextComposition(int[] costs) {
+        int last = costs.length - 1;
+        for (int i = last - 1; i >= 0; i--) {
+            if (costs[last] > 1) {
+                costs[i] += 1;
+                costs[last] -= 1;
+                return true;
+            }
+            costs[last] += costs[i] - 1;
+            costs[i] = 1;
+        }
+        return false;
+    }
+
+    /**
+     * For every tuple of argument types present at the given costs whose application type-checks, applies the
+     * component to the terms of those types only. Each argument type is first matched against its parameter on
+     * its own through the hierarchy, which rules out most tuples before any unification of the whole signature.
+     */
+    private void applyToTypedCombinations(ComponentImpl comp, int[] costs, List<Pair<ValueVector, Term>> level,
+                                          List<Pair<ValueVector, Term>> boolLevel,
+                                          Map<Type, List<Pair<ValueVector, Term>>> typedLevel) {
+        int arity = costs.length;
+        List<List<Type>> candidates = new ArrayList<>(arity);
+        for (int a = 0; a < arity; a++) {
+            Map<Type, List<Pair<ValueVector, Term>>> argLevel = typedLevels.get(costs[a] - 1);
+            List<Type> types = new ArrayList<>();
+            for (Type t : hierarchy.compatibleWith(comp.argTypes().get(a))) {
+                if (argLevel.containsKey(t)) {
+                    types.add(t);
+                }
+            }
+            if (types.isEmpty()) {
+                return;
+            }
+            candidates.add(types);
+        }
+        int[] choice = new int[arity];
+        List<Type> argTypes = new ArrayList<>(arity);
+        while (true) {
+            argTypes.clear();
+            for (int a = 0; a < arity; a++) {
+                argTypes.add(candidates.get(a).get(choice[a]));
+            }
+            Optional<Type> returnType = hierarchy.applicationType(comp, argTypes);
+            if (returnType.isPresent()) {
+                List<List<Pair<ValueVector, Term>>> argLevels = new ArrayList<>(arity);
+                for (int a = 0; a < arity; a++) {
+                    argLevels.add(typedLevels.get(costs[a] - 1).get(argTypes.get(a)));
+                }
+                applyToCombinations(comp, argLevels, returnType.get(), level, boolLevel, typedLevel);
+            }
+
+            int a = arity - 1;
+            while (a >= 0 && ++choice[a] == candidates.get(a).size()) {
+                choice[a] = 0;
+                a--;
+            }
+            if (a < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param type the type of every application, or null for an untyped bank
+     */
+    private void applyToCombinations(ComponentImpl comp, List<List<Pair<ValueVector, Term>>> argLevels, Type type,
+                                     List<Pair<ValueVector, Term>> level, List<Pair<ValueVector, Term>> boolLevel,
+                                     Map<Type, List<Pair<ValueVector, Term>>> typedLevel) {
+        int arity = argLevels.size();
+        for (List<Pair<ValueVector, Term>> argLevel : argLevels) {
+            if (argLevel.isEmpty()) {
+                return;
+            }
+        }
+        int n = inputs.size();
+        int[] choice = new int[arity];
+        while (true) {
+            termvalue[] values = new termvalue[n];
+            for (int i = 0; i < n; i++) {
+                List<termvalue> args = new ArrayList<>(arity);
+                boolean error = false;
+                for (int a = 0; a < arity; a++) {
+                    termvalue v = argLevels.get(a).get(choice[a]).getFirst().get(i);
+                    if (v == valueerror.INSTANCE) {
+                        error = true;
+                        break;
+                    }
+                    args.add(v);
+                }
+                values[i] = error ? valueerror.INSTANCE : apply(comp, args);
+            }
+            offer(() -> {
+                List<Term> argTerms = new ArrayList<>(arity);
+                for (int a = 0; a < arity; a++) {
+                    argTerms.add(argLevels.get(a).get(choice[a]).getSecond());
+                }
+                return Component.of(comp.name, argTerms);
+            }, type, values, level, boolLevel, typedLevel);
+
+            int a = arity - 1;
+            while (a >= 0 && ++choice[a] == argLevels.get(a).size()) {
+                choice[a] = 0;
+                a--;
+            }
+            if (a < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Keeps the term only if no cheaper (or earlier) term of the same type already produced the same outputs. The
+     * term is only built, and interned, once it is known to be kept.
+     */
+    private void offer(Supplier<Term> term, Type type, termvalue[] values, List<Pair<ValueVector, Term>> level,
+                       List<Pair<ValueVector, Term>> boolLevel, Map<Type, List<Pair<ValueVector, Term>>> typedLevel) {
+        SynthesisMetrics.CANDIDATES.increment();
+        boolean allError = true;
+        boolean allBool = true;
+        for (termvalue v : values) {
+            if (v != valueerror.INSTANCE) {
+                allError = false;
+                if (!(v instanceof valueBool)) {
+                    allBool = false;
+                }
+            }
+        }
+        if (allError) {
+            return;
+        }
+        ValueVector vec = ValueVector.of(values);
+        Set<ValueVector> seenOfType = type == null ? seen : seenByType.computeIfAbsent(type, t -> new HashSet<>());
+        if (!seenOfType.add(vec)) {
+            return;
+        }
+        Pair<ValueVector, Term> pair = new Pair<>(vec, term.get());
+        level.add(pair);
+        if (allBool) {
+            boolLevel.add(pair);
+        }
+        if (type != null) {
+            typedLevel.computeIfAbsent(type, t -> new ArrayList<>()).add(pair);
+            termTypes.put(pair.getSecond(), type);
+            hierarchy.register(type);
+        }
+    }
+}
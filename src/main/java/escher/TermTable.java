@@ -0,0 +1,78 @@
+package escher;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Intern table behind {@link Var#of}, {@link Component#of} and {@link If#of}. Building terms only through these
+ * factories makes structurally equal terms the same object, so equality checks usually stop at the identity
+ * test and overlapping enumerated terms share their sub-terms.
+ *
+ * <p>Entries are weak: once no bank, memo table or result refers to a term any more, the collector drops it from
+ * the table, so the table never outlives the searches that built its terms. Interning locks one of several
+ * stripes, picked by the term's fingerprint.
+ */
+public class TermTable {
+    private static final int STRIPES = 64;
+
+    private static final Stripe[] stripes = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private static final class Stripe {
+        /** values point back to their keys, so they must not keep them alive */
+        final WeakHashMap<Term, WeakReference<Term>> map = new WeakHashMap<>();
+    }
+
+    private static Stripe stripeOf(Term term) {
+        long h = term.fingerprint();
+        return stripes[(int) (h ^ (h >>> 32)) & (STRIPES - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Term> T intern(T term) {
+        Stripe stripe = stripeOf(term);
+        synchronized (stripe) {
+            WeakReference<Term> ref = stripe.map.get(term);
+            Term existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return (T) existing;
+            }
+            stripe.map.put(term, new WeakReference<>(term));
+            return term;
+        }
+    }
+
+    /** combines a structural fingerprint with the next component of a term */
+    static long mix(long h, long v) {
+        h = (h ^ v) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /** the number of interned terms that have not been collected yet */
+    public static int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Drops all interned terms. Terms created before and after are still compared correctly, just no longer by
+     * identity alone.
+     */
+    public static void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.map.clear();
+            }
+        }
+    }
+}
@@ -34,8 +34,15 @@ public class TimeTools {
         return String.format("%.3fs", nanosecond.getValue() / 1e9);
     }
 
+    /**
+     * Also records the time in the {@link SynthesisMetrics} timer named <i>taskName</i> when metrics are enabled,
+     * so repeated tasks get a latency histogram instead of one line each.
+     */
     public static <A> A printTimeUsed(String taskName, boolean shouldPrint, Task<A> task) {
         Tuple2<Nanosecond, A> result = measureTime(task);
+        if (SynthesisMetrics.isEnabled()) {
+            SynthesisMetrics.timer(taskName).record(result._1.getValue());
+        }
         if (shouldPrint) {
             System.out.println("*** [" + taskName + "] time used: " + nanoToMillisString(result._1) + " ***");
         }
@@ -0,0 +1,51 @@
+package escher;
+
+import java.util.Objects;
+
+/** An immutable triple, compared by the values of its three elements. */
+public final class Triple<A, B, C> {
+    private final A first;
+    private final B second;
+    private final C third;
+
+    public Triple(A first, B second, C third) {
+        this.first = first;
+        this.second = second;
+        this.third = third;
+    }
+
+    public A getFirst() {
+        return first;
+    }
+
+    public B getSecond() {
+        return second;
+    }
+
+    public C getThird() {
+        return third;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Triple)) {
+            return false;
+        }
+        Triple<?, ?, ?> that = (Triple<?, ?, ?>) o;
+        return Objects.equals(first, that.first) && Objects.equals(second, that.second)
+                && Objects.equals(third, that.third);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(first, second, third);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + first + ", " + second + ", " + third + ")";
+    }
+}
@@ -0,0 +1,352 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Types of terms. {@link TVar}s are type parameters of component signatures and may be instantiated by
+ * unification; {@link TFixedVar}s are the type parameters of the function being synthesized, which stand for
+ * one unknown type and only unify with themselves (or with a {@link TVar}).
+ */
+public abstract class Type {
+    /** this type with the substitution applied, recursively */
+    abstract Type substitute(Map<Integer, Type> subst);
+
+    /** this type with every {@link TVar} id increased by <i>offset</i> */
+    abstract Type shift(int offset);
+
+    /** the largest {@link TVar} id occurring in this type, or -1 */
+    abstract int maxVarId();
+
+    abstract boolean occurs(int varId);
+
+    /**
+     * Unifies the two types, extending <i>subst</i>. On failure <i>subst</i> may have been extended partially, so
+     * callers should pass a copy they can discard.
+     */
+    static boolean unify(Type a, Type b, Map<Integer, Type> subst) {
+        a = resolve(a, subst);
+        b = resolve(b, subst);
+        if (a.equals(b)) {
+            return true;
+        }
+        if (a instanceof TVar) {
+            return bind((TVar) a, b, subst);
+        }
+        if (b instanceof TVar) {
+            return bind((TVar) b, a, subst);
+        }
+        if (a instanceof TApply && b instanceof TApply) {
+            TApply x = (TApply) a;
+            TApply y = (TApply) b;
+            if (!x.name.equals(y.name) || x.params.size() != y.params.size()) {
+                return false;
+            }
+            for (int i = 0; i < x.params.size(); i++) {
+                if (!unify(x.params.get(i), y.params.get(i), subst)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static Type resolve(Type t, Map<Integer, Type> subst) {
+        while (t instanceof TVar) {
+            Type bound = subst.get(((TVar) t).getId());
+            if (bound == null) {
+                break;
+            }
+            t = bound;
+        }
+        return t;
+    }
+
+    private static boolean bind(TVar v, Type t, Map<Integer, Type> subst) {
+        if (t.substitute(subst).occurs(v.getId())) {
+            return false;
+        }
+        subst.put(v.getId(), t);
+        return true;
+    }
+
+    /** this type with its {@link TVar}s renumbered from 0 in order of appearance, so equal up to renaming is equal */
+    Type normalize() {
+        Map<Integer, Type> renaming = new HashMap<>();
+        collectVars(renaming);
+        return substitute(renaming);
+    }
+
+    abstract void collectVars(Map<Integer, Type> renaming);
+
+    public abstract String show();
+
+    @Override
+    public String toString() {
+        return show();
+    }
+}
+
+class TVar extends Type {
+    private final int id;
+
+    TVar(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    Type substitute(Map<Integer, Type> subst) {
+        Type t = subst.get(id);
+        return t == null ? this : t == this ? t : t.substitute(subst);
+    }
+
+    @Override
+    Type shift(int offset) {
+        return offset == 0 ? this : new TVar(id + offset);
+    }
+
+    @Override
+    int maxVarId() {
+        return id;
+    }
+
+    @Override
+    boolean occurs(int varId) {
+        return id == varId;
+    }
+
+    @Override
+    void collectVars(Map<Integer, Type> renaming) {
+        if (!renaming.containsKey(id)) {
+            renaming.put(id, new TVar(renaming.size()));
+        }
+    }
+
+    @Override
+    public String show() {
+        return "?" + id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TVar && ((TVar) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + 1;
+    }
+}
+
+class TFixedVar extends Type {
+    private final int id;
+
+    TFixedVar(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    Type substitute(Map<Integer, Type> subst) {
+        return this;
+    }
+
+    @Override
+    Type shift(int offset) {
+        return this;
+    }
+
+    @Override
+    int maxVarId() {
+        return -1;
+    }
+
+    @Override
+    boolean occurs(int varId) {
+        return false;
+    }
+
+    @Override
+    void collectVars(Map<Integer, Type> renaming) {
+    }
+
+    @Override
+    public String show() {
+        return "T" + id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TFixedVar && ((TFixedVar) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + 2;
+    }
+}
+
+/** a type constructor applied to parameters, e.g. Int, List[?0] */
+class TApply extends Type {
+    final String name;
+    final List<Type> params;
+
+    TApply(String name, List<Type> params) {
+        this.name = name;
+        this.params = List.copyOf(params);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Type> getParams() {
+        return params;
+    }
+
+    @Override
+    Type substitute(Map<Integer, Type> subst) {
+        if (params.isEmpty()) {
+            return this;
+        }
+        List<Type> ps = new ArrayList<>(params.size());
+        for (Type p : params) {
+            ps.add(p.substitute(subst));
+        }
+        return new TApply(name, ps);
+    }
+
+    @Override
+    Type shift(int offset) {
+        if (params.isEmpty() || offset == 0) {
+            return this;
+        }
+        List<Type> ps = new ArrayList<>(params.size());
+        for (Type p : params) {
+            ps.add(p.shift(offset));
+        }
+        return new TApply(name, ps);
+    }
+
+    @Override
+    int maxVarId() {
+        int max = -1;
+        for (Type p : params) {
+            max = Math.max(max, p.maxVarId());
+        }
+        return max;
+    }
+
+    @Override
+    boolean occurs(int varId) {
+        for (Type p : params) {
+            if (p.occurs(varId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    void collectVars(Map<Integer, Type> renaming) {
+        for (Type p : params) {
+            p.collectVars(renaming);
+        }
+    }
+
+    @Override
+    public String show() {
+        if (params.isEmpty()) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name).append("[");
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(params.get(i).show());
+        }
+        return sb.append("]").toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TApply)) {
+            return false;
+        }
+        TApply that = (TApply) o;
+        return name.equals(that.name) && params.equals(that.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + params.hashCode();
+    }
+}
+
+class TInt extends TApply {
+    private static final TInt INSTANCE = new TInt();
+
+    private TInt() {
+        super("Int", List.of());
+    }
+
+    static TInt of() {
+        return INSTANCE;
+    }
+}
+
+class TBool extends TApply {
+    private static final TBool INSTANCE = new TBool();
+
+    private TBool() {
+        super("Bool", List.of());
+    }
+
+    static TBool of() {
+        return INSTANCE;
+    }
+}
+
+class TList extends TApply {
+    private TList(Type elem) {
+        super("List", List.of(elem));
+    }
+
+    static TList of(Type elem) {
+        return new TList(elem);
+    }
+}
+
+class TTree extends TApply {
+    private TTree(Type elem) {
+        super("Tree", List.of(elem));
+    }
+
+    static TTree of(Type elem) {
+        return new TTree(elem);
+    }
+}
+
+class TPair extends TApply {
+    private TPair(Type first, Type second) {
+        super("Pair", List.of(first, second));
+    }
+
+    static TPair of(Type first, Type second) {
+        return new TPair(first, second);
+    }
+}
@@ -1,12 +1,28 @@
 package escher;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
+/**
+ * The types met during enumeration, ordered by generality: a node's children are the registered types that are
+ * instances of it (List[Int] under List[?0]), with the most general type ?0 at the root. Queries walk down from
+ * the root and stop at the first node that cannot unify with the query, since none of its instances can either.
+ *
+ * <p>Types are kept {@link Type#normalize() normalized}, so types equal up to renaming of {@link TVar}s share a
+ * node. Query results are cached until the next new type is registered.
+ */
 class TypeHierarchy {
     interface TypeTree {
-        Set<TypeNode> children = new HashSet<>();
+        Set<TypeNode> children();
 
         default void printTree(int tab) {
             String tabS = " ".repeat(tab);
@@ -18,48 +34,185 @@ class TypeHierarchy {
 
         void printTree(int depth, Printer printer);
 
-        void connectToParent(TypeHierarchy.TypeNode typeNode);
-
         interface Printer {
             void print(int depth, String s);
         }
     }
 
-
-
     static class TypeNode implements TypeTree {
-        private final Set<TypeTree> parents = new HashSet<>();
+        private final Type type;
+        private final Set<TypeTree> parents = new LinkedHashSet<>();
+        private final Set<TypeNode> children = new LinkedHashSet<>();
 
+        TypeNode(Type type) {
+            this.type = type;
+        }
 
+        public Type getType() {
+            return type;
+        }
 
-        public void connectToParent(TypeTree p) {
+        @Override
+        public Set<TypeNode> children() {
+            return children;
+        }
+
+        public void connectToParent(TypeNode p) {
             p.children.add(this);
             parents.add(p);
         }
 
-        public void deleteConnectionToParent(TypeTree p) {
+        public void deleteConnectionToParent(TypeNode p) {
             p.children.remove(this);
             parents.remove(p);
         }
 
         @Override
         public void printTree(int depth, Printer printer) {
-            printer.print(depth, "-  \n");
+            printer.print(depth, "-  " + type.show() + "\n");
             children.forEach(child -> child.printTree(depth + 1, printer));
         }
+    }
 
-        @Override
-        public void connectToParent(TypeNode typeNode) {
+    private final TypeNode root = new TypeNode(new TVar(0));
+    private final Map<Type, TypeNode> nodes = new HashMap<>();
+    private final Map<Type, List<Type>> compatibleCache = new ConcurrentHashMap<>();
+    private final Map<ComponentImpl, Map<List<Type>, Optional<Type>>> applicationCache =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    TypeHierarchy() {
+        nodes.put(root.type, root);
+    }
+
+    public TypeTree root() {
+        return root;
+    }
+
+    /**
+     * try to insert this type into the hierarchy if it is not already there
+     *
+     * @return the node of the type
+     */
+    public synchronized TypeNode register(Type type) {
+        Type t = type.normalize();
+        TypeNode existing = nodes.get(t);
+        if (existing != null) {
+            return existing;
+        }
+        TypeNode node = new TypeNode(t);
+        Set<TypeNode> parents = new LinkedHashSet<>();
+        mostSpecificGeneralizations(root, t, parents, Collections.newSetFromMap(new IdentityHashMap<>()));
+        for (TypeNode p : parents) {
+            // children of p that are instances of the new type move below it
+            for (TypeNode c : new ArrayList<>(p.children)) {
+                if (isInstance(c.type, t)) {
+                    c.deleteConnectionToParent(p);
+                    c.connectToParent(node);
+                }
+            }
+            node.connectToParent(p);
+        }
+        nodes.put(t, node);
+        compatibleCache.clear();
+        return node;
+    }
+
+    private static void mostSpecificGeneralizations(TypeNode from, Type t, Set<TypeNode> out, Set<TypeNode> visited) {
+        if (!visited.add(from)) {
+            return;
+        }
+        boolean deeper = false;
+        for (TypeNode c : from.children) {
+            if (isInstance(t, c.type)) {
+                deeper = true;
+                mostSpecificGeneralizations(c, t, out, visited);
+            }
+        }
+        if (!deeper) {
+            out.add(from);
+        }
+    }
 
+    /**
+     * The registered types that unify with <i>type</i>, that is those of the terms that can be used where a
+     * <i>type</i> is expected once their type variables are instantiated.
+     */
+    public List<Type> compatibleWith(Type type) {
+        Type t = type.normalize();
+        List<Type> cached = compatibleCache.get(t);
+        if (cached != null) {
+            return cached;
+        }
+        List<Type> result = new ArrayList<>();
+        synchronized (this) {
+            // cached under the same lock as register() clears the cache, so a result from before a registration
+            // cannot be put back after it
+            collectCompatible(root, t, result, Collections.newSetFromMap(new IdentityHashMap<>()));
+            result = Collections.unmodifiableList(result);
+            compatibleCache.put(t, result);
+        }
+        return result;
+    }
+
+    private static void collectCompatible(TypeNode from, Type t, List<Type> out, Set<TypeNode> visited) {
+        if (!visited.add(from) || !unifiable(from.type, t)) {
+            return;
+        }
+        out.add(from.type);
+        for (TypeNode c : from.children) {
+            collectCompatible(c, t, out, visited);
         }
     }
 
     /**
-     * try to insert this typeNode into this TypeTree if this type is not already in the tree
+     * The return type of <i>comp</i> applied to arguments of the given types, or empty if the application does
+     * not type-check. Argument types are renamed apart from each other and from the signature first, since
+     * separate terms do not share type variables. Results are cached per component and argument types.
      *
-     * @return whether the node has been inserted
+     * @throws IllegalArgumentException if <i>comp</i> has no type signature
      */
+    public Optional<Type> applicationType(ComponentImpl comp, List<Type> argTypes) {
+        if (!comp.hasSignature()) {
+            throw new IllegalArgumentException("component " + comp.name + " has no type signature");
+        }
+        Map<List<Type>, Optional<Type>> perComp =
+                applicationCache.computeIfAbsent(comp, c -> new ConcurrentHashMap<>());
+        return perComp.computeIfAbsent(List.copyOf(argTypes), ts -> unifyApplication(comp, ts));
+    }
 
-}
+    private static Optional<Type> unifyApplication(ComponentImpl comp, List<Type> argTypes) {
+        List<Type> params = comp.argTypes();
+        if (params.size() != argTypes.size()) {
+            return Optional.empty();
+        }
+        int offset = comp.returnType().maxVarId();
+        for (Type p : params) {
+            offset = Math.max(offset, p.maxVarId());
+        }
+        offset++;
+        Map<Integer, Type> subst = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            Type arg = argTypes.get(i);
+            if (!Type.unify(params.get(i), arg.shift(offset), subst)) {
+                return Optional.empty();
+            }
+            offset += arg.maxVarId() + 1;
+        }
+        return Optional.of(comp.returnType().substitute(subst).normalize());
+    }
 
+    /** whether the two types unify once renamed apart */
+    static boolean unifiable(Type a, Type b) {
+        return Type.unify(a, b.shift(a.maxVarId() + 1), new HashMap<>());
+    }
 
+    /** whether <i>t</i> is <i>general</i> with some of its type variables instantiated */
+    static boolean isInstance(Type t, Type general) {
+        // freezing the variables of t keeps unification from instantiating them
+        Map<Integer, Type> frozen = new HashMap<>();
+        for (int id = 0; id <= t.maxVarId(); id++) {
+            frozen.put(id, new TFixedVar(-1 - id));
+        }
+        return Type.unify(general, t.substitute(frozen), new HashMap<>());
+    }
+}
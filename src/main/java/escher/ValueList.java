@@ -0,0 +1,141 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Persistent singly linked list value. Prepending, taking the tail and concatenating share the existing cells
+ * instead of copying them, and every cell caches the length and the deep hash of the list it starts, so hashing
+ * is O(1) and unequal lists are told apart by their hash in O(1) almost always.
+ */
+public final class ValueList extends termvalue {
+    public static final ValueList EMPTY = new ValueList();
+
+    private final termvalue head;
+    private final ValueList tail;
+    private final int size;
+    private final int hash;
+    /** 31 to the power of {@link #size}, used to extend the hash at the front */
+    private final int pow;
+
+    private ValueList() {
+        this.head = null;
+        this.tail = null;
+        this.size = 0;
+        this.hash = 1;
+        this.pow = 1;
+    }
+
+    private ValueList(termvalue head, ValueList tail) {
+        this.head = head;
+        this.tail = tail;
+        this.size = tail.size + 1;
+        this.hash = Objects.hashCode(head) * tail.pow + tail.hash;
+        this.pow = tail.pow * 31;
+    }
+
+    public static ValueList of(List<termvalue> elems) {
+        ValueList list = EMPTY;
+        for (int i = elems.size() - 1; i >= 0; i--) {
+            list = list.cons(elems.get(i));
+        }
+        return list;
+    }
+
+    public ValueList cons(termvalue elem) {
+        return new ValueList(elem, this);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** the first element; the list must not be empty */
+    public termvalue head() {
+        return head;
+    }
+
+    /** all but the first element, sharing their cells; the list must not be empty */
+    public ValueList tail() {
+        return tail;
+    }
+
+    public termvalue get(int index) {
+        ValueList list = this;
+        for (int i = 0; i < index; i++) {
+            list = list.tail;
+        }
+        return list.head;
+    }
+
+    /** this list followed by <i>that</i>; only the cells of this list are copied */
+    public ValueList concat(ValueList that) {
+        if (that.isEmpty()) {
+            return this;
+        }
+        termvalue[] prefix = new termvalue[size];
+        ValueList list = this;
+        for (int i = 0; i < size; i++, list = list.tail) {
+            prefix[i] = list.head;
+        }
+        ValueList result = that;
+        for (int i = size - 1; i >= 0; i--) {
+            result = result.cons(prefix[i]);
+        }
+        return result;
+    }
+
+    public List<termvalue> toList() {
+        List<termvalue> elems = new ArrayList<>(size);
+        for (ValueList list = this; !list.isEmpty(); list = list.tail) {
+            elems.add(list.head);
+        }
+        return elems;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ValueList)) {
+            return false;
+        }
+        ValueList a = this;
+        ValueList b = (ValueList) o;
+        if (a.size != b.size || a.hash != b.hash) {
+            return false;
+        }
+        // walk until the lists run into a shared tail
+        while (a != b) {
+            if (!Objects.equals(a.head, b.head)) {
+                return false;
+            }
+            a = a.tail;
+            b = b.tail;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String show() {
+        StringBuilder sb = new StringBuilder("[");
+        for (ValueList list = this; !list.isEmpty(); list = list.tail) {
+            if (list != this) {
+                sb.append(", ");
+            }
+            sb.append(list.head.show());
+        }
+        return sb.append("]").toString();
+    }
+}
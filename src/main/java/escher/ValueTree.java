@@ -0,0 +1,67 @@
+package escher;
+
+/**
+ * Binary tree value. The tree is persistent, so values built from other trees share their subtrees, and its
+ * cached hash makes hashing O(1).
+ */
+public final class ValueTree extends termvalue {
+    public static final ValueTree EMPTY = new ValueTree(BinaryTree.leaf());
+
+    private final BinaryTree<termvalue> tree;
+
+    private ValueTree(BinaryTree<termvalue> tree) {
+        this.tree = tree;
+    }
+
+    public static ValueTree of(BinaryTree<termvalue> tree) {
+        return tree.isLeaf() ? EMPTY : new ValueTree(tree);
+    }
+
+    /** a node over the given subtrees, sharing them */
+    public static ValueTree node(termvalue tag, ValueTree left, ValueTree right) {
+        return new ValueTree(BinaryTree.node(tag, left.tree, right.tree));
+    }
+
+    public BinaryTree<termvalue> getTree() {
+        return tree;
+    }
+
+    public boolean isEmpty() {
+        return tree.isLeaf();
+    }
+
+    /** the tag of the root; the tree must not be empty */
+    public termvalue tag() {
+        return tree.tag();
+    }
+
+    public ValueTree left() {
+        return of(tree.left());
+    }
+
+    public ValueTree right() {
+        return of(tree.right());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ValueTree && tree.equals(((ValueTree) o).tree));
+    }
+
+    @Override
+    public int hashCode() {
+        return tree.hashCode();
+    }
+
+    @Override
+    public String show() {
+        return show(tree);
+    }
+
+    private static String show(BinaryTree<termvalue> t) {
+        if (t.isLeaf()) {
+            return "L";
+        }
+        return "T(" + t.tag().show() + ", " + show(t.left()) + ", " + show(t.right()) + ")";
+    }
+}
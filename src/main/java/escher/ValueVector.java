@@ -0,0 +1,346 @@
+package escher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The outputs of a term on every example. Instances are immutable and are created through {@link #of}, which
+ * picks the storage from the values:
+ * <ul>
+ *     <li>booleans are kept as two bitsets, one for TRUE and one for errors,</li>
+ *     <li>integers as an {@code int[]} with an error bitset, and</li>
+ *     <li>anything else as an array of values.</li>
+ * </ul>
+ * Equality and hashing only depend on the values, whatever the storage.
+ */
+public abstract class ValueVector {
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 1023;
+    private static final ValueInt[] SMALL_INTS = new ValueInt[SMALL_INT_MAX - SMALL_INT_MIN + 1];
+
+    static {
+        for (int i = 0; i < SMALL_INTS.length; i++) {
+            SMALL_INTS[i] = new ValueInt(i + SMALL_INT_MIN);
+        }
+    }
+
+    private final int size;
+    private final int hash;
+
+    private ValueVector(int size, int hash) {
+        this.size = size;
+        this.hash = hash;
+    }
+
+    public static ValueVector of(List<termvalue> values) {
+        return of(values.toArray(new termvalue[0]));
+    }
+
+    public static ValueVector of(termvalue[] values) {
+        boolean allBool = true;
+        boolean allInt = true;
+        for (termvalue v : values) {
+            if (v == valueerror.INSTANCE) {
+                continue;
+            }
+            allBool &= v instanceof valueBool;
+            allInt &= v instanceof ValueInt;
+        }
+        if (allBool) {
+            return BoolVector.fromValues(values);
+        } else if (allInt) {
+            return IntVector.fromValues(values);
+        }
+        return new ObjectVector(values.clone());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public abstract termvalue get(int i);
+
+    /** whether the value at <i>i</i> equals <i>v</i>, without materializing it */
+    public abstract boolean matchesAt(int i, termvalue v);
+
+    /** the values at the indices of <i>key</i>, in index order */
+    public abstract ValueVector project(GoalKey key);
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ValueVector)) {
+            return false;
+        }
+        ValueVector that = (ValueVector) o;
+        if (size != that.size || hash != that.hash) {
+            return false;
+        }
+        if (getClass() == that.getClass()) {
+            return sameStorageEquals(that);
+        }
+        for (int i = 0; i < size; i++) {
+            if (!matchesAt(i, that.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** equality with a vector of the same class */
+    abstract boolean sameStorageEquals(ValueVector that);
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            termvalue v = get(i);
+            sb.append(v == null ? "null" : v.show());
+        }
+        return sb.append("]").toString();
+    }
+
+    static ValueInt boxInt(int value) {
+        if (value >= SMALL_INT_MIN && value <= SMALL_INT_MAX) {
+            return SMALL_INTS[value - SMALL_INT_MIN];
+        }
+        return new ValueInt(value);
+    }
+
+    // element hashes shared by all storages, so that equal vectors hash alike
+    private static final int ERROR_HASH = 1;
+    private static final int TRUE_HASH = 1231;
+    private static final int FALSE_HASH = 1237;
+
+    private static int intHash(int value) {
+        return value * 0x9E3779B1;
+    }
+
+    private static int hashOf(termvalue v) {
+        if (v == null) {
+            return 0;
+        } else if (v == valueerror.INSTANCE) {
+            return ERROR_HASH;
+        } else if (v instanceof valueBool) {
+            return ((valueBool) v).getValue() ? TRUE_HASH : FALSE_HASH;
+        } else if (v instanceof ValueInt) {
+            return intHash(((ValueInt) v).getValue());
+        }
+        return v.hashCode();
+    }
+
+    /** value equality as the storages see it: booleans made outside the two constants still compare by value */
+    static boolean sameValue(termvalue a, termvalue b) {
+        if (a instanceof valueBool && b instanceof valueBool) {
+            return ((valueBool) a).getValue() == ((valueBool) b).getValue();
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static boolean bit(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static final class BoolVector extends ValueVector {
+        private final long[] trueBits;
+        private final long[] errorBits;
+
+        private BoolVector(int size, long[] trueBits, long[] errorBits) {
+            super(size, hash(size, trueBits, errorBits));
+            this.trueBits = trueBits;
+            this.errorBits = errorBits;
+        }
+
+        private static BoolVector fromValues(termvalue[] values) {
+            long[] trueBits = new long[(values.length + 63) >>> 6];
+            long[] errorBits = new long[trueBits.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == valueerror.INSTANCE) {
+                    errorBits[i >>> 6] |= 1L << i;
+                } else if (((valueBool) values[i]).getValue()) {
+                    trueBits[i >>> 6] |= 1L << i;
+                }
+            }
+            return new BoolVector(values.length, trueBits, errorBits);
+        }
+
+        private static int hash(int size, long[] trueBits, long[] errorBits) {
+            int h = 1;
+            for (int i = 0; i < size; i++) {
+                h = 31 * h + (bit(errorBits, i) ? ERROR_HASH : bit(trueBits, i) ? TRUE_HASH : FALSE_HASH);
+            }
+            return h;
+        }
+
+        @Override
+        public termvalue get(int i) {
+            if (bit(errorBits, i)) {
+                return valueerror.INSTANCE;
+            }
+            return bit(trueBits, i) ? valueBool.TRUE : valueBool.FALSE;
+        }
+
+        @Override
+        public boolean matchesAt(int i, termvalue v) {
+            return sameValue(get(i), v);
+        }
+
+        @Override
+        public ValueVector project(GoalKey key) {
+            int n = key.size();
+            long[] t = new long[(n + 63) >>> 6];
+            long[] e = new long[t.length];
+            int j = 0;
+            for (int i = key.nextIndex(0); i >= 0; i = key.nextIndex(i + 1), j++) {
+                if (bit(errorBits, i)) {
+                    e[j >>> 6] |= 1L << j;
+                } else if (bit(trueBits, i)) {
+                    t[j >>> 6] |= 1L << j;
+                }
+            }
+            return new BoolVector(n, t, e);
+        }
+
+        @Override
+        boolean sameStorageEquals(ValueVector that) {
+            BoolVector other = (BoolVector) that;
+            return Arrays.equals(trueBits, other.trueBits) && Arrays.equals(errorBits, other.errorBits);
+        }
+    }
+
+    private static final class IntVector extends ValueVector {
+        private final int[] values;
+        /** null if there are no errors */
+        private final long[] errorBits;
+
+        private IntVector(int[] values, long[] errorBits) {
+            super(values.length, hash(values, errorBits));
+            this.values = values;
+            this.errorBits = errorBits;
+        }
+
+        private static IntVector fromValues(termvalue[] vs) {
+            int[] values = new int[vs.length];
+            long[] errorBits = null;
+            for (int i = 0; i < vs.length; i++) {
+                if (vs[i] == valueerror.INSTANCE) {
+                    if (errorBits == null) {
+                        errorBits = new long[(vs.length + 63) >>> 6];
+                    }
+                    errorBits[i >>> 6] |= 1L << i;
+                } else {
+                    values[i] = ((ValueInt) vs[i]).getValue();
+                }
+            }
+            return new IntVector(values, errorBits);
+        }
+
+        private static int hash(int[] values, long[] errorBits) {
+            int h = 1;
+            for (int i = 0; i < values.length; i++) {
+                h = 31 * h + (errorBits != null && bit(errorBits, i) ? ERROR_HASH : intHash(values[i]));
+            }
+            return h;
+        }
+
+        private boolean isError(int i) {
+            return errorBits != null && bit(errorBits, i);
+        }
+
+        @Override
+        public termvalue get(int i) {
+            return isError(i) ? valueerror.INSTANCE : boxInt(values[i]);
+        }
+
+        @Override
+        public boolean matchesAt(int i, termvalue v) {
+            if (isError(i)) {
+                return v == valueerror.INSTANCE;
+            }
+            return v instanceof ValueInt && ((ValueInt) v).getValue() == values[i];
+        }
+
+        @Override
+        public ValueVector project(GoalKey key) {
+            int[] projected = new int[key.size()];
+            long[] e = null;
+            int j = 0;
+            for (int i = key.nextIndex(0); i >= 0; i = key.nextIndex(i + 1), j++) {
+                if (isError(i)) {
+                    if (e == null) {
+                        e = new long[(projected.length + 63) >>> 6];
+                    }
+                    e[j >>> 6] |= 1L << j;
+                } else {
+                    projected[j] = values[i];
+                }
+            }
+            return new IntVector(projected, e);
+        }
+
+        @Override
+        boolean sameStorageEquals(ValueVector that) {
+            IntVector other = (IntVector) that;
+            return Arrays.equals(values, other.values) && Arrays.equals(errorBits, other.errorBits);
+        }
+    }
+
+    private static final class ObjectVector extends ValueVector {
+        private final termvalue[] values;
+
+        private ObjectVector(termvalue[] values) {
+            super(values.length, hash(values));
+            this.values = values;
+        }
+
+        private static int hash(termvalue[] values) {
+            int h = 1;
+            for (termvalue v : values) {
+                h = 31 * h + hashOf(v);
+            }
+            return h;
+        }
+
+        @Override
+        public termvalue get(int i) {
+            return values[i];
+        }
+
+        @Override
+        public boolean matchesAt(int i, termvalue v) {
+            return sameValue(values[i], v);
+        }
+
+        @Override
+        public ValueVector project(GoalKey key) {
+            termvalue[] projected = new termvalue[key.size()];
+            int j = 0;
+            for (int i = key.nextIndex(0); i >= 0; i = key.nextIndex(i + 1)) {
+                projected[j++] = values[i];
+            }
+            return new ObjectVector(projected);
+        }
+
+        @Override
+        boolean sameStorageEquals(ValueVector that) {
+            termvalue[] others = ((ObjectVector) that).values;
+            for (int i = 0; i < values.length; i++) {
+                if (!sameValue(values[i], others[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package escher;
+
+import java.util.*;
+
+/**
+ * Hash index over one cost level of a {@link TermBank}. For every goal index set that is queried, the level is
+ * projected once onto those indices and the projections are put into a hash map, so asking whether some term
+ * matches a partial goal becomes a single probe instead of a scan over the whole level. Projections keep the
+ * primitive storage of their {@link ValueVector}.
+ *
+ * <p>Goal index sets are combinatorial and each projection is as large as the level, so only the
+ * {@link #MAX_PROJECTIONS} most recently used projections are kept. A dropped projection is rebuilt on its next
+ * lookup.
+ */
+class VectorIndex {
+    static final int MAX_PROJECTIONS = 256;
+
+    private final List<Pair<ValueVector, Term>> terms;
+    private final MemoCache<Map<ValueVector, Term>> byKeys = MemoCache.bounded(MAX_PROJECTIONS, MemoCache.Eviction.LRU);
+
+    VectorIndex(List<Pair<ValueVector, Term>> terms) {
+        this.terms = terms;
+    }
+
+    /** the first term of this level (in enumeration order) that agrees with the goal on all of its indices */
+    Optional<Term> lookup(IndexValueMap goal) {
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+        GoalKey keys = goal.key();
+        Map<ValueVector, Term> projections = byKeys.get(keys);
+        if (projections == null) {
+            projections = project(keys);
+            byKeys.merge(keys, projections, (old, fresh) -> old);
+        }
+        termvalue[] wanted = new termvalue[keys.size()];
+        int j = 0;
+        for (int i = keys.nextIndex(0); i >= 0; i = keys.nextIndex(i + 1)) {
+            wanted[j++] = goal.get(i);
+        }
+        return Optional.ofNullable(projections.get(ValueVector.of(wanted)));
+    }
+
+    /** the number of projections currently kept */
+    int projectionCount() {
+        return byKeys.size();
+    }
+
+    /** drops every projection, e.g. between searches that share the bank */
+    void clearProjections() {
+        byKeys.clear();
+    }
+
+    private Map<ValueVector, Term> project(GoalKey keys) {
+        Map<ValueVector, Term> projections = new HashMap<>();
+        for (Pair<ValueVector, Term> pair : terms) {
+            projections.putIfAbsent(pair.getFirst().project(keys), pair.getSecond());
+        }
+        return projections;
+    }
+}
@@ -0,0 +1,133 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BatchEvaluatorTests {
+
+    private static ValueList ints(int... values) {
+        List<termvalue> elems = new ArrayList<>();
+        for (int v : values) {
+            elems.add(new ValueInt(v));
+        }
+        return ValueList.of(elems);
+    }
+
+    private static List<Map<String, termvalue>> examples() {
+        List<Map<String, termvalue>> varMaps = new ArrayList<>();
+        for (ValueList xs : List.of(ints(), ints(1), ints(1, 2), ints(3, 1, 2))) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("xs", xs);
+            varMaps.add(env);
+        }
+        return varMaps;
+    }
+
+    /** the fixture components, with <i>tail</i> counting its calls */
+    private static Map<String, ComponentImpl> compMap(AtomicInteger tailCalls) {
+        Map<String, ComponentImpl> compMap = new HashMap<>();
+        for (ComponentImpl comp : List.of(SynthesisFixtures.IS_EMPTY, SynthesisFixtures.HEAD, SynthesisFixtures.CONS,
+                SynthesisFixtures.ZERO, SynthesisFixtures.INC, SynthesisFixtures.NIL)) {
+            compMap.put(comp.name, comp);
+        }
+        compMap.put("tail", new ComponentImpl("tail", 1, (args, fuel) -> {
+            tailCalls.incrementAndGet();
+            return SynthesisFixtures.TAIL.executeEfficient(args, fuel);
+        }));
+        return compMap;
+    }
+
+    private static Term c(String name, Term... args) {
+        return Component.of(name, List.of(args));
+    }
+
+    private static final Term xs = Var.of("xs");
+
+    private static ValueVector fromScratch(Term term, Map<String, ComponentImpl> compMap) throws Exception {
+        List<Map<String, termvalue>> varMaps = examples();
+        termvalue[] column = new termvalue[varMaps.size()];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = term.executeTerm(varMaps.get(i), compMap);
+        }
+        return ValueVector.of(column);
+    }
+
+    @Test
+    public void testSharedSubtermIsEvaluatedOnce() {
+        AtomicInteger tailCalls = new AtomicInteger();
+        BatchEvaluator evaluator = new BatchEvaluator(examples(), compMap(tailCalls));
+        Term shared = c("tail", xs);
+        List<Term> candidates = List.of(c("head", shared), c("cons", c("zero"), shared),
+                c("inc", c("head", shared)), If.of(c("isEmpty", xs), c("nil"), shared));
+        for (Term candidate : candidates) {
+            candidate.executeBatch(evaluator);
+        }
+        // one call per example, for all the candidates together
+        assertEquals(examples().size(), tailCalls.get());
+        candidates.get(0).executeBatch(evaluator);
+        assertEquals(examples().size(), tailCalls.get());
+    }
+
+    @Test
+    public void testAgreesWithEvaluationFromScratch() throws Exception {
+        AtomicInteger tailCalls = new AtomicInteger();
+        Map<String, ComponentImpl> compMap = compMap(tailCalls);
+        BatchEvaluator evaluator = new BatchEvaluator(examples(), compMap);
+        List<Term> terms = List.of(xs, c("tail", xs), c("head", c("tail", xs)), c("tail", c("tail", c("tail", xs))),
+                c("cons", c("head", xs), c("tail", c("tail", xs))),
+                If.of(c("isEmpty", xs), c("zero"), c("inc", c("head", xs))),
+                If.of(c("isEmpty", c("tail", xs)), c("head", c("tail", xs)), c("zero")));
+        for (Term term : terms) {
+            assertEquals(fromScratch(term, compMap), term.executeBatch(evaluator), term.show());
+        }
+        // where evaluation from scratch throws on a condition that is not a boolean, the batch gives an error
+        ValueVector column = If.of(c("head", xs), c("zero"), c("zero")).executeBatch(evaluator);
+        for (int i = 0; i < column.size(); i++) {
+            assertEquals(valueerror.INSTANCE, column.get(i));
+        }
+    }
+
+    @Test
+    public void testErrorRowsSkipTheComponent() {
+        AtomicInteger tailCalls = new AtomicInteger();
+        BatchEvaluator evaluator = new BatchEvaluator(examples(), compMap(tailCalls));
+        // head fails on the empty example, so tail only runs on the other three
+        ValueVector column = c("tail", c("cons", c("head", xs), c("nil"))).executeBatch(evaluator);
+        assertEquals(valueerror.INSTANCE, column.get(0));
+        assertEquals(examples().size() - 1, tailCalls.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedColumnsAreDropped() {
+        AtomicInteger tailCalls = new AtomicInteger();
+        BatchEvaluator evaluator = new BatchEvaluator(examples(), compMap(tailCalls), () -> null, 2);
+        c("tail", xs).executeBatch(evaluator);
+        c("head", xs).executeBatch(evaluator);
+        c("zero").executeBatch(evaluator);
+        assertEquals(2, evaluator.cachedColumns());
+        c("tail", xs).executeBatch(evaluator);
+        assertEquals(2 * examples().size(), tailCalls.get());
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchEvaluator(examples(), compMap(tailCalls), () -> null, 0));
+    }
+
+    @Test
+    public void testBankVectorsComeFromItsEvaluator() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.byName("stutter");
+        TermBank bank = problem.bank();
+        for (int cost = 1; cost <= 3; cost++) {
+            for (Pair<ValueVector, Term> entry : bank.termsOfCost(cost)) {
+                assertEquals(entry.getFirst(), bank.vectorOf(entry.getSecond()), entry.getSecond().show());
+            }
+        }
+    }
+}
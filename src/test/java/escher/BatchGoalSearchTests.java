@@ -0,0 +1,290 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import escher.BatchGoalSearch.SearchResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BatchGoalSearchTests {
+
+    private static final List<String> problems = List.of("reverse", "stutter", "squareList");
+
+    /** iterative deepening as the drivers do it: the first cost with a solution */
+    static Optional<Pair<Integer, Term>> deepen(BatchGoalSearch search, SynthesisFixtures.Problem problem) {
+        IndexValueMap goal = problem.goal();
+        for (int cost = 1; cost <= problem.maxCost; cost++) {
+            Optional<Pair<Integer, Term>> result = search.searchThenFirst(cost, goal);
+            if (result.isPresent()) {
+                return result;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** a memo table that keeps almost nothing, so goals are searched from scratch over and over */
+    static MemoCache<SearchResult> forgetful() {
+        return MemoCache.bounded(1, MemoCache.Eviction.LRU);
+    }
+
+    static String show(Optional<Pair<Integer, Term>> result) {
+        return result.map(p -> p.getFirst() + ": " + p.getSecond().show()).orElse("none");
+    }
+
+    /** every non-empty proper sub-goal of <i>goal</i>, in a random order */
+    static List<IndexValueMap> shuffledSubGoals(IndexValueMap goal, Random random) {
+        int n = goal.exampleCount();
+        List<IndexValueMap> subGoals = new ArrayList<>();
+        for (int mask = 1; mask < (1 << n) - 1; mask++) {
+            List<Integer> removed = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if ((mask & (1 << i)) == 0) {
+                    removed.add(i);
+                }
+            }
+            subGoals.add(goal.remove(removed));
+        }
+        Collections.shuffle(subGoals, random);
+        return subGoals;
+    }
+
+    /**
+     * A hand-written bank over four examples. Terms are variables standing for the listed outputs; their costs are
+     * given explicitly, so the greedy split conditions can be arranged.
+     */
+    static class TableBank {
+        private final List<Pair<Integer, Pair<ValueVector, Term>>> terms = new ArrayList<>();
+
+        TableBank add(int cost, String name, termvalue... values) {
+            terms.add(new Pair<>(cost, new Pair<>(ValueVector.of(values), Var.of(name))));
+            return this;
+        }
+
+        List<Pair<ValueVector, Term>> termsOfCost(int cost) {
+            List<Pair<ValueVector, Term>> result = new ArrayList<>();
+            for (Pair<Integer, Pair<ValueVector, Term>> t : terms) {
+                if (t.getFirst() == cost) {
+                    result.add(t.getSecond());
+                }
+            }
+            return result;
+        }
+
+        List<Pair<ValueVector, Term>> boolTermsOfCost(int cost) {
+            List<Pair<ValueVector, Term>> result = new ArrayList<>();
+            for (Pair<ValueVector, Term> t : termsOfCost(cost)) {
+                if (t.getFirst().get(0) instanceof valueBool) {
+                    result.add(t);
+                }
+            }
+            return result;
+        }
+
+        Optional<Term> termOfCostAndVM(int cost, IndexValueMap goal) {
+            for (Pair<ValueVector, Term> t : termsOfCost(cost)) {
+                if (IndexValueMap.matchVector(goal, t.getFirst())) {
+                    return Optional.of(t.getSecond());
+                }
+            }
+            return Optional.empty();
+        }
+
+        Optional<Pair<Integer, Term>> boolOfVM(IndexValueMap goal) {
+            for (int cost = 1; cost <= 10; cost++) {
+                for (Pair<ValueVector, Term> t : boolTermsOfCost(cost)) {
+                    if (IndexValueMap.matchVector(goal, t.getFirst())) {
+                        return Optional.of(new Pair<>(cost, t.getSecond()));
+                    }
+                }
+            }
+            return Optional.empty();
+        }
+
+        BatchGoalSearch search(int maxCompCost) {
+            return new BatchGoalSearch(maxCompCost, this::termOfCostAndVM, c -> termsOfCost(c),
+                    c -> boolTermsOfCost(c), this::boolOfVM);
+        }
+    }
+
+    private static final valueBool T = valueBool.TRUE;
+    private static final valueBool F = valueBool.FALSE;
+
+    private static ValueInt i(int v) {
+        return new ValueInt(v);
+    }
+
+    /**
+     * The goal [1, 1, 2, 2] is if(c1, a, if(c2, a, b)) at cost 7. On its sub-goal without example 3, the longest
+     * split condition for then-branch a is the expensive cx, so that sub-goal costs 8, and nothing is found for
+     * it under 7. Results are thus not monotone under goal subsets.
+     */
+    private static TableBank greedyTrap() {
+        return new TableBank()
+                .add(1, "a", i(1), i(1), i(9), i(9))
+                .add(1, "b", i(9), i(9), i(2), i(2))
+                .add(1, "c1", T, F, F, F)
+                .add(1, "c2", F, T, F, F)
+                .add(5, "cx", T, T, F, T);
+    }
+
+    private static final IndexValueMap trapGoal = IndexValueMap.of(List.of(i(1), i(1), i(2), i(2)));
+    private static final IndexValueMap trapSubGoal = IndexValueMap.fromMap(Map.of(0, i(1), 1, i(1), 2, i(2)), 4);
+
+    @Test
+    public void testSubsetWithoutSolutionDoesNotPruneSuperset() {
+        String fresh = show(greedyTrap().search(6).searchThenFirst(7, trapGoal));
+        assertEquals("7: if @c1 then @a else if @c2 then @a else @b", fresh);
+
+        BatchGoalSearch warmed = greedyTrap().search(6);
+        assertEquals("none", show(warmed.searchThenFirst(7, trapSubGoal)));
+        assertEquals(fresh, show(warmed.searchThenFirst(7, trapGoal)));
+    }
+
+    /** the solution of the whole goal also solves the sub-goal, more cheaply than the greedy split finds */
+    @Test
+    public void testSupersetSolutionCapsSubset() {
+        assertEquals("8: if @cx then @a else @b", show(greedyTrap().search(6).searchThenFirst(8, trapSubGoal)));
+
+        String whole = "7: if @c1 then @a else if @c2 then @a else @b";
+        BatchGoalSearch warmed = greedyTrap().search(6);
+        assertEquals(whole, show(warmed.searchThenFirst(7, trapGoal)));
+        assertEquals(whole, show(warmed.searchThenFirst(8, trapSubGoal)));
+        assertEquals(whole, show(warmed.searchCondFirst(8, trapSubGoal)));
+        assertEquals("none", show(warmed.searchThenFirst(6, trapSubGoal)));
+    }
+
+    @Test
+    public void testFixturesAreSolved() {
+        for (String name : problems) {
+            SynthesisFixtures.Problem problem = SynthesisFixtures.byName(name);
+            Optional<Pair<Integer, Term>> result = deepen(new BatchGoalSearch(problem.maxCompCost, problem.bank()), problem);
+            assertTrue(result.isPresent(), name);
+            assertEquals(problem.maxCost, result.get().getFirst(), name);
+        }
+    }
+
+    /**
+     * Goal results are not monotone under subsets, since the split condition is picked greedily, so what the memo
+     * knows about sub-goals must not change the result of a goal. Searching sub-goals first, in any order, has to
+     * give what a search with a memo that forgets everything gives.
+     */
+    @Test
+    public void testResultDoesNotDependOnMemoContents() {
+        for (String name : problems) {
+            SynthesisFixtures.Problem problem = SynthesisFixtures.byName(name);
+            TermBank bank = problem.bank();
+            String reference = show(deepen(new BatchGoalSearch(problem.maxCompCost, bank, null, forgetful()), problem));
+            for (long seed = 0; seed < 3; seed++) {
+                BatchGoalSearch warmed = new BatchGoalSearch(problem.maxCompCost, bank);
+                for (IndexValueMap subGoal : shuffledSubGoals(problem.goal(), new Random(seed))) {
+                    warmed.searchThenFirst(problem.maxCost, subGoal);
+                    warmed.searchCondFirst(problem.maxCost - 2, subGoal);
+                }
+                assertEquals(reference, show(deepen(warmed, problem)), name + ", seed " + seed);
+            }
+        }
+    }
+
+    /**
+     * Exploring then-branches on a pool has to find the term the sequential enumeration order finds first, at
+     * every cost and on every sub-goal, whatever order the tasks finish in.
+     */
+    @Test
+    public void testParallelSearchAgreesWithSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String name : problems) {
+                SynthesisFixtures.Problem problem = SynthesisFixtures.byName(name);
+                TermBank bank = problem.bank();
+                BatchGoalSearch sequential = new BatchGoalSearch(problem.maxCompCost, bank, null, forgetful());
+                BatchGoalSearch parallel = new BatchGoalSearch(problem.maxCompCost, bank, pool);
+                assertEquals(show(deepen(sequential, problem)), show(deepen(parallel, problem)), name);
+                for (IndexValueMap subGoal : shuffledSubGoals(problem.goal(), new Random(0))) {
+                    assertEquals(show(sequential.searchThenFirst(problem.maxCost, subGoal)),
+                            show(parallel.searchThenFirst(problem.maxCost, subGoal)), name + ", " + subGoal);
+                }
+            }
+            TableBank trap = greedyTrap();
+            for (int cost = 1; cost <= 8; cost++) {
+                BatchGoalSearch parallel = new BatchGoalSearch(6, trap::termOfCostAndVM, c -> trap.termsOfCost(c),
+                        c -> trap.boolTermsOfCost(c), trap::boolOfVM, pool);
+                assertEquals(show(trap.search(6).searchThenFirst(cost, trapGoal)),
+                        show(parallel.searchThenFirst(cost, trapGoal)), "cost " + cost);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMemoIsReusedAcrossCosts() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+        deepen(search, problem);
+        MemoCache.Stats stats = search.memoStats();
+        assertTrue(stats.getHits() > 0);
+        assertTrue(stats.getSize() > 0);
+    }
+
+    @Test
+    public void testAnytimeSearchKeepsAnExternalCancel() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+        search.cancel();
+        assertThrows(CancellationException.class, () -> search.searchAnytime(SearchPortfolio.Strategy.THEN_FIRST,
+                problem.maxCost, problem.goal(), TimeUnit.MINUTES.toNanos(1), (cost, term) -> { }));
+        assertThrows(CancellationException.class, () -> search.searchThenFirst(problem.maxCost, problem.goal()));
+        search.resume();
+        assertTrue(search.searchThenFirst(problem.maxCost, problem.goal()).isPresent());
+    }
+
+    @Test
+    public void testAnytimeSearchKeepsAnEarlierDeadline() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+        search.cancelAt(System.nanoTime() - 1);
+        assertThrows(CancellationException.class, () -> search.searchAnytime(SearchPortfolio.Strategy.COND_FIRST,
+                problem.maxCost, problem.goal(), TimeUnit.MINUTES.toNanos(1), (cost, term) -> { }));
+        assertThrows(CancellationException.class, () -> search.searchCondFirst(problem.maxCost, problem.goal()));
+    }
+
+    @Test
+    public void testAnytimeSearchLiftsItsOwnTimeout() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+        assertEquals(Optional.empty(), search.searchAnytime(SearchPortfolio.Strategy.THEN_FIRST, problem.maxCost,
+                problem.goal(), 0, (cost, term) -> fail("nothing can be found without time")));
+        assertEquals(show(deepen(new BatchGoalSearch(problem.maxCompCost, problem.bank()), problem)),
+                show(deepen(search, problem)));
+    }
+
+    @Test
+    public void testSharedBoundSearchesAreTimed() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+        boolean enabled = SynthesisMetrics.isEnabled();
+        SynthesisMetrics.setEnabled(true);
+        SynthesisMetrics.reset();
+        try {
+            search.searchThenFirst(problem.maxCost, problem.goal(), new SearchBound());
+            search.searchCondFirst(problem.maxCost, problem.goal(), new SearchBound());
+            Map<String, SynthesisMetrics.TimerSnapshot> timers = SynthesisMetrics.snapshot().getTimers();
+            assertEquals(1, timers.get("search.thenFirst").getCount());
+            assertEquals(1, timers.get("search.condFirst").getCount());
+        } finally {
+            SynthesisMetrics.setEnabled(enabled);
+            SynthesisMetrics.reset();
+        }
+    }
+}
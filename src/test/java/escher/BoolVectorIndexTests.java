@@ -0,0 +1,183 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BoolVectorIndexTests {
+
+    /** more than one word of examples */
+    private static final int EXAMPLES = 70;
+
+    private static final valueBool T = valueBool.TRUE;
+    private static final valueBool F = valueBool.FALSE;
+
+    private static long[] bits(int... indices) {
+        long[] words = new long[(EXAMPLES + 63) >>> 6];
+        for (int i : indices) {
+            words[i >>> 6] |= 1L << i;
+        }
+        return words;
+    }
+
+    private static long[] allExamples() {
+        int[] all = new int[EXAMPLES];
+        for (int i = 0; i < EXAMPLES; i++) {
+            all[i] = i;
+        }
+        return bits(all);
+    }
+
+    /** a term that is FALSE everywhere except TRUE on <i>trueAt</i> and an error on <i>errorAt</i> */
+    private static Pair<ValueVector, Term> term(String name, int[] trueAt, int... errorAt) {
+        termvalue[] values = new termvalue[EXAMPLES];
+        Arrays.fill(values, F);
+        for (int i : trueAt) {
+            values[i] = T;
+        }
+        for (int i : errorAt) {
+            values[i] = valueerror.INSTANCE;
+        }
+        return new Pair<>(ValueVector.of(values), Var.of(name));
+    }
+
+    /** the prefix length of <i>term</i> on all examples, or -1 if it does not fit */
+    private static int prefixOf(Pair<ValueVector, Term> term, long[] goal, long[] wantTrue) {
+        int[] prefix = new int[1];
+        int position = new BoolVectorIndex(List.of(term), EXAMPLES).longestPrefix(goal, wantTrue, -1, prefix);
+        return position < 0 ? -1 : prefix[0];
+    }
+
+    @Test
+    public void testPrefixLengthAcrossWords() {
+        long[] goal = allExamples();
+        long[] wantTrue = bits(2, 65, 68);
+        assertEquals(0, prefixOf(term("none", new int[]{}), goal, wantTrue));
+        assertEquals(1, prefixOf(term("first", new int[]{2}), goal, wantTrue));
+        assertEquals(2, prefixOf(term("twoWords", new int[]{2, 65}), goal, wantTrue));
+        assertEquals(3, prefixOf(term("all", new int[]{2, 65, 68}), goal, wantTrue));
+    }
+
+    @Test
+    public void testTermsThatDoNotFitHaveNoPrefix() {
+        long[] goal = allExamples();
+        long[] wantTrue = bits(2, 65, 68);
+        assertEquals(-1, prefixOf(term("gap", new int[]{2, 68}), goal, wantTrue));
+        assertEquals(-1, prefixOf(term("notPrefix", new int[]{65}), goal, wantTrue));
+        assertEquals(-1, prefixOf(term("extraTrue", new int[]{2, 66}), goal, wantTrue));
+        assertEquals(-1, prefixOf(term("error", new int[]{2}, 69), goal, wantTrue));
+        // examples outside the goal do not matter
+        long[] partialGoal = bits(2, 3, 65, 68);
+        assertEquals(2, prefixOf(term("outside", new int[]{2, 65, 66}, 69), partialGoal, wantTrue));
+    }
+
+    @Test
+    public void testLongestPrefixPrefersTheFirstOfTheLongest() {
+        List<Pair<ValueVector, Term>> level = List.of(term("a", new int[]{2}), term("b", new int[]{2, 65}),
+                term("c", new int[]{2, 68}), term("d", new int[]{2, 65}));
+        BoolVectorIndex index = new BoolVectorIndex(level, EXAMPLES);
+        int[] prefix = new int[1];
+        assertEquals(1, index.longestPrefix(allExamples(), bits(2, 65, 68), 0, prefix));
+        assertEquals(2, prefix[0]);
+        assertEquals(-1, index.longestPrefix(allExamples(), bits(2, 65, 68), 2, prefix));
+    }
+
+    /** the search's own loop: give up TRUE entries from the largest index down until some condition fits */
+    private static Optional<Pair<Pair<Integer, Term>, List<Integer>>> givingUpTrueEntries(TermBank bank,
+                                                                                          IndexValueMap goal) {
+        int[] trueKeys = goal.keysWithValue(T);
+        IndexValueMap vm = goal;
+        for (int n = trueKeys.length; n > 0; n--) {
+            Optional<Pair<Integer, Term>> result = bank.boolOfVM(vm);
+            if (result.isPresent()) {
+                List<Integer> keyList = new ArrayList<>();
+                for (int k = 0; k < n; k++) {
+                    keyList.add(trueKeys[k]);
+                }
+                return Optional.of(new Pair<>(result.get(), keyList));
+            }
+            vm = vm.updated(trueKeys[n - 1], F);
+        }
+        return Optional.empty();
+    }
+
+    private static String show(Optional<Pair<Pair<Integer, Term>, List<Integer>>> result) {
+        return result.map(r -> r.getFirst().getFirst() + ": " + r.getFirst().getSecond().show() + " on "
+                + r.getSecond()).orElse("none");
+    }
+
+    /** x falls from 5 to 0 in blocks of 12 examples, so isPositive(dec(...(x))) is TRUE on a prefix of them */
+    private static int xOf(int example) {
+        return (EXAMPLES - 1 - example) / 12;
+    }
+
+    private static TermBank thresholdBank() {
+        List<Map<String, termvalue>> inputs = new ArrayList<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("x", new ValueInt(xOf(i)));
+            inputs.add(env);
+        }
+        return new TermBank(List.of(SynthesisFixtures.ZERO, SynthesisFixtures.DEC,
+                SynthesisFixtures.IS_ZERO, SynthesisFixtures.IS_POSITIVE), Map.of("x", TInt.of()), inputs, 7);
+    }
+
+    @Test
+    public void testMaxSatConditionAgreesWithGivingUpTrueEntries() {
+        List<Integer> xs = new ArrayList<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            xs.add(xOf(i));
+        }
+        TermBank bank = thresholdBank();
+        Random random = new Random(0);
+        int found = 0;
+        for (int round = 0; round < 200; round++) {
+            int threshold = random.nextInt(6);
+            double noise = random.nextDouble() * 0.05;
+            Map<Integer, termvalue> entries = new HashMap<>();
+            for (int i = 0; i < EXAMPLES; i++) {
+                if (random.nextDouble() < 0.8) {
+                    boolean value = xs.get(i) > threshold;
+                    entries.put(i, value == random.nextDouble() >= noise ? T : F);
+                }
+            }
+            IndexValueMap goal = IndexValueMap.fromMap(entries, EXAMPLES);
+            Optional<Pair<Pair<Integer, Term>, List<Integer>>> condition = bank.maxSatCondition(goal);
+            assertEquals(show(givingUpTrueEntries(bank, goal)), show(condition), goal.toString());
+            found += condition.isPresent() ? 1 : 0;
+        }
+        assertTrue(found > 100, found + " goals with a condition");
+    }
+
+    @Test
+    public void testMaxSatConditionStopsAtAFullPrefix() {
+        TermBank bank = thresholdBank();
+        Map<Integer, termvalue> entries = new HashMap<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            entries.put(i, xOf(i) > 0 ? T : F);
+        }
+        boolean enabled = SynthesisMetrics.isEnabled();
+        SynthesisMetrics.setEnabled(true);
+        SynthesisMetrics.reset();
+        try {
+            Optional<Pair<Pair<Integer, Term>, List<Integer>>> condition =
+                    bank.maxSatCondition(IndexValueMap.fromMap(entries, EXAMPLES));
+            assertEquals(2, condition.get().getFirst().getFirst());
+            // isPositive(x) covers every TRUE entry, so the levels above its cost are not built
+            assertEquals(2, SynthesisMetrics.snapshot().getTimers().get("bank.level").getCount());
+        } finally {
+            SynthesisMetrics.setEnabled(enabled);
+            SynthesisMetrics.reset();
+        }
+    }
+}
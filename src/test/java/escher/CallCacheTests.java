@@ -0,0 +1,88 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CallCacheTests {
+
+    /** an incrementing component that counts how often its implementation runs */
+    private static ComponentImpl countingInc(AtomicInteger calls) {
+        return new ComponentImpl("inc", 1, (args, fuel) -> {
+            calls.incrementAndGet();
+            return args.get(0) instanceof ValueInt
+                    ? new ValueInt(((ValueInt) args.get(0)).getValue() + 1)
+                    : valueerror.INSTANCE;
+        });
+    }
+
+    private static int intValue(termvalue v) {
+        return ((ValueInt) v).getValue();
+    }
+
+    @Test
+    public void testHitsDoNotRunTheImplementation() {
+        AtomicInteger calls = new AtomicInteger();
+        ComponentImpl inc = countingInc(calls);
+        inc.enableCallCache(16);
+        assertEquals(2, intValue(inc.executeEfficient(List.of(new ValueInt(1)))));
+        assertEquals(2, intValue(inc.executeEfficient(List.of(new ValueInt(1)))));
+        assertEquals(1, calls.get());
+        assertEquals(1, inc.callCacheStats().getHits());
+        assertEquals(1, inc.callCacheStats().getMisses());
+    }
+
+    @Test
+    public void testReusedArgumentListIsNotAliased() {
+        AtomicInteger calls = new AtomicInteger();
+        ComponentImpl inc = countingInc(calls);
+        inc.enableCallCache(16);
+        List<termvalue> args = new ArrayList<>(List.of(new ValueInt(1)));
+        assertEquals(2, intValue(inc.executeEfficient(args)));
+        args.set(0, new ValueInt(7));
+        assertEquals(8, intValue(inc.executeEfficient(args)));
+        assertEquals(2, intValue(inc.executeEfficient(List.of(new ValueInt(1)))));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testResultsUnderSpentFuelAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        ComponentImpl inc = countingInc(calls);
+        inc.enableCallCache(16);
+        Fuel fuel = new Fuel(0, 10);
+        assertSame(valueerror.INSTANCE, inc.executeEfficient(List.of(new ValueInt(1)), fuel));
+        assertTrue(fuel.exhausted());
+        assertEquals(2, intValue(inc.executeEfficient(List.of(new ValueInt(1)))));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testSchedulerClearsCachesBetweenRounds() {
+        AtomicInteger calls = new AtomicInteger();
+        ComponentImpl inc = countingInc(calls);
+        inc.enableCallCache(1024);
+        List<Map<String, termvalue>> inputs = new ArrayList<>();
+        for (int x : new int[]{0, 1, 5}) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("x", new ValueInt(x));
+            inputs.add(env);
+        }
+        TermBank bank = new TermBank(List.of(inc), List.of("x"), inputs, 4);
+        IndexValueMap goal = IndexValueMap.of(List.of(new ValueInt(3), new ValueInt(4), new ValueInt(8)));
+        CostScheduler scheduler = new CostScheduler(new BatchGoalSearch(4, bank), goal, 4, List.of(inc));
+        while (!scheduler.isDone()) {
+            assertTrue(scheduler.step());
+            assertEquals(0, inc.callCacheStats().getSize());
+        }
+        assertEquals("inc(inc(inc(@x)))", scheduler.result().get().getSecond().show());
+        assertTrue(calls.get() > 0);
+    }
+}
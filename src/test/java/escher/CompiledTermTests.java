@@ -0,0 +1,82 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CompiledTermTests {
+
+    private static final Var xs = Var.of("xs");
+
+    private static Term c(String name, Term... args) {
+        return Component.of(name, List.of(args));
+    }
+
+    private static ValueList ints(int... values) {
+        List<termvalue> elems = new ArrayList<>();
+        for (int v : values) {
+            elems.add(new ValueInt(v));
+        }
+        return ValueList.of(elems);
+    }
+
+    /** the library of the fixtures plus a length component backed by <i>body</i>, compiled once */
+    private static Map<String, ComponentImpl> withCompiledLength(Term body) {
+        Map<String, ComponentImpl> compMap = new HashMap<>(SynthesisFixtures.reverse().compMap());
+        CompiledTerm[] compiled = new CompiledTerm[1];
+        compMap.put("len", new ComponentImpl("len", 1, (args, fuel) -> {
+            try {
+                return compiled[0].execute(new termvalue[]{args.get(0)}, fuel);
+            } catch (Exception e) {
+                throw new ExecutionError(e.toString());
+            }
+        }));
+        compiled[0] = CompiledTerm.compile(body, List.of("xs"), compMap);
+        return compMap;
+    }
+
+    @Test
+    public void testAgreesWithExecuteTerm() throws Exception {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        Term term = If.of(c("isEmpty", xs), c("nil"),
+                c("concat", c("reverse", c("tail", xs)), c("cons", c("head", xs), c("nil"))));
+        List<String> varNames = new ArrayList<>(problem.varTypes.keySet());
+        CompiledTerm compiled = CompiledTerm.compile(term, varNames, problem.compMap());
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < problem.inputs.size(); i++) {
+                Map<String, termvalue> input = problem.inputs.get(i);
+                termvalue v = compiled.execute(CompiledTerm.slots(varNames, input));
+                assertEquals(term.executeTerm(input, problem.compMap()), v);
+                assertEquals(problem.outputs.get(i), v);
+            }
+        }
+    }
+
+    @Test
+    public void testRecursiveComponentReentersTheTerm() throws Exception {
+        Term length = If.of(c("isEmpty", xs), c("zero"), c("inc", c("len", c("tail", xs))));
+        Map<String, ComponentImpl> compMap = withCompiledLength(length);
+        CompiledTerm outer = CompiledTerm.compile(c("cons", c("len", xs), c("cons", c("len", c("tail", xs)),
+                c("nil"))), List.of("xs"), compMap);
+        assertEquals(ints(3, 2), outer.execute(new termvalue[]{ints(5, 6, 7)}));
+        assertEquals(ints(1, 0), outer.execute(new termvalue[]{ints(5)}));
+    }
+
+    @Test
+    public void testFuelStopsDivergence() throws Exception {
+        Term growing = c("len", c("cons", c("zero"), xs));
+        Map<String, ComponentImpl> compMap = withCompiledLength(growing);
+        CompiledTerm term = CompiledTerm.compile(c("inc", c("len", xs)), List.of("xs"), compMap);
+        Fuel fuel = new Fuel(10_000, 100);
+        assertSame(valueerror.INSTANCE, term.execute(new termvalue[]{ints(1)}, fuel));
+        assertTrue(fuel.exhausted());
+        assertEquals(new ValueInt(1), CompiledTerm.compile(c("inc", c("zero")), List.of("xs"), compMap)
+                .execute(new termvalue[]{ints()}, new Fuel(10, 10)));
+    }
+}
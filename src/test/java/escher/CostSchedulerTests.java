@@ -0,0 +1,86 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CostSchedulerTests {
+
+    private static final ComponentImpl inc = new ComponentImpl("inc", 1, (args, fuel) -> args.get(0) instanceof ValueInt
+            ? new ValueInt(((ValueInt) args.get(0)).getValue() + 1)
+            : valueerror.INSTANCE);
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private static TermBank incBank() {
+        List<Map<String, termvalue>> inputs = new ArrayList<>();
+        for (int x : new int[]{0, 1, 5}) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("x", new ValueInt(x));
+            inputs.add(env);
+        }
+        return new TermBank(List.of(inc), List.of("x"), inputs, 4);
+    }
+
+    /** solved by inc(inc(inc(x))) at cost 4 */
+    private static final IndexValueMap goal = IndexValueMap.of(List.of(new ValueInt(3), new ValueInt(4), new ValueInt(8)));
+
+    /**
+     * A scheduler whose first round pauses it from inside its direct-term scan. The round has no then-branches
+     * to try, so it never looks at the cancellation again and finishes.
+     */
+    private static CostScheduler pausedDuringFirstRound() {
+        TermBank bank = incBank();
+        AtomicReference<CostScheduler> scheduler = new AtomicReference<>();
+        AtomicBoolean pending = new AtomicBoolean(true);
+        BatchGoalSearch search = new BatchGoalSearch(4, (cost, vm) -> {
+            if (pending.getAndSet(false)) {
+                scheduler.get().pause();
+            }
+            return bank.termOfCostAndVM(cost, vm);
+        }, bank::termsOfCost, bank::boolTermsOfCost, bank::boolOfVM);
+        scheduler.set(new CostScheduler(search, goal, 4));
+        return scheduler.get();
+    }
+
+    @Test
+    public void testRoundsRunUntilSolved() {
+        CostScheduler scheduler = new CostScheduler(new BatchGoalSearch(4, incBank()), goal, 4);
+        assertEquals("inc(inc(inc(@x)))", scheduler.runFor(MINUTE).get().getSecond().show());
+        assertEquals(4, scheduler.exploredCost());
+        assertTrue(scheduler.isDone());
+    }
+
+    @Test
+    public void testPauseLandingLateInARoundEndsTheRun() {
+        CostScheduler scheduler = pausedDuringFirstRound();
+        assertTrue(scheduler.runFor(MINUTE).isEmpty());
+        assertEquals(1, scheduler.exploredCost());
+        assertFalse(scheduler.isDone());
+    }
+
+    @Test
+    public void testRunningAgainAfterPauseFinishes() {
+        CostScheduler scheduler = pausedDuringFirstRound();
+        scheduler.runFor(MINUTE);
+        assertEquals("inc(inc(inc(@x)))", scheduler.runFor(MINUTE).get().getSecond().show());
+        assertEquals(4, scheduler.exploredCost());
+    }
+
+    @Test
+    public void testStepAfterPauseRunsTheNextRound() {
+        CostScheduler scheduler = pausedDuringFirstRound();
+        assertTrue(scheduler.step());
+        assertEquals(1, scheduler.exploredCost());
+        assertTrue(scheduler.step());
+        assertEquals(2, scheduler.exploredCost());
+    }
+}
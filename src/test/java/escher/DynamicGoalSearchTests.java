@@ -0,0 +1,117 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class DynamicGoalSearchTests {
+
+    private static final List<ComponentImpl> library = List.of(SynthesisFixtures.IS_EMPTY, SynthesisFixtures.HEAD,
+            SynthesisFixtures.TAIL, SynthesisFixtures.ZERO, SynthesisFixtures.INC);
+
+    private static ValueList ints(int... values) {
+        List<termvalue> elems = new ArrayList<>();
+        for (int v : values) {
+            elems.add(new ValueInt(v));
+        }
+        return ValueList.of(elems);
+    }
+
+    private static final List<ValueList> inputs = List.of(ints(), ints(1), ints(2, 3), ints(5));
+    /** the head of the list, or zero if it is empty */
+    private static final IndexValueMap goal = IndexValueMap.of(List.of(new ValueInt(0), new ValueInt(1),
+            new ValueInt(2), new ValueInt(5)));
+
+    private static DynamicGoalSearch search() {
+        return search("headOrZero");
+    }
+
+    private static DynamicGoalSearch search(String name) {
+        List<Map<String, termvalue>> varMaps = new ArrayList<>();
+        List<List<termvalue>> inputVector = new ArrayList<>();
+        for (ValueList xs : inputs) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("xs", xs);
+            varMaps.add(env);
+            inputVector.add(List.of(xs));
+        }
+        TermBank bank = new TermBank(library, Map.of("xs", TList.of(TInt.of())), varMaps, 4);
+        Synthesis.ComponentSignature signature = new Synthesis.ComponentSignature(name, List.of("xs"),
+                List.of(TList.of(TInt.of())), TInt.of());
+        return new DynamicGoalSearch(bank.getMaxCost(), signature, new LinkedHashSet<>(library),
+                (a, b) -> ((ValueList) a.get(0)).size() < ((ValueList) b.get(0)).size(), inputVector,
+                bank::termOfCostAndVM, bank::termsOfCost, bank::boolOfVM);
+    }
+
+    private static Term c(String name, Term... args) {
+        return Component.of(name, List.of(args));
+    }
+
+    private static final Term xs = Var.of("xs");
+
+    private static Optional<Pair<Integer, Term>> anytime(DynamicGoalSearch search, long timeoutNanos,
+                                                         List<Pair<Integer, Term>> published) {
+        return search.searchMinAnytime(8, goal, List.of(), UnaryOperator.identity(), search.rootEvaluator(), true,
+                timeoutNanos, (cost, term) -> published.add(new Pair<>(cost, term)));
+    }
+
+    @Test
+    public void testAnytimeSearchPublishesWhatItReturns() {
+        DynamicGoalSearch search = search();
+        Optional<Pair<Integer, Term>> plain = search.searchMin(8, goal, List.of(), UnaryOperator.identity(),
+                search.rootEvaluator(), true, Optional.empty());
+        assertTrue(plain.isPresent());
+        List<Pair<Integer, Term>> published = new ArrayList<>();
+        Optional<Pair<Integer, Term>> result = anytime(search, TimeUnit.MINUTES.toNanos(1), published);
+        assertEquals(plain, result);
+        assertFalse(published.isEmpty());
+        for (int i = 1; i < published.size(); i++) {
+            assertTrue(published.get(i).getFirst() < published.get(i - 1).getFirst(), published.toString());
+        }
+        assertEquals(result.get(), published.get(published.size() - 1));
+    }
+
+    @Test
+    public void testAnytimeSearchWithoutTimeFindsNothing() {
+        List<Pair<Integer, Term>> published = new ArrayList<>();
+        assertEquals(Optional.empty(), anytime(search(), 0, published));
+        assertEquals(List.of(), published);
+    }
+
+    @Test
+    public void testRootRecTermsWithFewestUnknownsComeFirst() {
+        DynamicGoalSearch search = search("len");
+        Term once = c("len", c("tail", xs));
+        // tail(tail(xs)) fails on all but one example, so only that one reaches the self-call
+        Term twice = c("inc", c("len", c("tail", c("tail", xs))));
+        List<List<Pair<Term, ExtendedValueVec>>> recTerms = search.rootRecTerms(List.of(List.of(once, twice)));
+        assertEquals(List.of(twice, once),
+                List.of(recTerms.get(0).get(0).getFirst(), recTerms.get(0).get(1).getFirst()));
+        assertEquals(1, valueunknown.count(recTerms.get(0).get(0).getSecond().values()));
+        assertEquals(3, valueunknown.count(recTerms.get(0).get(1).getSecond().values()));
+    }
+
+    @Test
+    public void testFindsARecursiveSolution() {
+        DynamicGoalSearch search = search("len");
+        IndexValueMap lengths = IndexValueMap.of(List.of(new ValueInt(0), new ValueInt(1), new ValueInt(2),
+                new ValueInt(1)));
+        List<List<Pair<Term, ExtendedValueVec>>> recTerms = search.rootRecTerms(List.of(List.of(), List.of(),
+                List.of(c("len", c("tail", xs))), List.of(c("len", c("tail", c("tail", xs))),
+                        c("inc", c("len", c("tail", xs))))));
+        Optional<Pair<Integer, Term>> result = search.searchMin(8, lengths, recTerms, UnaryOperator.identity(),
+                search.rootEvaluator(), true, Optional.empty());
+        Term length = If.of(c("isEmpty", xs), c("zero"), c("inc", c("len", c("tail", xs))));
+        assertEquals(Optional.of(new Pair<>(8, length)), result);
+    }
+}
@@ -0,0 +1,100 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ExtendedEvalTests {
+
+    private static final Var xs = Var.of("xs");
+
+    private static Term c(String name, Term... args) {
+        return Component.of(name, List.of(args));
+    }
+
+    private static Map<String, ExtendedCompImpl> extended(Map<String, ComponentImpl> compMap) {
+        Map<String, ExtendedCompImpl> extended = new HashMap<>();
+        compMap.forEach((name, comp) -> extended.put(name, ExtendedCompImpl.of(comp)));
+        extended.put("hole", ExtendedCompImpl.hole());
+        return extended;
+    }
+
+    private static List<Map<String, ExtendedValue>> extendedInputs(SynthesisFixtures.Problem problem) {
+        List<Map<String, ExtendedValue>> varMaps = new ArrayList<>();
+        for (Map<String, termvalue> input : problem.inputs) {
+            varMaps.add(new HashMap<>(input));
+        }
+        return varMaps;
+    }
+
+    /** without a hole, evaluation in the extended environment is ordinary evaluation */
+    @Test
+    public void testAgreesWithExecuteTermWithoutHoles() throws Exception {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        TermBank bank = problem.bank();
+        List<Term> terms = new ArrayList<>();
+        for (int cost = 1; cost <= 4; cost++) {
+            bank.termsOfCost(cost).forEach(p -> terms.add(p.getSecond()));
+        }
+        terms.add(If.of(c("isEmpty", xs), c("nil"), c("tail", xs)));
+        terms.add(If.of(c("isEmpty", c("tail", xs)), xs, c("reverse", c("tail", xs))));
+        Map<String, ExtendedCompImpl> compMap = extended(problem.compMap());
+        List<Map<String, ExtendedValue>> varMaps = extendedInputs(problem);
+        for (Term term : terms) {
+            List<ExtendedValue> values = term.executeInExtendedEnvs(varMaps, compMap);
+            for (int i = 0; i < problem.inputs.size(); i++) {
+                assertEquals(term.executeTerm(problem.inputs.get(i), problem.compMap()), values.get(i), term.show());
+            }
+            assertEquals(0, valueunknown.count(values));
+        }
+    }
+
+    @Test
+    public void testHoleIsUnknownOnlyWhereItIsReached() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        Term partial = If.of(c("isEmpty", xs), c("nil"), c("concat", c("hole", c("tail", xs)), c("nil")));
+        List<ExtendedValue> values = partial.executeInExtendedEnvs(extendedInputs(problem),
+                extended(problem.compMap()));
+        int unknown = 0;
+        for (int i = 0; i < values.size(); i++) {
+            boolean empty = ((ValueList) problem.inputs.get(i).get("xs")).toList().isEmpty();
+            assertEquals(!empty, values.get(i) == valueunknown.INSTANCE, "example " + i);
+            unknown += empty ? 0 : 1;
+        }
+        assertEquals(unknown, valueunknown.count(values));
+        assertTrue(unknown > 0 && unknown < values.size());
+    }
+
+    @Test
+    public void testUnknownAndErrorsShortCircuit() {
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, ExtendedCompImpl> compMap = new HashMap<>();
+        compMap.put("hole", ExtendedCompImpl.hole());
+        compMap.put("fail", new ExtendedCompImpl(args -> (ExtendedValue) valueerror.INSTANCE));
+        compMap.put("one", new ExtendedCompImpl(args -> new ValueInt(1)));
+        compMap.put("counted", new ExtendedCompImpl(args -> {
+            calls.incrementAndGet();
+            return new ValueInt(args.size());
+        }));
+        Map<String, ExtendedValue> varMap = new HashMap<>();
+        varMap.put("t", valueBool.TRUE);
+
+        assertSame(valueunknown.INSTANCE, c("counted", c("fail"), c("hole")).executeTermInExtendedEnv(varMap, compMap));
+        assertSame(valueerror.INSTANCE, c("counted", c("fail"), c("one")).executeTermInExtendedEnv(varMap, compMap));
+        assertEquals(0, calls.get());
+        assertSame(valueunknown.INSTANCE, If.of(c("hole"), c("one"), c("fail")).executeTermInExtendedEnv(varMap, compMap));
+        // a condition that is no boolean is an error rather than an exception
+        assertSame(valueerror.INSTANCE, If.of(c("one"), c("one"), c("one")).executeTermInExtendedEnv(varMap, compMap));
+        assertSame(valueerror.INSTANCE, If.of(c("fail"), c("one"), c("one")).executeTermInExtendedEnv(varMap, compMap));
+        assertEquals(new ValueInt(2), If.of(Var.of("t"), c("counted", c("one"), c("one")), c("hole"))
+                .executeTermInExtendedEnv(varMap, compMap));
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,87 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class FuelTests {
+
+    private static final ComponentImpl inc = new ComponentImpl("inc", 1, (args, fuel) -> args.get(0) instanceof ValueInt
+            ? new ValueInt(((ValueInt) args.get(0)).getValue() + 1)
+            : valueerror.INSTANCE);
+    private static final ComponentImpl failing = new ComponentImpl("failing", 1, (args, fuel) -> {
+        throw new ExecutionError("failing component");
+    });
+
+    /** a component that calls itself on its own arguments and never returns */
+    private static ComponentImpl forever() {
+        ComponentImpl[] self = new ComponentImpl[1];
+        self[0] = new ComponentImpl("forever", 1, (args, fuel) -> self[0].executeEfficient(args, fuel));
+        return self[0];
+    }
+
+    private static Map<String, termvalue> env(int x) {
+        Map<String, termvalue> env = new LinkedHashMap<>();
+        env.put("x", new ValueInt(x));
+        return env;
+    }
+
+    @Test
+    public void testEveryCallTakesOneStep() throws Exception {
+        Fuel fuel = new Fuel(10, 10);
+        Term term = Component.of("inc", List.of(Component.of("inc", List.of(Var.of("x")))));
+        termvalue v = term.executeTerm(env(1), Map.of("inc", inc), fuel);
+        assertEquals(new ValueInt(3), v);
+        assertEquals(8, fuel.remainingSteps());
+        assertFalse(fuel.exhausted());
+    }
+
+    @Test
+    public void testDepthIsRestoredWhenTheImplementationThrows() {
+        Fuel fuel = new Fuel(10, 1);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ExecutionError.class, () -> failing.executeEfficient(List.of(new ValueInt(1)), fuel));
+        }
+        assertEquals(new ValueInt(2), inc.executeEfficient(List.of(new ValueInt(1)), fuel));
+        assertFalse(fuel.exhausted());
+    }
+
+    @Test
+    public void testDivergingTermRunsOutOfFuel() throws Exception {
+        Fuel fuel = new Fuel(1_000, 100);
+        Term term = Component.of("inc", List.of(Component.of("forever", List.of(Var.of("x")))));
+        termvalue v = term.executeTerm(env(1), Map.of("inc", inc, "forever", forever()), fuel);
+        assertSame(valueerror.INSTANCE, v);
+        assertTrue(fuel.exhausted());
+    }
+
+    @Test
+    public void testStepsBoundWideEvaluations() throws Exception {
+        Fuel fuel = new Fuel(3, 100);
+        Term term = Var.of("x");
+        for (int i = 0; i < 5; i++) {
+            term = Component.of("inc", List.of(term));
+        }
+        assertSame(valueerror.INSTANCE, term.executeTerm(env(0), Map.of("inc", inc), fuel));
+        assertTrue(fuel.exhausted());
+    }
+
+    @Test
+    public void testBankTurnsDivergenceIntoErrors() {
+        List<Map<String, termvalue>> inputs = new ArrayList<>(List.of(env(0), env(1)));
+        TermBank bank = new TermBank(List.of(inc, forever()), List.of("x"), inputs, 2);
+        bank.limitFuel(1_000, 100);
+        List<String> shown = new ArrayList<>();
+        for (Pair<ValueVector, Term> pair : bank.termsOfCost(2)) {
+            shown.add(pair.getSecond().show());
+        }
+        // forever(@x) fails on every example, and the bank drops vectors that are all errors
+        assertEquals(List.of("inc(@x)"), shown);
+    }
+}
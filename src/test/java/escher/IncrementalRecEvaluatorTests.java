@@ -0,0 +1,198 @@
+package escher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class IncrementalRecEvaluatorTests {
+
+    private static final List<String> argNames = List.of("xs");
+    private static final BiPredicate<List<termvalue>, List<termvalue>> smaller = (a, b) -> size(a) < size(b);
+
+    private static int size(List<termvalue> args) {
+        int n = 0;
+        for (termvalue v : args) {
+            n += ((ValueList) v).size();
+        }
+        return n;
+    }
+
+    private static ValueList ints(int... values) {
+        List<termvalue> elems = new ArrayList<>();
+        for (int v : values) {
+            elems.add(new ValueInt(v));
+        }
+        return ValueList.of(elems);
+    }
+
+    private static List<Map<String, termvalue>> examples() {
+        List<Map<String, termvalue>> varMaps = new ArrayList<>();
+        for (ValueList xs : List.of(ints(), ints(1), ints(1, 2), ints(3, 1, 2))) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("xs", xs);
+            varMaps.add(env);
+        }
+        return varMaps;
+    }
+
+    private static Map<String, ComponentImpl> envComps() {
+        Map<String, ComponentImpl> compMap = new HashMap<>();
+        for (ComponentImpl comp : List.of(SynthesisFixtures.IS_EMPTY, SynthesisFixtures.TAIL, SynthesisFixtures.CONS,
+                SynthesisFixtures.ZERO, SynthesisFixtures.INC)) {
+            compMap.put(comp.name, comp);
+        }
+        return compMap;
+    }
+
+    private static Term c(String name, Term... args) {
+        return Component.of(name, List.of(args));
+    }
+
+    private static final Term xs = Var.of("xs");
+    private static final Term hole = c("hole");
+    private static final Term baseCase = If.of(c("isEmpty", xs), c("zero"), hole);
+    private static final Term length = If.of(c("isEmpty", xs), c("zero"), c("inc", c("len", c("tail", xs))));
+    /** recurses on a longer list once the input is not empty */
+    private static final Term growing = If.of(c("isEmpty", xs), c("zero"), c("len", c("cons", c("zero"), xs)));
+
+    /**
+     * The baseline: evaluates <i>term</i> on every example from scratch, with <i>body</i> as the complete
+     * program behind the self-calls and the same rule that self-calls must decrease.
+     */
+    private static termvalue[] fullColumn(Term body, Term term) throws Exception {
+        List<Map<String, termvalue>> varMaps = examples();
+        Map<String, ComponentImpl> compMap = envComps();
+        ArrayDeque<List<termvalue>> callers = new ArrayDeque<>();
+        compMap.put("len", new ComponentImpl("len", 1, (args, fuel) -> {
+            if (args.contains(valueerror.INSTANCE) || !smaller.test(args, callers.peek())) {
+                return valueerror.INSTANCE;
+            }
+            callers.push(args);
+            try {
+                return body.executeTerm(Map.of("xs", args.get(0)), compMap);
+            } catch (Exception e) {
+                throw new ExecutionError(e.toString());
+            } finally {
+                callers.pop();
+            }
+        }));
+        termvalue[] column = new termvalue[varMaps.size()];
+        for (int i = 0; i < column.length; i++) {
+            callers.push(List.of(varMaps.get(i).get("xs")));
+            column[i] = term.executeTerm(varMaps.get(i), compMap);
+            callers.pop();
+        }
+        return column;
+    }
+
+    private static IncrementalRecEvaluator root(Term body) {
+        return new IncrementalRecEvaluator("len", argNames, "hole", body, examples(), envComps(), smaller);
+    }
+
+    private static BitSet unknownRows(termvalue[] column, BitSet rows) {
+        BitSet unknown = new BitSet();
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+            if (column[i] == null) {
+                unknown.set(i);
+            }
+        }
+        return unknown;
+    }
+
+    private static BitSet allRows() {
+        BitSet rows = new BitSet();
+        rows.set(0, examples().size());
+        return rows;
+    }
+
+    @Test
+    public void testRefinementsAgreeWithFullEvaluation() throws Exception {
+        IncrementalRecEvaluator e0 = root(hole);
+        IncrementalRecEvaluator e1 = e0.refine(baseCase, "hole");
+        IncrementalRecEvaluator e2 = e1.refine(length, "hole");
+        List<Term> terms = List.of(c("len", c("tail", xs)), c("inc", c("len", c("tail", xs))),
+                c("len", c("tail", c("tail", xs))), c("len", xs), c("isEmpty", xs));
+        for (Term term : terms) {
+            termvalue[] merged = new termvalue[examples().size()];
+            BitSet rows = allRows();
+            for (IncrementalRecEvaluator e : List.of(e0, e1, e2)) {
+                termvalue[] column = e.column(term, rows);
+                for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                    if (column[i] != null) {
+                        merged[i] = column[i];
+                    }
+                }
+                rows = unknownRows(column, rows);
+            }
+            assertTrue(rows.isEmpty(), term.show());
+            assertArrayEquals(fullColumn(length, term), merged, term.show());
+            assertArrayEquals(merged, root(length).column(term, allRows()), term.show());
+        }
+    }
+
+    @Test
+    public void testLengthOfTail() {
+        termvalue[] column = root(length).column(c("len", c("tail", xs)), allRows());
+        assertArrayEquals(new termvalue[]{valueerror.INSTANCE, new ValueInt(0), new ValueInt(1), new ValueInt(2)},
+                column);
+    }
+
+    @Test
+    public void testUnknownOnlyWhereTheHoleIsReached() {
+        termvalue[] column = root(baseCase).column(c("len", c("tail", xs)), allRows());
+        assertArrayEquals(new termvalue[]{valueerror.INSTANCE, new ValueInt(0), null, null}, column);
+    }
+
+    @Test
+    public void testSelfCallThatDoesNotDecreaseIsAnError() throws Exception {
+        Term term = c("len", c("tail", xs));
+        termvalue[] column = root(growing).column(term, allRows());
+        assertArrayEquals(new termvalue[]{valueerror.INSTANCE, new ValueInt(0), valueerror.INSTANCE,
+                valueerror.INSTANCE}, column);
+        assertArrayEquals(fullColumn(growing, term), column);
+        // the trivial self-call is not below the example's own arguments
+        assertArrayEquals(new termvalue[]{valueerror.INSTANCE, valueerror.INSTANCE, valueerror.INSTANCE,
+                valueerror.INSTANCE}, root(length).column(c("len", xs), allRows()));
+    }
+
+    @Test
+    public void testFuelStopsOrdersThatAreNotWellFounded() {
+        IncrementalRecEvaluator e = new IncrementalRecEvaluator("len", argNames, "hole", growing, examples(),
+                envComps(), (a, b) -> true, 10_000, 200);
+        termvalue[] column = e.column(c("len", c("tail", xs)), allRows());
+        assertArrayEquals(new termvalue[]{valueerror.INSTANCE, new ValueInt(0), valueerror.INSTANCE,
+                valueerror.INSTANCE}, column);
+        // every example gets a fresh budget, and nothing computed under a spent one is remembered
+        assertArrayEquals(new termvalue[]{new ValueInt(0), valueerror.INSTANCE, valueerror.INSTANCE,
+                valueerror.INSTANCE}, e.column(c("len", xs), allRows()));
+    }
+
+    @Test
+    public void testSelfFreeSubtermsAreEvaluatedOnceForAllRefinements() {
+        AtomicInteger tailCalls = new AtomicInteger();
+        Map<String, ComponentImpl> compMap = envComps();
+        compMap.put("tail", new ComponentImpl("tail", 1, (args, fuel) -> {
+            tailCalls.incrementAndGet();
+            return SynthesisFixtures.TAIL.executeEfficient(args, fuel);
+        }));
+        IncrementalRecEvaluator e0 = new IncrementalRecEvaluator("len", argNames, "hole", hole, examples(), compMap,
+                smaller);
+        IncrementalRecEvaluator e1 = e0.refine(baseCase, "hole");
+        for (IncrementalRecEvaluator e : List.of(e0, e1)) {
+            e.column(c("len", c("tail", xs)), allRows());
+            e.column(c("inc", c("len", c("tail", xs))), allRows());
+        }
+        assertEquals(examples().size(), tailCalls.get());
+    }
+}
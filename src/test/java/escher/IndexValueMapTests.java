@@ -0,0 +1,116 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class IndexValueMapTests {
+
+    /** more than two words of examples */
+    private static final int EXAMPLES = 130;
+
+    private static final valueBool T = valueBool.TRUE;
+    private static final valueBool F = valueBool.FALSE;
+
+    private static void assertAgrees(Map<Integer, termvalue> model, IndexValueMap vm) {
+        assertEquals(model.keySet(), vm.keySet());
+        assertEquals(model.size(), vm.size());
+        assertEquals(model.isEmpty(), vm.isEmpty());
+        for (int i = 0; i < EXAMPLES; i++) {
+            assertEquals(model.get(i), vm.get(i), "index " + i);
+        }
+        IndexValueMap rebuilt = IndexValueMap.fromMap(model, EXAMPLES);
+        assertEquals(rebuilt, vm);
+        assertEquals(rebuilt.hashCode(), vm.hashCode());
+        assertEquals(rebuilt.key(), vm.key());
+    }
+
+    /**
+     * Removing and updating entries must behave like the same edits on a plain map, and must leave the goals they
+     * started from untouched, even though they share storage with them.
+     */
+    @Test
+    public void testEditsAgreeWithAMap() {
+        Random random = new Random(0);
+        List<termvalue> outputs = new ArrayList<>();
+        Map<Integer, termvalue> model = new TreeMap<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            outputs.add(new ValueInt(i));
+            model.put(i, outputs.get(i));
+        }
+        IndexValueMap vm = IndexValueMap.of(outputs);
+        assertAgrees(model, vm);
+        List<Map<Integer, termvalue>> models = new ArrayList<>();
+        List<IndexValueMap> vms = new ArrayList<>();
+        for (int step = 0; step < 300; step++) {
+            if (random.nextBoolean()) {
+                List<Integer> removed = new ArrayList<>();
+                for (int n = random.nextInt(8); n > 0; n--) {
+                    removed.add(random.nextInt(EXAMPLES));
+                }
+                vm = vm.remove(removed);
+                model.keySet().removeAll(removed);
+            } else {
+                int index = random.nextInt(EXAMPLES);
+                termvalue value = random.nextBoolean() ? T : new ValueInt(-index);
+                vm = vm.updated(index, value);
+                model.put(index, value);
+            }
+            models.add(new TreeMap<>(model));
+            vms.add(vm);
+        }
+        for (int i = 0; i < vms.size(); i++) {
+            assertAgrees(models.get(i), vms.get(i));
+        }
+    }
+
+    @Test
+    public void testKeysWithValueAreAscending() {
+        List<termvalue> outputs = new ArrayList<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            outputs.add(i % 3 == 0 ? T : F);
+        }
+        IndexValueMap vm = IndexValueMap.of(outputs).remove(List.of(0, 64, 65, 129));
+        int[] trueKeys = vm.keysWithValue(T);
+        assertEquals(3, trueKeys[0]);
+        for (int k = 1; k < trueKeys.length; k++) {
+            assertTrue(trueKeys[k - 1] < trueKeys[k]);
+            assertSame(T, vm.get(trueKeys[k]));
+        }
+        assertEquals(vm.size(), trueKeys.length + vm.keysWithValue(F).length);
+        assertFalse(Arrays.stream(trueKeys).anyMatch(k -> k == 0 || k == 129));
+    }
+
+    @Test
+    public void testSplitByACandidate() {
+        List<termvalue> outputs = new ArrayList<>();
+        termvalue[] candidate = new termvalue[EXAMPLES];
+        for (int i = 0; i < EXAMPLES; i++) {
+            outputs.add(new ValueInt(i));
+            candidate[i] = new ValueInt(i % 2 == 0 ? i : -1);
+        }
+        IndexValueMap goal = IndexValueMap.of(outputs).remove(List.of(2, 3, 100));
+        Triple<IndexValueMap, List<Integer>, List<Integer>> split =
+                IndexValueMap.splitValueMap(goal, ValueVector.of(candidate)).get();
+        assertEquals(goal.key(), split.getFirst().key());
+        for (int i : goal.keySet()) {
+            boolean even = i % 2 == 0;
+            assertSame(even ? T : F, split.getFirst().get(i));
+            assertEquals(even, split.getSecond().contains(i));
+            assertEquals(!even, split.getThird().contains(i));
+        }
+        assertTrue(IndexValueMap.matchVector(goal.remove(split.getThird()), ValueVector.of(candidate)));
+        assertFalse(IndexValueMap.matchVector(goal, ValueVector.of(candidate)));
+        assertEquals(Optional.empty(), IndexValueMap.splitValueMap(goal.remove(split.getThird()),
+                ValueVector.of(candidate)));
+    }
+}
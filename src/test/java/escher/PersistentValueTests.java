@@ -0,0 +1,112 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class PersistentValueTests {
+
+    private static ValueList ints(List<Integer> values) {
+        List<termvalue> elems = new ArrayList<>();
+        for (int v : values) {
+            elems.add(new ValueInt(v));
+        }
+        return ValueList.of(elems);
+    }
+
+    private static List<Integer> contents(ValueList list) {
+        List<Integer> values = new ArrayList<>();
+        for (termvalue v : list.toList()) {
+            values.add(((ValueInt) v).getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Lists built by sharing cells through cons, tail and concat must be equal to, and hash like, the same
+     * elements put into a fresh list.
+     */
+    @Test
+    public void testSharedListsAgreeWithFreshOnes() {
+        Random random = new Random(0);
+        List<ValueList> lists = new ArrayList<>(List.of(ValueList.EMPTY));
+        for (int step = 0; step < 500; step++) {
+            ValueList a = lists.get(random.nextInt(lists.size()));
+            ValueList b = lists.get(random.nextInt(lists.size()));
+            ValueList next;
+            switch (random.nextInt(3)) {
+                case 0:
+                    next = a.cons(new ValueInt(random.nextInt(4)));
+                    break;
+                case 1:
+                    next = a.isEmpty() ? a : a.tail();
+                    break;
+                default:
+                    next = a.size() + b.size() > 40 ? b : a.concat(b);
+            }
+            lists.add(next);
+            List<Integer> expected = contents(next);
+            ValueList fresh = ints(expected);
+            assertEquals(fresh, next);
+            assertEquals(next, fresh);
+            assertEquals(fresh.hashCode(), next.hashCode());
+            assertEquals(expected.size(), next.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(new ValueInt(expected.get(i)), next.get(i));
+            }
+        }
+        for (ValueList x : lists) {
+            for (ValueList y : lists) {
+                assertEquals(contents(x).equals(contents(y)), x.equals(y));
+            }
+        }
+    }
+
+    @Test
+    public void testListOperationsShareCells() {
+        ValueList back = ints(List.of(3, 4));
+        ValueList front = ints(List.of(1, 2));
+        ValueList whole = front.concat(back);
+        assertEquals(List.of(1, 2, 3, 4), contents(whole));
+        assertSame(back, whole.tail().tail());
+        assertSame(front, front.concat(ValueList.EMPTY));
+        assertSame(back, back.cons(new ValueInt(0)).tail());
+        assertSame(ValueList.EMPTY, ints(List.of()));
+        // nested lists compare deeply
+        assertEquals(ValueList.of(List.of(ints(List.of(1)), ValueList.EMPTY)),
+                ValueList.EMPTY.cons(ValueList.EMPTY).cons(ints(List.of(1))));
+        assertNotEquals(ValueList.of(List.of(ints(List.of(1)))), ValueList.of(List.of(ints(List.of(2)))));
+    }
+
+    private static ValueTree tree(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return ValueTree.EMPTY;
+        }
+        return ValueTree.node(new ValueInt(random.nextInt(3)), tree(random, depth - 1), tree(random, depth - 1));
+    }
+
+    @Test
+    public void testTreesCompareDeeply() {
+        for (long seed = 0; seed < 50; seed++) {
+            ValueTree a = tree(new Random(seed), 5);
+            ValueTree b = tree(new Random(seed), 5);
+            assertEquals(a, b);
+            assertEquals(a.hashCode(), b.hashCode());
+            assertEquals(a, ValueTree.of(a.getTree().map(v -> v)));
+            if (!a.isEmpty()) {
+                assertEquals(a, ValueTree.node(a.tag(), a.left(), a.right()));
+                assertSame(a.getTree().left(), a.left().getTree());
+                assertNotEquals(a, ValueTree.node(new ValueInt(7), a.left(), a.right()));
+                if (!a.left().equals(a.right())) {
+                    assertNotEquals(a, ValueTree.node(a.tag(), a.right(), a.left()));
+                }
+            }
+        }
+        assertSame(ValueTree.EMPTY, ValueTree.of(BinaryTree.leaf()));
+    }
+}
@@ -0,0 +1,87 @@
+package escher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SearchPortfolioTests {
+
+    private static int costOf(Optional<Pair<Integer, Term>> result) {
+        return result.map(Pair::getFirst).orElse(Integer.MAX_VALUE);
+    }
+
+    private static void assertSolves(SynthesisFixtures.Problem problem, Term term) throws Exception {
+        Map<String, ComponentImpl> compMap = problem.compMap();
+        for (int i = 0; i < problem.inputs.size(); i++) {
+            assertEquals(problem.outputs.get(i), term.executeTerm(problem.inputs.get(i), compMap), term.show());
+        }
+    }
+
+    @Test
+    public void testCostAgreesWithTheSequentialStrategies() throws Exception {
+        for (SynthesisFixtures.Problem problem : List.of(SynthesisFixtures.reverse(), SynthesisFixtures.stutter(),
+                SynthesisFixtures.squareList())) {
+            int thenFirst = costOf(new BatchGoalSearch(problem.maxCompCost, problem.bank())
+                    .searchThenFirst(problem.maxCost, problem.goal()));
+            int condFirst = costOf(new BatchGoalSearch(problem.maxCompCost, problem.bank())
+                    .searchCondFirst(problem.maxCost, problem.goal()));
+            SearchPortfolio portfolio = new SearchPortfolio(problem.maxCompCost, problem.bank(),
+                    MemoCache.unbounded(), MemoCache.unbounded());
+            // later rounds start from the memo tables the earlier ones left behind
+            for (int round = 0; round < 3; round++) {
+                SearchPortfolio.Outcome outcome = portfolio.search(problem.maxCost, problem.goal());
+                int cost = costOf(outcome.getResult());
+                int winner = outcome.getWinner() == SearchPortfolio.Strategy.THEN_FIRST ? thenFirst : condFirst;
+                assertTrue(cost >= Math.min(thenFirst, condFirst) && cost <= winner, problem.name + ": " + outcome);
+                if (thenFirst == condFirst) {
+                    assertEquals(thenFirst, cost, problem.name);
+                }
+                assertSolves(problem, outcome.getResult().get().getSecond());
+            }
+        }
+    }
+
+    @Test
+    public void testUnsolvableGoalStaysUnsolved() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.cartesian();
+        SearchPortfolio portfolio = new SearchPortfolio(problem.maxCompCost, problem.bank(),
+                MemoCache.unbounded(), MemoCache.unbounded());
+        assertEquals(Optional.empty(), portfolio.search(problem.maxCost, problem.goal()).getResult());
+    }
+
+    @Test
+    public void testStrategiesNeedSeparateMemoTables() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        MemoCache<BatchGoalSearch.SearchResult> memo = MemoCache.unbounded();
+        assertThrows(IllegalArgumentException.class,
+                () -> new SearchPortfolio(problem.maxCompCost, problem.bank(), memo, memo));
+    }
+
+    @Test
+    public void testCandidateOfTheOtherStrategyIsNotMemoized() {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        Term stranger = Var.of(problem.varTypes.keySet().iterator().next());
+        for (SearchPortfolio.Strategy strategy : SearchPortfolio.Strategy.values()) {
+            BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+            SearchBound shared = new SearchBound();
+            shared.offer(1, Long.MAX_VALUE, stranger);
+            Optional<Pair<Integer, Term>> result = strategy == SearchPortfolio.Strategy.THEN_FIRST
+                    ? search.searchThenFirst(problem.maxCost, problem.goal(), shared)
+                    : search.searchCondFirst(problem.maxCost, problem.goal(), shared);
+            assertEquals(Optional.of(new Pair<>(1, stranger)), result, strategy.name());
+            BatchGoalSearch fresh = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+            if (strategy == SearchPortfolio.Strategy.THEN_FIRST) {
+                assertEquals(fresh.searchThenFirst(problem.maxCost, problem.goal()),
+                        search.searchThenFirst(problem.maxCost, problem.goal()), strategy.name());
+            } else {
+                assertEquals(fresh.searchCondFirst(problem.maxCost, problem.goal()),
+                        search.searchCondFirst(problem.maxCost, problem.goal()), strategy.name());
+            }
+        }
+    }
+}
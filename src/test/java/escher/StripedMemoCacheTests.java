@@ -0,0 +1,96 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class StripedMemoCacheTests {
+
+    private static GoalKey key(long bits) {
+        return new GoalKey(new long[]{bits});
+    }
+
+    /**
+     * Keys that share a stripe with <i>first</i>, found by probing a cache with room for one entry per stripe: a
+     * key that evicts <i>first</i> lives in its stripe. Small keys come first, then keys of 32 indices.
+     */
+    private static List<GoalKey> sameStripe(GoalKey first, int count) {
+        List<GoalKey> found = new ArrayList<>();
+        found.add(first);
+        for (long bits = 1; found.size() < count; bits++) {
+            GoalKey candidate = key(found.size() == count - 1 ? bits | 0xFFFF_FFFF_0000_0000L : bits);
+            if (candidate.equals(first)) {
+                continue;
+            }
+            MemoCache<String> probe = MemoCache.bounded(16, MemoCache.Eviction.LRU);
+            probe.merge(first, "first", (a, b) -> b);
+            probe.merge(candidate, "candidate", (a, b) -> b);
+            if (probe.get(first) == null) {
+                found.add(candidate);
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void testSizeStaysWithinCapacity() {
+        MemoCache<Integer> cache = MemoCache.bounded(64, MemoCache.Eviction.LRU);
+        for (int i = 1; i <= 1_000; i++) {
+            cache.merge(key(i), i, Integer::sum);
+            assertTrue(cache.size() <= 64, "size " + cache.size() + " after " + i + " entries");
+        }
+        MemoCache.Stats stats = cache.stats();
+        assertEquals(1_000, stats.getEvictions() + stats.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        List<GoalKey> keys = sameStripe(key(0xF0), 3);
+        MemoCache<String> cache = MemoCache.bounded(32, MemoCache.Eviction.LRU);
+        cache.merge(keys.get(0), "a", (a, b) -> b);
+        cache.merge(keys.get(1), "b", (a, b) -> b);
+        assertEquals("a", cache.get(keys.get(0)));
+        cache.merge(keys.get(2), "c", (a, b) -> b);
+        assertEquals("a", cache.get(keys.get(0)));
+        assertNull(cache.get(keys.get(1)));
+        assertEquals("c", cache.get(keys.get(2)));
+    }
+
+    @Test
+    public void testCostAwareEvictsTheSmallestGoal() {
+        GoalKey large = key(0xFFFF_FFFFL);
+        List<GoalKey> keys = sameStripe(large, 3);
+        GoalKey small = keys.get(1);
+        GoalKey alsoLarge = keys.get(2);
+        assertTrue(small.size() < large.size() && small.size() < alsoLarge.size());
+        MemoCache<String> lru = MemoCache.bounded(32, MemoCache.Eviction.LRU);
+        MemoCache<String> costAware = MemoCache.bounded(32, MemoCache.Eviction.COST_AWARE);
+        for (MemoCache<String> cache : List.of(lru, costAware)) {
+            cache.merge(large, "large", (a, b) -> b);
+            cache.merge(small, "small", (a, b) -> b);
+            cache.merge(alsoLarge, "alsoLarge", (a, b) -> b);
+        }
+        assertNull(lru.get(large));
+        assertEquals("small", lru.get(small));
+        assertEquals("large", costAware.get(large));
+        assertNull(costAware.get(small));
+    }
+
+    @Test
+    public void testMergeCombinesWithThePresentValue() {
+        MemoCache<Integer> cache = MemoCache.unbounded();
+        IntStream.range(0, 1_000).parallel().forEach(i -> cache.merge(key(1 + i % 10), 1, Integer::sum));
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(100, cache.get(key(i)));
+        }
+        assertEquals(10, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key(1)));
+    }
+}
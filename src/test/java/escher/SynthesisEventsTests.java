@@ -0,0 +1,80 @@
+package escher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SynthesisEventsTests {
+
+    /** the events of one deepening search over the reverse fixture, recorded with the given events enabled */
+    private static List<RecordedEvent> record(String... enabled) throws IOException {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        Path file = Files.createTempFile("escher", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : enabled) {
+                recording.enable(name);
+            }
+            recording.start();
+            BatchGoalSearchTests.deepen(new BatchGoalSearch(problem.maxCompCost, problem.bank()), problem);
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("escher."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCostLevelsAndBankGrowth() throws IOException {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        List<RecordedEvent> events = record("escher.CostLevel", "escher.TermBankGrowth");
+        List<RecordedEvent> levels = named(events, "escher.CostLevel");
+        assertEquals(problem.maxCost, levels.size());
+        for (int i = 0; i < levels.size(); i++) {
+            RecordedEvent level = levels.get(i);
+            assertEquals("thenFirst", level.getString("strategy"));
+            assertEquals(i + 1, level.getInt("cost"));
+            assertEquals(problem.inputs.size(), level.getInt("goalSize"));
+            boolean last = i == levels.size() - 1;
+            assertEquals(last, level.getBoolean("found"));
+            assertEquals(last ? problem.maxCost : -1, level.getInt("solutionCost"));
+        }
+        List<RecordedEvent> growth = named(events, "escher.TermBankGrowth");
+        assertEquals(problem.maxCompCost, growth.size());
+        for (int i = 0; i < growth.size(); i++) {
+            assertEquals(i + 1, growth.get(i).getInt("cost"));
+            assertTrue(growth.get(i).getInt("boolTerms") <= growth.get(i).getInt("terms"));
+        }
+        // disabled unless a recording asks for them
+        assertTrue(named(events, "escher.MemoLookup").isEmpty());
+        assertTrue(named(events, "escher.GoalSplit").isEmpty());
+    }
+
+    @Test
+    public void testHotEventsWhenEnabled() throws IOException {
+        List<RecordedEvent> events = record("escher.MemoLookup", "escher.GoalSplit");
+        List<RecordedEvent> lookups = named(events, "escher.MemoLookup");
+        assertTrue(lookups.stream().anyMatch(e -> e.getBoolean("hit")));
+        assertTrue(lookups.stream().anyMatch(e -> !e.getBoolean("hit")));
+        for (RecordedEvent split : named(events, "escher.GoalSplit")) {
+            assertTrue(split.getInt("thenSize") < split.getInt("goalSize"));
+        }
+        assertFalse(named(events, "escher.GoalSplit").isEmpty());
+    }
+}
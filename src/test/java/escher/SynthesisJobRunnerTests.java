@@ -0,0 +1,110 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SynthesisJobRunnerTests {
+
+    private static SynthesisJobRunner.Job job(SynthesisFixtures.Problem problem) {
+        return SynthesisJobRunner.Job.typed(problem.name, problem.library, problem.varTypes, problem.inputs,
+                problem.outputs, problem.maxCompCost, problem.maxCost);
+    }
+
+    private static Optional<Pair<Integer, Term>> deepen(SynthesisFixtures.Problem problem,
+                                                       SearchPortfolio.Strategy strategy) {
+        BatchGoalSearch search = new BatchGoalSearch(problem.maxCompCost, problem.bank());
+        for (int cost = 1; cost <= problem.maxCost; cost++) {
+            Optional<Pair<Integer, Term>> found = strategy == SearchPortfolio.Strategy.THEN_FIRST
+                    ? search.searchThenFirst(cost, problem.goal())
+                    : search.searchCondFirst(cost, problem.goal());
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Test
+    public void testJobsAgreeWithDeepeningOneSearch() throws InterruptedException {
+        List<SynthesisFixtures.Problem> problems = List.of(SynthesisFixtures.reverse(), SynthesisFixtures.stutter(),
+                SynthesisFixtures.squareList());
+        List<SynthesisJobRunner.Job> jobs = new ArrayList<>();
+        for (SynthesisFixtures.Problem problem : problems) {
+            jobs.add(job(problem));
+            jobs.add(job(problem).withStrategy(SearchPortfolio.Strategy.COND_FIRST).withMemoCapacity(64));
+        }
+        try (SynthesisJobRunner runner = new SynthesisJobRunner(2)) {
+            List<SynthesisJobRunner.JobResult> results = runner.runAll(jobs, r -> { });
+            assertEquals(jobs.size(), results.size());
+            for (SynthesisJobRunner.JobResult result : results) {
+                SynthesisFixtures.Problem problem = SynthesisFixtures.byName(result.getJob().getName());
+                SearchPortfolio.Strategy strategy = jobs.indexOf(result.getJob()) % 2 == 0
+                        ? SearchPortfolio.Strategy.THEN_FIRST : SearchPortfolio.Strategy.COND_FIRST;
+                assertEquals(SynthesisJobRunner.Status.SOLVED, result.getStatus(), result.toString());
+                assertEquals(deepen(problem, strategy).get().getFirst(), result.getResult().get().getFirst(),
+                        result.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testUnsolvableJobIsNotFound() throws InterruptedException {
+        try (SynthesisJobRunner runner = new SynthesisJobRunner(1)) {
+            SynthesisJobRunner.JobResult result = runner.runAll(List.of(job(SynthesisFixtures.cartesian())), r -> { })
+                    .get(0);
+            assertEquals(SynthesisJobRunner.Status.NOT_FOUND, result.getStatus(), result.toString());
+        }
+    }
+
+    @Test
+    public void testExpiredJobTimesOut() throws InterruptedException {
+        try (SynthesisJobRunner runner = new SynthesisJobRunner(1)) {
+            SynthesisJobRunner.JobResult result = runner.runAll(
+                    List.of(job(SynthesisFixtures.reverse()).withTimeout(0, TimeUnit.NANOSECONDS)), r -> { }).get(0);
+            assertEquals(SynthesisJobRunner.Status.TIMED_OUT, result.getStatus(), result.toString());
+        }
+    }
+
+    @Test
+    public void testBanksAreSharedAndDroppedAfterTheirLastJob() throws InterruptedException {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        try (SynthesisJobRunner runner = new SynthesisJobRunner(1)) {
+            List<Integer> banksSeen = new ArrayList<>();
+            runner.runAll(List.of(job(problem), job(problem), job(problem)), r -> banksSeen.add(runner.bankCount()));
+            // however the jobs interleave, they never hold more than their one shared bank
+            assertTrue(banksSeen.stream().allMatch(n -> n <= 1), banksSeen.toString());
+            // a job releases its bank before its result is handed out
+            assertEquals(0, runner.bankCount());
+        }
+    }
+
+    @Test
+    public void testJobsLeaveSharedCallCachesAlone() throws InterruptedException {
+        SynthesisFixtures.Problem problem = SynthesisFixtures.reverse();
+        // fresh components, so enabling their caches does not reach the fixtures other tests use
+        List<ComponentImpl> library = new ArrayList<>();
+        for (ComponentImpl comp : problem.library) {
+            ComponentImpl copy = new ComponentImpl(comp.name, comp.argTypes(), comp.returnType(),
+                    comp::executeEfficient);
+            copy.enableCallCache(1 << 12);
+            library.add(copy);
+        }
+        SynthesisJobRunner.Job job = SynthesisJobRunner.Job.typed(problem.name, library, problem.varTypes,
+                problem.inputs, problem.outputs, problem.maxCompCost, problem.maxCost);
+        try (SynthesisJobRunner runner = new SynthesisJobRunner(1)) {
+            assertEquals(SynthesisJobRunner.Status.SOLVED, runner.runAll(List.of(job), r -> { }).get(0).getStatus());
+        }
+        long cached = 0;
+        for (ComponentImpl comp : library) {
+            cached += comp.callCacheStats().getSize();
+        }
+        assertTrue(cached > 0, "the job cleared the call caches it shares with other jobs");
+    }
+}
@@ -0,0 +1,67 @@
+package escher;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SynthesisMetricsTests {
+
+    @AfterEach
+    public void disable() {
+        SynthesisMetrics.setEnabled(false);
+        SynthesisMetrics.reset();
+    }
+
+    @Test
+    public void testBucketsTileTheValues() {
+        int last = SynthesisMetrics.Timer.bucketOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, SynthesisMetrics.Timer.bucketLimit(last));
+        for (int b = 0; b < last; b++) {
+            long limit = SynthesisMetrics.Timer.bucketLimit(b);
+            assertEquals(b, SynthesisMetrics.Timer.bucketOf(limit), "limit of bucket " + b);
+            assertEquals(b + 1, SynthesisMetrics.Timer.bucketOf(limit + 1), "value after bucket " + b);
+        }
+    }
+
+    @Test
+    public void testBucketsAreWithinAnEighthOfTheirValues() {
+        for (long v : new long[]{0, 1, 7, 8, 9, 15, 16, 100, 1_000, 123_456_789, 1L << 40, Long.MAX_VALUE / 3}) {
+            int b = SynthesisMetrics.Timer.bucketOf(v);
+            long limit = SynthesisMetrics.Timer.bucketLimit(b);
+            long lower = b == 0 ? 0 : SynthesisMetrics.Timer.bucketLimit(b - 1) + 1;
+            assertTrue(lower <= v && v <= limit, v + " in [" + lower + ", " + limit + "]");
+            assertTrue(limit - lower <= v / 8, v + " in a bucket of width " + (limit - lower + 1));
+        }
+    }
+
+    @Test
+    public void testPercentilesOfATimer() {
+        SynthesisMetrics.Timer timer = SynthesisMetrics.timer("test.percentiles");
+        SynthesisMetrics.setEnabled(true);
+        for (int i = 1; i <= 100; i++) {
+            timer.record(i * 1_000L);
+        }
+        SynthesisMetrics.TimerSnapshot snapshot = SynthesisMetrics.snapshot().getTimers().get("test.percentiles");
+        assertEquals(100, snapshot.getCount());
+        assertEquals(5_050_000, snapshot.getTotalNanos());
+        assertEquals(100_000, snapshot.getMaxNanos());
+        assertEquals(50_000, snapshot.getPercentileNanos(0.5), 50_000 / 8);
+        assertEquals(90_000, snapshot.getPercentileNanos(0.9), 90_000 / 8);
+        assertEquals(99_000, snapshot.getPercentileNanos(0.99), 99_000 / 8);
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentileNanos(0.75));
+    }
+
+    @Test
+    public void testDisabledMetricsRecordNothing() {
+        SynthesisMetrics.Timer timer = SynthesisMetrics.timer("test.disabled");
+        SynthesisMetrics.Counter counter = SynthesisMetrics.counter("test.disabled");
+        timer.stop(timer.start());
+        timer.record(1_000);
+        counter.increment();
+        SynthesisMetrics.Snapshot snapshot = SynthesisMetrics.snapshot();
+        assertEquals(0, snapshot.getTimers().get("test.disabled").getCount());
+        assertEquals(0, snapshot.counter("test.disabled"));
+    }
+}
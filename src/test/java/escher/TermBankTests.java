@@ -0,0 +1,132 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TermBankTests {
+
+    private static final ComponentImpl zero = new ComponentImpl("zero", 0, (args, fuel) -> new ValueInt(0));
+    private static final ComponentImpl inc = intComp("inc", x -> new ValueInt(x + 1));
+    private static final ComponentImpl dec = intComp("dec", x -> new ValueInt(x - 1));
+    private static final ComponentImpl isZero = intComp("isZero", x -> x == 0 ? valueBool.TRUE : valueBool.FALSE);
+
+    /** an untyped bank applies components to anything, so they answer ill-typed calls with an error */
+    private static ComponentImpl intComp(String name, IntFunction<termvalue> impl) {
+        return new ComponentImpl(name, 1, (args, fuel) -> args.get(0) instanceof ValueInt
+                ? impl.apply(((ValueInt) args.get(0)).getValue())
+                : valueerror.INSTANCE);
+    }
+
+    private static List<Map<String, termvalue>> inputs(int... xs) {
+        List<Map<String, termvalue>> inputs = new ArrayList<>();
+        for (int x : xs) {
+            Map<String, termvalue> env = new LinkedHashMap<>();
+            env.put("x", new ValueInt(x));
+            inputs.add(env);
+        }
+        return inputs;
+    }
+
+    private static TermBank arithmeticBank(int maxCost) {
+        return new TermBank(List.of(zero, inc, dec, isZero), List.of("x"), inputs(0, 1, 5), maxCost);
+    }
+
+    private static List<String> shows(Iterable<Pair<ValueVector, Term>> terms) {
+        List<String> shows = new ArrayList<>();
+        for (Pair<ValueVector, Term> pair : terms) {
+            shows.add(pair.getSecond().show());
+        }
+        return shows;
+    }
+
+    @Test
+    public void testNextCompositionEnumeratesEveryComposition() {
+        int[] costs = {1, 1, 3};
+        Set<List<Integer>> seen = new HashSet<>();
+        do {
+            assertEquals(5, Arrays.stream(costs).sum());
+            assertTrue(Arrays.stream(costs).allMatch(c -> c >= 1));
+            assertTrue(seen.add(Arrays.stream(costs).boxed().toList()));
+        } while (TermBank.nextComposition(costs));
+        // compositions of 5 into 3 positive parts: C(4, 2)
+        assertEquals(6, seen.size());
+        assertArrayEquals(new int[]{1, 1, 3}, costs);
+    }
+
+    @Test
+    public void testNextCompositionOfOnePart() {
+        int[] costs = {4};
+        assertFalse(TermBank.nextComposition(costs));
+        assertArrayEquals(new int[]{4}, costs);
+    }
+
+    @Test
+    public void testLevelsHoldTermsOfTheirCost() {
+        TermBank bank = arithmeticBank(4);
+        for (int c = 1; c <= 4; c++) {
+            for (Pair<ValueVector, Term> pair : bank.termsOfCost(c)) {
+                assertEquals(c, pair.getSecond().size(), pair.getSecond().show());
+            }
+        }
+        assertEquals(List.of("@x", "zero()"), shows(bank.termsOfCost(1)));
+        assertFalse(bank.termsOfCost(0).iterator().hasNext());
+        assertFalse(bank.termsOfCost(5).iterator().hasNext());
+    }
+
+    @Test
+    public void testObservationallyEquivalentTermsAreKeptOnce() {
+        TermBank bank = arithmeticBank(4);
+        Set<ValueVector> vectors = new HashSet<>();
+        for (int c = 1; c <= 4; c++) {
+            for (Pair<ValueVector, Term> pair : bank.termsOfCost(c)) {
+                assertTrue(vectors.add(pair.getFirst()), "kept twice: " + pair.getSecond().show());
+            }
+        }
+        // inc(dec(@x)) behaves like @x, which is cheaper
+        assertFalse(shows(bank.termsOfCost(3)).contains("inc(dec(@x))"));
+        assertTrue(shows(bank.termsOfCost(3)).contains("inc(inc(@x))"));
+    }
+
+    @Test
+    public void testValueVectorsAreTheOutputsOnTheExamples() throws Exception {
+        TermBank bank = arithmeticBank(3);
+        Map<String, ComponentImpl> compMap = new LinkedHashMap<>();
+        for (ComponentImpl comp : List.of(zero, inc, dec, isZero)) {
+            compMap.put(comp.name, comp);
+        }
+        List<Map<String, termvalue>> inputs = inputs(0, 1, 5);
+        for (int c = 1; c <= 3; c++) {
+            for (Pair<ValueVector, Term> pair : bank.termsOfCost(c)) {
+                for (int i = 0; i < inputs.size(); i++) {
+                    assertEquals(pair.getSecond().executeTerm(inputs.get(i), compMap), pair.getFirst().get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBoolTermsAreTheBooleanSubset() {
+        TermBank bank = arithmeticBank(3);
+        assertEquals(List.of("isZero(@x)", "isZero(zero())"), shows(bank.boolTermsOfCost(2)));
+        assertEquals(List.of("isZero(inc(@x))", "isZero(dec(@x))"), shows(bank.boolTermsOfCost(3)));
+    }
+
+    @Test
+    public void testTermOfCostAndVMFindsMatchingTerm() {
+        TermBank bank = arithmeticBank(3);
+        IndexValueMap goal = IndexValueMap.of(List.of(new ValueInt(2), new ValueInt(3), new ValueInt(7)));
+        assertEquals("inc(inc(@x))", bank.termOfCostAndVM(3, goal).map(Term::show).orElse(null));
+        assertTrue(bank.termOfCostAndVM(2, goal).isEmpty());
+    }
+}
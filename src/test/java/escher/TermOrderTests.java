@@ -0,0 +1,88 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TermOrderTests {
+
+    private static Term c(String name, Term... args) {
+        return Component.of(name, List.of(args));
+    }
+
+    private static Term random(Random random, int depth) {
+        int kind = depth == 0 ? 0 : random.nextInt(4);
+        switch (kind) {
+            case 0:
+                return Var.of(random.nextBoolean() ? "a" : "b");
+            case 3:
+                return If.of(random(random, depth - 1), random(random, depth - 1), random(random, depth - 1));
+            default:
+                List<Term> args = new ArrayList<>();
+                for (int n = random.nextInt(3); n > 0; n--) {
+                    args.add(random(random, depth - 1));
+                }
+                return Component.of(random.nextBoolean() ? "f" : "g", args);
+        }
+    }
+
+    @Test
+    public void testKindThenNameThenChildren() {
+        List<Term> ascending = List.of(
+                Var.of("a"),
+                Var.of("b"),
+                c("f"),
+                c("f", Var.of("a")),
+                c("f", Var.of("a"), Var.of("a")),
+                c("f", Var.of("b")),
+                c("f", c("f")),
+                c("g"),
+                If.of(Var.of("a"), Var.of("b"), Var.of("b")),
+                If.of(Var.of("b"), Var.of("a"), Var.of("a")));
+        for (int i = 0; i < ascending.size(); i++) {
+            for (int j = 0; j < ascending.size(); j++) {
+                Term x = ascending.get(i);
+                Term y = ascending.get(j);
+                assertEquals(Integer.signum(Integer.compare(i, j)), Integer.signum(x.compareTo(y)),
+                        x.show() + " vs " + y.show());
+                assertEquals(i < j, TermUtils.lt(x, y));
+            }
+        }
+        assertTrue(Term.termsLt(List.of(Var.of("a")), List.of(Var.of("a"), Var.of("a"))));
+        assertFalse(Term.termsLt(List.of(Var.of("b")), List.of(Var.of("a"), Var.of("a"))));
+    }
+
+    /** the order is a total order consistent with equals, and equal terms share their fingerprint */
+    @Test
+    public void testOrderIsTotalAndConsistentWithEquals() {
+        Random random = new Random(0);
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            terms.add(random(random, 3));
+        }
+        for (Term x : terms) {
+            for (Term y : terms) {
+                int c = x.compareTo(y);
+                assertEquals(-Integer.signum(c), Integer.signum(y.compareTo(x)));
+                assertEquals(c == 0, x.equals(y), x.show() + " vs " + y.show());
+                if (c == 0) {
+                    assertEquals(x.fingerprint(), y.fingerprint());
+                    assertEquals(x.hashCode(), y.hashCode());
+                    assertEquals(x.show(), y.show());
+                } else {
+                    assertNotEquals(x.show(), y.show());
+                }
+            }
+        }
+        List<Term> sorted = new ArrayList<>(terms);
+        sorted.sort(null);
+        for (int i = 2; i < sorted.size(); i++) {
+            assertTrue(sorted.get(i - 2).compareTo(sorted.get(i)) <= 0);
+        }
+    }
+}
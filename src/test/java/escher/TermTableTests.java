@@ -0,0 +1,49 @@
+package escher;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TermTableTests {
+
+    @Test
+    public void testEqualTermsAreTheSameObject() {
+        Term a = If.of(Component.of("isEmpty", List.of(Var.of("xs"))), Var.of("xs"),
+                Component.of("tail", List.of(Var.of("xs"))));
+        Term b = If.of(Component.of("isEmpty", List.of(Var.of("xs"))), Var.of("xs"),
+                Component.of("tail", List.of(Var.of("xs"))));
+        assertSame(a, b);
+        assertNotSame(a, Component.of("tail", List.of(Var.of("ys"))));
+    }
+
+    @Test
+    public void testConcurrentInterningYieldsOneObjectPerTerm() {
+        List<Term> terms = IntStream.range(0, 10_000).parallel()
+                .mapToObj(i -> Component.of("concurrent", List.of(Var.of("x" + i % 10))))
+                .collect(Collectors.toList());
+        Set<Term> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(terms);
+        assertEquals(10, distinct.size());
+    }
+
+    @Test
+    public void testUnreferencedTermsAreDropped() throws InterruptedException {
+        WeakReference<Term> ref = new WeakReference<>(Component.of("dropped", List.of(Var.of("dropped"))));
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        Term again = Component.of("dropped", List.of(Var.of("dropped")));
+        assertSame(again, Component.of("dropped", List.of(Var.of("dropped"))));
+    }
+}
@@ -0,0 +1,71 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TypeHierarchyTests {
+
+    private static Type nested(int depth) {
+        Type t = TInt.of();
+        for (int i = 0; i < depth; i++) {
+            t = TList.of(t);
+        }
+        return t;
+    }
+
+    @Test
+    public void testInstancesSitBelowTheirGeneralization() {
+        TypeHierarchy hierarchy = new TypeHierarchy();
+        hierarchy.register(TList.of(TInt.of()));
+        hierarchy.register(TList.of(new TVar(0)));
+        hierarchy.register(TBool.of());
+        List<Type> lists = hierarchy.compatibleWith(TList.of(new TVar(3)));
+        assertEquals(Set.of(new TVar(0), TList.of(new TVar(0)), TList.of(TInt.of())), new HashSet<>(lists));
+        assertFalse(hierarchy.compatibleWith(TList.of(TBool.of())).contains(TList.of(TInt.of())));
+    }
+
+    @Test
+    public void testQueriesSeeLaterRegistrations() {
+        TypeHierarchy hierarchy = new TypeHierarchy();
+        hierarchy.register(TList.of(TInt.of()));
+        assertFalse(hierarchy.compatibleWith(TList.of(new TVar(0))).contains(TList.of(TBool.of())));
+        hierarchy.register(TList.of(TBool.of()));
+        assertTrue(hierarchy.compatibleWith(TList.of(new TVar(0))).contains(TList.of(TBool.of())));
+    }
+
+    @Test
+    public void testConcurrentQueriesLeaveNoStaleResult() throws InterruptedException {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            TypeHierarchy hierarchy = new TypeHierarchy();
+            Type query = TList.of(new TVar(0));
+            AtomicBoolean registering = new AtomicBoolean(true);
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                Thread reader = new Thread(() -> {
+                    while (registering.get()) {
+                        hierarchy.compatibleWith(query);
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            for (int depth = 1; depth <= 50; depth++) {
+                hierarchy.register(nested(depth));
+            }
+            registering.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            // the root plus every registered type is a list
+            assertEquals(51, hierarchy.compatibleWith(query).size());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ValueVectorTests {
+
+    private static final termvalue E = valueerror.INSTANCE;
+    private static final valueBool T = valueBool.TRUE;
+    private static final valueBool F = valueBool.FALSE;
+
+    private static GoalKey keys(int... indices) {
+        List<termvalue> values = new ArrayList<>();
+        for (int i = 0; i <= indices[indices.length - 1]; i++) {
+            values.add(E);
+        }
+        List<Integer> removed = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            removed.add(i);
+        }
+        for (int i : indices) {
+            removed.remove(Integer.valueOf(i));
+        }
+        return IndexValueMap.of(values).remove(removed).key();
+    }
+
+    private static void assertSameValues(ValueVector a, ValueVector b) {
+        assertEquals(a, b);
+        assertEquals(b, a);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void testStorageFollowsTheValues() {
+        ValueVector ints = ValueVector.of(new termvalue[]{new ValueInt(1), E, new ValueInt(2000)});
+        ValueVector bools = ValueVector.of(new termvalue[]{T, E, F});
+        ValueVector mixed = ValueVector.of(new termvalue[]{T, new ValueInt(1), ValueList.of(List.of())});
+        assertEquals(new ValueInt(2000), ints.get(2));
+        assertSame(E, ints.get(1));
+        assertSame(T, bools.get(0));
+        assertSame(F, bools.get(2));
+        assertTrue(ints.matchesAt(0, new ValueInt(1)));
+        assertFalse(ints.matchesAt(1, new ValueInt(0)));
+        assertTrue(mixed.matchesAt(2, ValueList.of(List.of())));
+        assertNotEquals(ints, bools);
+    }
+
+    @Test
+    public void testProjectionsEqualVectorsBuiltFromTheirValues() {
+        Random random = new Random(0);
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(130);
+            termvalue[] values = new termvalue[n];
+            for (int i = 0; i < n; i++) {
+                int kind = random.nextInt(4);
+                values[i] = kind == 0 ? E : kind == 1 ? (random.nextBoolean() ? T : F)
+                        : new ValueInt(random.nextInt(3000) - 1000);
+            }
+            List<Integer> kept = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (random.nextInt(3) > 0) {
+                    kept.add(i);
+                }
+            }
+            if (kept.isEmpty()) {
+                continue;
+            }
+            termvalue[] projected = new termvalue[kept.size()];
+            for (int j = 0; j < projected.length; j++) {
+                projected[j] = values[kept.get(j)];
+            }
+            GoalKey key = keys(kept.stream().mapToInt(Integer::intValue).toArray());
+            assertSameValues(ValueVector.of(projected), ValueVector.of(values).project(key));
+        }
+    }
+
+    @Test
+    public void testEqualityAcrossStorageKinds() {
+        // a mixed vector projected onto its booleans keeps the object storage
+        ValueVector mixed = ValueVector.of(new termvalue[]{T, new ValueInt(1), E, F});
+        assertSameValues(ValueVector.of(new termvalue[]{T, E, F}), mixed.project(keys(0, 2, 3)));
+        // an integer vector projected onto its errors against the boolean storage of all-error vectors
+        ValueVector ints = ValueVector.of(new termvalue[]{new ValueInt(1), E, E});
+        assertSameValues(ValueVector.of(new termvalue[]{E, E}), ints.project(keys(1, 2)));
+        assertSameValues(ValueVector.of(new termvalue[]{new ValueInt(1), E}), mixed.project(keys(1, 2)));
+        assertNotEquals(ValueVector.of(new termvalue[]{T, E}), mixed.project(keys(1, 2)));
+    }
+
+    @Test
+    public void testBooleansCompareByValue() {
+        // booleans made outside the two constants, e.g. by the DSL, are the same values
+        valueBool otherTrue = DSL.boolConversion(true);
+        ValueVector mixed = ValueVector.of(new termvalue[]{otherTrue, new ValueInt(1)});
+        assertSameValues(ValueVector.of(new termvalue[]{T}), mixed.project(keys(0)));
+        assertSameValues(ValueVector.of(new termvalue[]{T}), ValueVector.of(new termvalue[]{otherTrue}));
+        assertTrue(ValueVector.of(new termvalue[]{T}).matchesAt(0, otherTrue));
+        assertTrue(mixed.matchesAt(0, T));
+    }
+}
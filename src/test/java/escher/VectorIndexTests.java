@@ -0,0 +1,90 @@
+package escher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class VectorIndexTests {
+
+    private static final int EXAMPLES = 10;
+
+    /** term t<i>k</i> outputs k + i on example i, so t0 and t1 agree on no example, and t10 duplicates t0 */
+    private static List<Pair<ValueVector, Term>> level() {
+        List<Pair<ValueVector, Term>> terms = new ArrayList<>();
+        for (int k = 0; k < 4; k++) {
+            terms.add(term("t" + k, k));
+        }
+        terms.add(term("t10", 0));
+        return terms;
+    }
+
+    private static Pair<ValueVector, Term> term(String name, int k) {
+        termvalue[] values = new termvalue[EXAMPLES];
+        for (int i = 0; i < EXAMPLES; i++) {
+            values[i] = new ValueInt(k + i);
+        }
+        return new Pair<>(ValueVector.of(values), Var.of(name));
+    }
+
+    /** the goal that term t<i>k</i> satisfies on the examples in <i>mask</i> */
+    private static IndexValueMap goal(int mask, int k) {
+        Map<Integer, termvalue> entries = new HashMap<>();
+        for (int i = 0; i < EXAMPLES; i++) {
+            if ((mask & (1 << i)) != 0) {
+                entries.put(i, new ValueInt(k + i));
+            }
+        }
+        return IndexValueMap.fromMap(entries, EXAMPLES);
+    }
+
+    /** the first term of <i>terms</i> matching <i>goal</i>, by a scan */
+    private static Optional<Term> scan(List<Pair<ValueVector, Term>> terms, IndexValueMap goal) {
+        for (Pair<ValueVector, Term> t : terms) {
+            if (IndexValueMap.matchVector(goal, t.getFirst())) {
+                return Optional.of(t.getSecond());
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Test
+    public void testLookupAgreesWithAScan() {
+        List<Pair<ValueVector, Term>> terms = level();
+        VectorIndex index = new VectorIndex(terms);
+        for (int mask = 1; mask < 1 << EXAMPLES; mask += 7) {
+            for (int k = 0; k < 6; k++) {
+                IndexValueMap goal = goal(mask, k);
+                assertEquals(scan(terms, goal), index.lookup(goal), goal.toString());
+            }
+        }
+        // the first of two equal terms wins
+        assertEquals(Optional.of(Var.of("t0")), index.lookup(goal(0b11, 0)));
+        assertEquals(Optional.empty(), new VectorIndex(List.of()).lookup(goal(1, 0)));
+    }
+
+    @Test
+    public void testProjectionsAreCapped() {
+        List<Pair<ValueVector, Term>> terms = level();
+        VectorIndex index = new VectorIndex(terms);
+        for (int mask = 1; mask < 1 << EXAMPLES; mask++) {
+            index.lookup(goal(mask, 2));
+            assertTrue(index.projectionCount() <= VectorIndex.MAX_PROJECTIONS, "after mask " + mask);
+        }
+        assertTrue(index.projectionCount() > 0);
+        // dropped projections are rebuilt on their next lookup
+        for (int mask = 1; mask < 1 << EXAMPLES; mask += 3) {
+            assertEquals(scan(terms, goal(mask, 3)), index.lookup(goal(mask, 3)));
+        }
+        index.clearProjections();
+        assertEquals(0, index.projectionCount());
+        assertEquals(Optional.of(Var.of("t1")), index.lookup(goal(0b101, 1)));
+        assertEquals(1, index.projectionCount());
+    }
+}